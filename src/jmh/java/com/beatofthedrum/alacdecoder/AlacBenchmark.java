@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * A generated m4a of 10 seconds in memory by the outputs of {@link Alac}, and seeking.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlacBenchmark {
+
+    @Param({"16", "24"})
+    int bits;
+
+    private byte[] m4a;
+
+    @Setup
+    public void setup() {
+        m4a = Fixture.of(bits, 2, AlacEncoder.DEFAULT_FRAME_SIZE, 10).m4a;
+    }
+
+    /** ints of bytes, then formatted into pcm */
+    @Benchmark
+    public long decodeInts() throws IOException {
+        long bytes = 0;
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            int[] destBuffer = new int[decoder.getMaxFrameBytes()];
+            byte[] pcmBuffer = new byte[decoder.getMaxFrameBytes()];
+            int n;
+            while ((n = decoder.decode(destBuffer, pcmBuffer)) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+    /** straight into pcm */
+    @Benchmark
+    public long decodePcm() throws IOException {
+        long bytes = 0;
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            byte[] pcmBuffer = new byte[decoder.getMaxFrameBytes()];
+            int n;
+            while ((n = decoder.decode(pcmBuffer)) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+
+    /** interleaved float pcm, de-interleaved by the caller */
+    @Benchmark
+    public float[][] decodeFloatDeinterleaved() throws IOException {
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            decoder.setOutputFormat(0, true, false);
+            ByteBuffer pcm = ByteBuffer.allocate(decoder.getMaxFrameBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            float[][] channels = new float[2][decoder.getMaxSamplesPerFrame()];
+            while (decoder.decode(pcm.clear()) != -1) {
+                int n = pcm.position() / 8;
+                pcm.flip();
+                for (int i = 0; i < n; i++) {
+                    channels[0][i] = pcm.getFloat();
+                    channels[1][i] = pcm.getFloat();
+                }
+            }
+            return channels;
+        }
+    }
+
+    /** planar float */
+    @Benchmark
+    public float[][] decodeFloatPlanar() throws IOException {
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            float[][] channels = new float[2][decoder.getMaxSamplesPerFrame()];
+            while (decoder.decode(channels) != -1) ;
+            return channels;
+        }
+    }
+
+    /** opening, seeking to the middle and a frame from there */
+    @Benchmark
+    public int seek() throws IOException {
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            decoder.seek(decoder.getNumSamples() / 2 + 1);
+            return decoder.decode(new byte[decoder.getMaxFrameBytes()]);
+        }
+    }
+}
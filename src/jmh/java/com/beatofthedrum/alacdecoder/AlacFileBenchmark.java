@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The stages of decoding a frame, and a whole frame.
+ * <p>
+ * every benchmark is for a frame (or the first channel of it) of a generated fixture.
+ * stages which work in place start from a copy of their input, which is included.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AlacFileBenchmark {
+
+    /** weights for {@link #decorrelate()}, the cost is the same for any weight but 0 */
+    private static final int INTERLACING_SHIFT = 2;
+    private static final int INTERLACING_LEFT_WEIGHT = 2;
+
+    @Param({"16", "24"})
+    int bits;
+
+    @Param({"1", "2"})
+    int channels;
+
+    @Param({"352", "4096"})
+    int frameLength;
+
+    private AlacFile file;
+    private byte[] frame;
+    private Fixture.Element element;
+    /** rice decoded errors of the first channel */
+    private int[] errors;
+    /** decoded samples of the first and the last channel */
+    private int[] left;
+    private int[] right;
+    /** in place input */
+    private int[] work;
+    private int[] work2;
+    private byte[] pcm;
+    private int samples;
+
+    @Setup
+    public void setup() {
+        Fixture fixture = Fixture.of(bits, channels, frameLength, 2);
+        file = new AlacFile(fixture.config);
+        frame = fixture.frame();
+        element = fixture.element();
+
+        errors = new int[frameLength];
+        decodeEntropyRice();
+
+        int[][] planar = new int[channels][frameLength];
+        samples = file.decodeSamples(frame);
+        file.writePlanar(planar, 0, samples);
+        left = planar[0];
+        right = planar[channels - 1];
+        work = new int[frameLength];
+        work2 = new int[frameLength];
+        pcm = new byte[frameLength * fixture.config.getBytesPerSample()];
+    }
+
+    /** rice decoding of the first channel, including the bit reader */
+    @Benchmark
+    public int[] decodeEntropyRice() {
+        AlacConfig config = file.config;
+        file.reader.reset(frame, element.riceOffset / 8, frame.length - element.riceOffset / 8);
+        file.reader.read(element.riceOffset % 8);
+        file.decodeEntropyRice(errors, element.samples, element.readSampleSize,
+                config.mb, config.kb, element.riceModifier * (config.pb / 4), (1 << config.kb) - 1);
+        return errors;
+    }
+
+    /** prediction of the first channel from its errors */
+    @Benchmark
+    public int[] predictorDecompressFirAdapt() {
+        System.arraycopy(errors, 0, work, 0, element.samples);
+        return AlacFile.predictorDecompressFirAdapt(work, element.samples, element.readSampleSize,
+                element.predictorCoefTable, element.predictorCoefNum, element.predictionQuantitization);
+    }
+
+    /** left and right from mid and side */
+    @Benchmark
+    public int[] decorrelate() {
+        System.arraycopy(left, 0, work, 0, samples);
+        System.arraycopy(right, 0, work2, 0, samples);
+        AlacFile.decorrelate(work, work2, samples, INTERLACING_SHIFT, INTERLACING_LEFT_WEIGHT);
+        return work2;
+    }
+
+    /** interleaving decoded samples into little endian pcm, 16 or 24 bits as decoded */
+    @Benchmark
+    public byte[] writePcm() {
+        file.writePcm(pcm, 0, 0, samples, false);
+        return pcm;
+    }
+
+    /** a whole frame into little endian pcm */
+    @Benchmark
+    public int decodeFrame() {
+        return file.decodeFrame(frame, pcm, 0, 0, false);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * A generated m4a file of 60 seconds decoded from a buffered stream, a mapping and positional reads.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlacSourceBenchmark {
+
+    @Param({"stream", "mapped", "positional"})
+    String input;
+
+    private Path path;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("alac", ".m4a");
+        Files.write(path, Fixture.of(16, 2, AlacEncoder.DEFAULT_FRAME_SIZE, 60).m4a);
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        Files.delete(path);
+    }
+
+    /** */
+    private Alac open() throws IOException {
+        return switch (input) {
+            case "stream" -> new Alac(new BufferedInputStream(new FileInputStream(path.toFile()), (int) Files.size(path)));
+            case "mapped" -> new Alac(path);
+            default -> new Alac(FileChannelSource.open(path, false));
+        };
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+        long bytes = 0;
+        try (Alac decoder = open()) {
+            ByteBuffer pcm = decoder.getPcmBuffer();
+            int n;
+            while ((n = decoder.decode(pcm.clear())) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+}
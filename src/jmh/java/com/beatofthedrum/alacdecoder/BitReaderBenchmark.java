@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * {@link BitReader} over a frame sized buffer of random bytes.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BitReaderBenchmark {
+
+    /** bits of a read */
+    @Param({"1", "16", "24", "32"})
+    int bits;
+
+    private final BitReader reader = new BitReader();
+    private byte[] buffer;
+
+    @Setup
+    public void setup() {
+        // a 16 bit stereo frame of 4096 samples, not compressed
+        buffer = new byte[4096 * 2 * 2];
+        new Random(1).nextBytes(buffer);
+    }
+
+    /** reads the whole buffer */
+    @Benchmark
+    public int read() {
+        reader.reset(buffer, 0, buffer.length);
+        int sum = 0;
+        for (int n = buffer.length * 8 / bits; n > 0; n--) {
+            sum += reader.read(bits);
+        }
+        return sum;
+    }
+
+    /** reads unary codes of the random bits up to the limit of rice escapes */
+    @Benchmark
+    public int readUnary() {
+        reader.reset(buffer, 0, buffer.length);
+        int sum = 0;
+        // a code is 2 bits on average
+        for (int n = buffer.length * 8 / 2; n > 0; n--) {
+            sum += reader.readUnary(AlacFile.RICE_THRESHOLD + 1);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * Generated m4a files for the benchmarks, so no audio file is needed.
+ * <p>
+ * pcm is tones with a little noise, which is compressed like music is,
+ * encoded by {@link ParallelEncoder} into an m4a with the moov first.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public final class Fixture {
+
+    public static final int SAMPLE_RATE = 44100;
+
+    /** the m4a */
+    public final byte[] m4a;
+    /** the parameters */
+    final AlacConfig config;
+    /** raw frames */
+    final List<byte[]> frames = new ArrayList<>();
+
+    /** the header of the first element of a frame and the bit offset of its rice coded samples */
+    static final class Element {
+        int samples;
+        int readSampleSize;
+        int interlacingShift;
+        int interlacingLeftWeight;
+        int predictionQuantitization;
+        int riceModifier;
+        int predictorCoefNum;
+        final int[] predictorCoefTable = new int[32];
+        /** bits from the start of the frame, of the first channel */
+        int riceOffset;
+    }
+
+    private Fixture(byte[] m4a) {
+        this.m4a = m4a;
+        try {
+            DemuxResT demuxRes = new DemuxResT();
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(m4a));
+            if (new QTMovieT(in).read(demuxRes) != 1) {
+                throw new IllegalStateException("not alac");
+            }
+            // the moov is first, the stream is at the frames
+            SampleTable sampleTable = demuxRes.sampleTable;
+            for (int i = 0; i < sampleTable.getFrameCount(); i++) {
+                byte[] frame = new byte[sampleTable.getFrameSize(i)];
+                in.readFully(frame);
+                frames.add(frame);
+            }
+            this.config = AlacConfig.fromCodecData(demuxRes.codecData);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param bits 16 or 24
+     * @param seconds length of the pcm
+     */
+    public static Fixture of(int bits, int channels, int frameLength, double seconds) {
+        try {
+            ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+            new ParallelEncoder(SAMPLE_RATE, bits, channels, frameLength).encode(new ByteArrayInputStream(pcm(bits, channels, seconds)), false, m4a);
+            return new Fixture(m4a.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** little endian pcm, a tone per channel and noise of a few bits */
+    public static byte[] pcm(int bits, int channels, double seconds) {
+        Random random = new Random(bits * 10 + channels);
+        int samples = (int) (SAMPLE_RATE * seconds);
+        int bytes = bits / 8;
+        int amplitude = 1 << (bits - 3);
+        int noise = 1 << (bits - 12);
+        ByteBuffer bb = ByteBuffer.allocate(samples * channels * bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < samples; i++) {
+            for (int c = 0; c < channels; c++) {
+                double t = (double) i / SAMPLE_RATE;
+                int s = (int) (amplitude * (Math.sin(2 * Math.PI * 440 * (c + 1) * t) + 0.5 * Math.sin(2 * Math.PI * 1234 * t)))
+                        + random.nextInt(noise) - noise / 2;
+                for (int b = 0; b < bytes; b++) {
+                    bb.put((byte) (s >> (b * 8)));
+                }
+            }
+        }
+        return bb.array();
+    }
+
+    /** a frame in the middle, which has all the samples */
+    byte[] frame() {
+        return frames.get(frames.size() / 2);
+    }
+
+    /**
+     * reads the header of the first element of {@link #frame()}, the same as {@link AlacFile} does.
+     *
+     * @throws IllegalStateException the element is not compressed
+     */
+    Element element() {
+        BitReader reader = new BitReader();
+        byte[] frame = frame();
+        reader.reset(frame, 0, frame.length);
+        int channels = reader.read(3) == ChannelLayout.ID_CPE ? 2 : 1;
+        reader.read(4);
+        reader.read(12);
+        int hasSize = reader.read(1);
+        int uncompressedBytes = reader.read(2);
+        if (reader.read(1) != 0) {
+            throw new IllegalStateException("not compressed");
+        }
+        Element element = new Element();
+        element.samples = hasSize != 0 ? reader.read(32) : config.frameLength;
+        element.readSampleSize = config.bitDepth - uncompressedBytes * 8 + channels - 1;
+        element.interlacingShift = reader.read(8);
+        element.interlacingLeftWeight = reader.read(8);
+        int bits = 3 + 4 + 12 + 1 + 2 + 1 + (hasSize != 0 ? 32 : 0) + 16;
+        for (int c = 0; c < channels; c++) {
+            int predictionQuantitization;
+            int riceModifier;
+            int predictorCoefNum;
+            reader.read(4); // prediction type
+            predictionQuantitization = reader.read(4);
+            riceModifier = reader.read(3);
+            predictorCoefNum = reader.read(5);
+            bits += 16;
+            for (int i = 0; i < predictorCoefNum; i++) {
+                int coef = (short) reader.read(16);
+                if (c == 0) {
+                    element.predictorCoefTable[i] = coef;
+                }
+                bits += 16;
+            }
+            if (c == 0) {
+                element.predictionQuantitization = predictionQuantitization;
+                element.riceModifier = riceModifier;
+                element.predictorCoefNum = predictorCoefNum;
+            }
+        }
+        element.riceOffset = bits + element.samples * channels * uncompressedBytes * 8;
+        return element;
+    }
+
+    /** reads {@code bits} away, any number of them */
+    static void skip(BitReader reader, int bits) {
+        while (bits > 0) {
+            int n = Math.min(bits, 32);
+            reader.read(n);
+            bits -= n;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Scaling of {@link ParallelDecoder} and {@link ParallelEncoder} by the threads of the pool,
+ * 10 seconds of generated pcm and its m4a file.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelBenchmark {
+
+    @Param({"1", "2", "4"})
+    int threads;
+
+    private ForkJoinPool pool;
+    private byte[] pcm;
+    private Path path;
+    private ParallelDecoder decoder;
+    private final ParallelEncoder encoder = new ParallelEncoder(Fixture.SAMPLE_RATE, 16, 2);
+
+    @Setup
+    public void setup() throws IOException {
+        pool = new ForkJoinPool(threads);
+        pcm = Fixture.pcm(16, 2, 10);
+        path = Files.createTempFile("alac", ".m4a");
+        Files.write(path, Fixture.of(16, 2, AlacEncoder.DEFAULT_FRAME_SIZE, 10).m4a);
+        decoder = new ParallelDecoder(path);
+    }
+
+    @TearDown
+    public void teardown() throws IOException {
+        decoder.close();
+        Files.delete(path);
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public byte[] decode() throws IOException {
+        return decoder.decode(pool);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        try (InputStream is = encoder.encode(new ByteArrayInputStream(pcm), false, pool)) {
+            return is.readAllBytes();
+        }
+    }
+}
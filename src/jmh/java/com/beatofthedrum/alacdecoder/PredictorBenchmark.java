@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The generic predictor vs the ones specialized for an order, over random errors of a frame.
+ * the predictors work in place, so they start from a copy of their input, which is included.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PredictorBenchmark {
+
+    private static final int BITS_MOVE = 32 - 17;
+    private static final int QUANTITIZATION = 9;
+
+    @Param({"4", "8"})
+    int order;
+
+    private final int[] errors = new int[4096];
+    private final int[] coefs = new int[8];
+    private final int[] buffer = new int[4096];
+    private final int[] work = new int[8];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0);
+        for (int i = 0; i < errors.length; i++) {
+            errors[i] = (int) (random.nextGaussian() * 3000);
+        }
+        for (int i = 0; i < coefs.length; i++) {
+            coefs[i] = random.nextInt(2048) - 1024;
+        }
+    }
+
+    @Benchmark
+    public int[] generic() {
+        System.arraycopy(errors, 0, buffer, 0, buffer.length);
+        System.arraycopy(coefs, 0, work, 0, order);
+        AlacFile.predictorDecompressFir(buffer, buffer.length, BITS_MOVE, work, order, QUANTITIZATION);
+        return buffer;
+    }
+
+    @Benchmark
+    public int[] specialized() {
+        System.arraycopy(errors, 0, buffer, 0, buffer.length);
+        System.arraycopy(coefs, 0, work, 0, order);
+        if (order == 4) {
+            AlacFile.predictorDecompressFir4(buffer, buffer.length, BITS_MOVE, work, QUANTITIZATION);
+        } else {
+            AlacFile.predictorDecompressFir8(buffer, buffer.length, BITS_MOVE, work, QUANTITIZATION);
+        }
+        return buffer;
+    }
+}
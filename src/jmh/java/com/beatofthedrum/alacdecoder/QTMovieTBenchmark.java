@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * Parsing the headers (moov first) of a generated m4a, the sample tables grow with the length.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QTMovieTBenchmark {
+
+    /** length of the m4a */
+    @Param({"10", "300"})
+    int seconds;
+
+    private byte[] m4a;
+
+    @Setup
+    public void setup() {
+        m4a = Fixture.of(16, 2, AlacEncoder.DEFAULT_FRAME_SIZE, seconds).m4a;
+    }
+
+    @Benchmark
+    public DemuxResT read() throws IOException {
+        DemuxResT demuxRes = new DemuxResT();
+        new QTMovieT(new DataInputStream(new ByteArrayInputStream(m4a))).read(demuxRes);
+        return demuxRes;
+    }
+}
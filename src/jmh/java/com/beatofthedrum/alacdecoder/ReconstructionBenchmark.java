@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * The elements of 8 channel frames reconstructed one by one or in parallel, a generated m4a of 10 seconds.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ReconstructionBenchmark {
+
+    @Param({"sequential", "parallel"})
+    String reconstruction;
+
+    private byte[] m4a;
+
+    @Setup
+    public void setup() {
+        m4a = Fixture.of(24, 8, AlacEncoder.DEFAULT_FRAME_SIZE, 10).m4a;
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+        long bytes = 0;
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            decoder.setParallelChannels(reconstruction.equals("parallel") ? 1 : Integer.MAX_VALUE);
+            ByteBuffer pcm = decoder.getPcmBuffer();
+            int n;
+            while ((n = decoder.decode(pcm.clear())) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+}
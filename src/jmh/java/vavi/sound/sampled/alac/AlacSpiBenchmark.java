@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.alac;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.beatofthedrum.alacdecoder.Fixture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+/**
+ * A generated m4a in memory to pcm through {@link AudioSystem}, as applications do.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlacSpiBenchmark {
+
+    @Param({"16", "24"})
+    int bits;
+
+    @Param({"1", "2"})
+    int channels;
+
+    private byte[] m4a;
+    private AudioFormat pcmFormat;
+    private AudioFormat floatFormat;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    @Setup
+    public void setup() {
+        m4a = Fixture.of(bits, channels, 4096, 10).m4a;
+        pcmFormat = new AudioFormat(Fixture.SAMPLE_RATE, bits, channels, true, false);
+        floatFormat = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, Fixture.SAMPLE_RATE, 32, channels, 4 * channels, Fixture.SAMPLE_RATE, true);
+    }
+
+    /** 10 seconds of pcm */
+    @Benchmark
+    public long decode() throws Exception {
+        return read(AudioSystem.getAudioInputStream(pcmFormat, AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a))));
+    }
+
+    /** 10 seconds of float pcm by the decoder */
+    @Benchmark
+    public long decodeFloat() throws Exception {
+        return read(AudioSystem.getAudioInputStream(floatFormat, AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a))));
+    }
+
+    /** 10 seconds of float pcm by java sound from the pcm */
+    @Benchmark
+    public long decodeFloatTwoStages() throws Exception {
+        AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a));
+        return read(AudioSystem.getAudioInputStream(floatFormat, AudioSystem.getAudioInputStream(pcmFormat, ais)));
+    }
+
+    /** */
+    private long read(AudioInputStream ais) throws Exception {
+        long bytes = 0;
+        try (ais) {
+            int n;
+            while ((n = ais.read(buffer)) != -1) {
+                bytes += n;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.util.Arrays;
+
+
+/**
+ * ALAC decoder for a session of raw frames described by sdp fmtp parameters (airplay).
+ * <p>
+ * build once per stream and call {@link #decodeFrame(byte[], int[])} for each packet,
+ * the buffers are allocated at the first frame, decoding allocates nothing after it.
+ * an instance is not thread safe, an {@link AlacConfig} can be shared by decoders of threads.
+ * <pre>
+ * fmtp: [payload type, frame length, compatible version, bit depth, pb, mb, kb,
+ *        channels, max run, max frame bytes, avg bit rate, sample rate]
+ * e.g.  96 352 0 16 40 10 14 2 255 0 0 44100
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class AirPlayDecoder {
+
+    /** copy of the parameters, null: built from a config */
+    private final int[] fmtp;
+
+    private final AlacFile alacFile;
+
+    /**
+     * @param fmtp sdp fmtp parameters
+     * @throws IllegalArgumentException unsupported parameters
+     */
+    public AirPlayDecoder(int[] fmtp) {
+        this.fmtp = fmtp.clone();
+        this.alacFile = new AlacFile(AlacConfig.fromFmtp(fmtp));
+    }
+
+    /** @param config parameters shared by decoders of sessions or threads */
+    public AirPlayDecoder(AlacConfig config) {
+        this.fmtp = null;
+        this.alacFile = new AlacFile(config);
+    }
+
+    /** @return true when this decoder is built from the same parameters */
+    boolean matches(int[] fmtp) {
+        return this.fmtp != null && Arrays.equals(this.fmtp, fmtp);
+    }
+
+    /**
+     * decodes a frame into ints, 16 bit: a sample per int, 20 (in 24) and 24 bit: a little endian byte per int.
+     *
+     * @return bytes decoded
+     */
+    public int decodeFrame(byte[] inBuffer, int[] outBuffer) {
+        return alacFile.decodeFrame(inBuffer, outBuffer, outBuffer.length);
+    }
+
+    /**
+     * decodes a frame into little endian interleaved pcm.
+     *
+     * @param outBuffer must have {@link #getMaxFrameBytes()} from {@code outOffset}
+     * @return bytes decoded
+     */
+    public int decodeFrame(byte[] inBuffer, byte[] outBuffer, int outOffset) {
+        return alacFile.decodeFrame(inBuffer, outBuffer, outOffset, 0, false);
+    }
+
+    /** bytes of pcm for the biggest frame */
+    public int getMaxFrameBytes() {
+        return alacFile.config.frameLength * alacFile.config.getBytesPerSample();
+    }
+}
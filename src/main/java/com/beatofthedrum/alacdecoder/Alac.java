@@ -11,6 +11,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import javax.sound.sampled.AudioFormat;
 
 import static java.lang.System.getLogger;
@@ -28,18 +31,30 @@ public class Alac implements AutoCloseable {
 
     private final AlacContext context;
 
+    /** the buffers are taken from and given back to, null: not pooled */
+    private DecoderPool pool;
+
     /**
      * Creates ALAC decoder.
-     * @param is accepts only FileInputStream or InputStream which supports mark
+     * @param is FileInputStream or InputStream which supports mark
      *           if "moov" chank in the alac mp4 container is located at back of data,
      *           mark might not work well.
+     *           other streams (pipes, sockets) are spooled to a temporary file as they are read,
+     *           so "moov" after "mdat" works without buffering the stream in the heap.
      * @throws IllegalArgumentException maybe {@code is} is not alac
      */
     public Alac(InputStream is) throws IOException {
         context = new AlacContext();
 
         if (!(is instanceof FileInputStream) && !is.markSupported()) {
-            throw new IOException("is must be mark supported or FileInputStream");
+            AlacSource source = new SpoolingSource(is);
+            try {
+                init(source);
+            } catch (IOException | RuntimeException e) {
+                source.close();
+                throw e;
+            }
+            return;
         }
         if (is.markSupported()) {
             int whole = is.available();
@@ -56,13 +71,7 @@ public class Alac implements AutoCloseable {
 logger.log(Level.DEBUG, "headerRead: " + headerRead);
 
         if (headerRead == 0) {
-            String errorMessage;
-            if (demuxRes.formatRead == 0) {
-                errorMessage = "Failed to load the QuickTime movie headers.";
-            } else {
-                errorMessage = "Error while loading the QuickTime movie headers."
-                        + " File type: " + QTMovieT.splitFourCC(demuxRes.format);
-            }
+            String errorMessage = errorMessage(demuxRes);
 try {
             if (is.markSupported()) {
                 is.reset();
@@ -94,19 +103,95 @@ logger.log(Level.DEBUG, "seek: 0");
             qtMovie.qtStream.skip(qtMovie.savedMDatPos);
         }
 
-        // initialise the sound converter
+        init(demuxRes);
+    }
+
+    /**
+     * Creates ALAC decoder of a local file, frames are decoded in place from a memory mapping.
+     * @throws IllegalArgumentException maybe {@code path} is not alac
+     */
+    public Alac(Path path) throws IOException {
+        context = new AlacContext();
+
+        AlacSource source = FileChannelSource.open(path, true);
+        try {
+            init(source);
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates ALAC decoder, frames are read by their offsets.
+     * the position of "moov" does not matter.
+     * @param source closed by {@link #close()}
+     * @throws IllegalArgumentException maybe {@code source} is not alac
+     */
+    public Alac(AlacSource source) throws IOException {
+        context = new AlacContext();
+
+        init(source);
+    }
+
+    /**
+     * Creates ALAC decoder, frames are read by positioning {@code channel}.
+     * the position of "moov" does not matter, "mdat" before "moov" is skipped without reading.
+     * @param channel closed by {@link #close()}
+     * @throws IllegalArgumentException maybe {@code channel} is not alac
+     */
+    public Alac(SeekableByteChannel channel) throws IOException {
+        this(new SeekableByteChannelSource(channel));
+    }
+
+    /** reads the headers from {@code source} */
+    private void init(AlacSource source) throws IOException {
+        context.setSource(source);
+
+        QTMovieT qtMovie = new QTMovieT(context.inputStream);
+        DemuxResT demuxRes = new DemuxResT();
+        int headerRead = qtMovie.read(demuxRes);
+logger.log(Level.DEBUG, "headerRead: " + headerRead);
+
+        if (headerRead == 0) {
+            throw new IllegalArgumentException(errorMessage(demuxRes));
+        }
+
+        init(demuxRes);
+    }
 
-        AlacFile file = AlacFile.create(demuxRes.sampleSize, demuxRes.numChannels);
+    /** */
+    private static String errorMessage(DemuxResT demuxRes) {
+        if (demuxRes.formatRead == 0) {
+            return "Failed to load the QuickTime movie headers.";
+        } else {
+            return "Error while loading the QuickTime movie headers."
+                    + " File type: " + QTMovieT.splitFourCC(demuxRes.format);
+        }
+    }
 
-        file.setAlacInfo(demuxRes.codecData);
+    /** initialise the sound converter, with buffers of the {@link DecoderPool#getDefault() pool} if any */
+    private void init(DemuxResT demuxRes) {
+        AlacConfig config = AlacConfig.fromCodecData(demuxRes.codecData);
+        DecoderPool pool = DecoderPool.getDefault();
+        AlacFile file = pool != null ? new AlacFile(config, pool.acquire(config)) : new AlacFile(config);
 
         context.demuxRes = demuxRes;
         context.file = file;
+        this.pool = pool;
     }
 
+    /** the buffers go back to the pool, they must not be used after this */
     @Override
     public void close() throws IOException {
-        context.close();
+        try {
+            context.close();
+        } finally {
+            if (pool != null) {
+                pool.release(context.file.buffers);
+                pool = null;
+            }
+        }
     }
 
     /**
@@ -121,6 +206,111 @@ logger.log(Level.DEBUG, "seek: 0");
         return bytesUnpacked;
     }
 
+    /**
+     * Decodes a frame straight into little endian interleaved pcm.
+     * @param pcmBuffer must be {@link #getMaxFrameBytes()} or bigger
+     * @return bytes decoded, -1 finished
+     */
+    public int decode(byte[] pcmBuffer) throws IOException {
+        return context.unpackSamples(pcmBuffer);
+    }
+
+    /**
+     * Decodes a frame straight into interleaved pcm in the byte order of {@code pcmBuffer}.
+     * @param pcmBuffer must have {@link #getMaxFrameBytes()} or more remaining, the position is advanced
+     * @return bytes decoded, -1 finished
+     */
+    public int decode(ByteBuffer pcmBuffer) throws IOException {
+        return context.unpackSamples(pcmBuffer);
+    }
+
+    /**
+     * Decodes a frame into a buffer per channel, without interleaving.
+     * @param channels {@link #getChannels()} buffers of {@link #getMaxSamplesPerFrame()} or more,
+     *                 samples are sign extended ints of {@link #getSampleSizeInBits()}
+     * @return samples per channel decoded, -1 finished
+     */
+    public int decode(int[][] channels) throws IOException {
+        return context.unpackSamples(channels);
+    }
+
+    /**
+     * Decodes a frame into a buffer per channel, without interleaving.
+     * @param channels {@link #getChannels()} buffers of {@link #getMaxSamplesPerFrame()} or more,
+     *                 samples are in [-1, 1)
+     * @return samples per channel decoded, -1 finished
+     */
+    public int decode(float[][] channels) throws IOException {
+        return context.unpackSamples(channels);
+    }
+
+    /** samples per channel of the biggest frame, the size of the buffers for {@link #decode(int[][])} */
+    public int getMaxSamplesPerFrame() {
+        return context.getMaxSamplesPerFrame();
+    }
+
+    /** @param channels from which the elements of a frame are reconstructed in parallel, {@link Integer#MAX_VALUE}: never */
+    void setParallelChannels(int channels) {
+        context.file.setParallelChannels(channels);
+    }
+
+    /** the parameters of the stream, immutable, to be shared e.g. by {@link AirPlayDecoder}s of raw frames */
+    public AlacConfig getConfig() {
+        return context.file.config;
+    }
+
+    /**
+     * Sets the pcm written by {@link #decode(byte[])} and {@link #decode(ByteBuffer)},
+     * every layout is written by its own loop, no further conversion is needed.
+     * {@link #getMaxFrameBytes()} follows the layout.
+     * @param sampleSizeInBits 16, 24 or 32, 0: as decoded (default). ignored when {@code floating}
+     * @param floating 32 bit float in [-1, 1)
+     * @param dither tpdf dither when 24 bit samples are reduced to 16 bit, truncated otherwise
+     * @throws IllegalArgumentException unsupported sample size
+     */
+    public void setOutputFormat(int sampleSizeInBits, boolean floating, boolean dither) {
+        context.file.setOutputFormat(sampleSizeInBits, floating, dither);
+    }
+
+    /**
+     * Sets bytes of frames read at a time when the decoder reads from a source,
+     * contiguous frames up to {@code bytes} are read in a single read.
+     * @param bytes 0: the rest of the chunk of a frame (default)
+     * @throws IllegalArgumentException {@code bytes} is negative
+     * @see #Alac(AlacSource)
+     */
+    public void setReadAhead(int bytes) {
+        context.setReadAhead(bytes);
+    }
+
+    /**
+     * a buffer for {@link #decode(ByteBuffer)}, kept with the buffers of the decoder,
+     * so it is reused from the {@link DecoderPool} if any. the byte order is set by the caller.
+     * @return {@link #getMaxFrameBytes()} or more remaining, valid until {@link #close()}
+     */
+    public ByteBuffer getPcmBuffer() {
+        DecoderPool.Buffers buffers = context.file.buffers;
+        if (buffers.pcmBuffer == null || buffers.pcmBuffer.capacity() < getMaxFrameBytes()) {
+            buffers.pcmBuffer = ByteBuffer.allocate(getMaxFrameBytes());
+        }
+        return buffers.pcmBuffer.clear();
+    }
+
+    /** bytes of pcm for the biggest frame, the size of the buffer for {@link #decode(byte[])} */
+    public int getMaxFrameBytes() {
+        return context.getMaxFrameBytes();
+    }
+
+    /**
+     * Moves to the position, the next decoding starts from it.
+     * a position beyond the end makes the stream finished.
+     * @param sample position in samples per channel
+     * @throws IllegalArgumentException {@code sample} is negative
+     */
+    public void seek(long sample) throws IOException {
+        context.setPosition(sample);
+    }
+
     /**
      * Returns the sample rate of the specified ALAC file
      * @see javax.sound.sampled.AudioFormat#getSampleRate()
@@ -189,26 +379,31 @@ logger.log(Level.DEBUG, "seek: 0");
         }
     }
 
-    /** used by airplay */
-    public static int decodeFrame(int[] fmtp, byte[] inBuffer, int[] outBuffer, int outputSize) {
+    /** number of decoders cached per thread */
+    private static final int DECODER_CACHE_SIZE = 4;
 
-        AlacFile alacFile = new AlacFile();
+    /** recently used decoders, most recent first */
+    private static final ThreadLocal<AirPlayDecoder[]> decoders = ThreadLocal.withInitial(() -> new AirPlayDecoder[DECODER_CACHE_SIZE]);
 
-        alacFile.numChannels = 2;
-        alacFile.bytesPerSample = (fmtp[3] / 8) * 2;
+    /**
+     * used by airplay.
+     * decoders are cached per thread by {@code fmtp}, use {@link AirPlayDecoder} directly for a session.
+     */
+    public static int decodeFrame(int[] fmtp, byte[] inBuffer, int[] outBuffer, int outputSize) {
+        AirPlayDecoder[] cache = decoders.get();
 
-        alacFile.setInfo_maxSamplesPerFrame = fmtp[1];
-        alacFile.setInfo_7A = fmtp[2];
-        alacFile.setInfo_sampleSize = fmtp[3];
-        alacFile.setInfo_riceHistoryMult = fmtp[4];
-        alacFile.setInfo_riceInitialHistory = fmtp[5];
-        alacFile.setInfo_riceKModifier = fmtp[6];
-        alacFile.setInfo_7f = fmtp[7];
-        alacFile.setInfo_80 = fmtp[8];
-        alacFile.setInfo_82 = fmtp[9];
-        alacFile.setInfo_86 = fmtp[10];
-        alacFile.setInfo_8a_rate = fmtp[11];
+        int i = 0;
+        while (i < cache.length - 1 && cache[i] != null && !cache[i].matches(fmtp)) {
+            i++;
+        }
+        AirPlayDecoder decoder = cache[i];
+        if (decoder == null || !decoder.matches(fmtp)) {
+            // least recently used one is dropped
+            decoder = new AirPlayDecoder(fmtp);
+        }
+        System.arraycopy(cache, 0, cache, 1, i);
+        cache[0] = decoder;
 
-        return alacFile.decodeFrame(inBuffer, outBuffer, outputSize);
+        return decoder.decodeFrame(inBuffer, outBuffer);
     }
 }
@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Arrays;
+import java.util.Objects;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Parameters of an ALAC stream, the magic cookie (ALACSpecificConfig) and the channel layout.
+ * <p>
+ * immutable, parsed once and shared by any number of decoders, which hold their own state
+ * (a decoder per thread, a pool of them ...).
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public final class AlacConfig {
+
+    private static final Logger logger = getLogger(AlacConfig.class.getName());
+
+    /** the biggest max samples per frame accepted, buffers are allocated by it */
+    static final int MAX_FRAME_LENGTH = 65536;
+
+    /** max samples per channel of a frame, the size of the buffers */
+    final int frameLength;
+    final int compatibleVersion;
+    /** bits of a sample */
+    final int bitDepth;
+    /** rice history multiplier */
+    final int pb;
+    /** rice initial history */
+    final int mb;
+    /** rice k modifier */
+    final int kb;
+    final int numChannels;
+    final int maxRun;
+    /** max coded frame size, 0: unknown */
+    final int maxFrameBytes;
+    /** average bit rate, 0: unknown */
+    final int avgBitRate;
+    final int sampleRate;
+    /** the channel of a frame for each channel written, null: as they are */
+    private final int[] channelMap;
+
+    /**
+     * @param channelLayoutTag a layout tag of a "chan" atom, -1: the default of alac for the channels
+     * @throws IllegalArgumentException unsupported channels, bit depth or max samples per frame
+     */
+    AlacConfig(int frameLength, int compatibleVersion, int bitDepth, int pb, int mb, int kb,
+               int numChannels, int maxRun, int maxFrameBytes, int avgBitRate, int sampleRate, int channelLayoutTag) {
+        if (numChannels < 1 || numChannels > ChannelLayout.MAX_CHANNELS) {
+            throw new IllegalArgumentException("unsupported channels: " + numChannels);
+        }
+        // 32 bits are not decoded yet
+        if (bitDepth != 16 && bitDepth != 20 && bitDepth != 24) {
+            throw new IllegalArgumentException("unsupported bit depth: " + bitDepth);
+        }
+        if (frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("max samples per frame: " + frameLength + " more than " + MAX_FRAME_LENGTH);
+        }
+        if (frameLength <= 0) {
+            logger.log(Level.WARNING, "max samples per frame: " + frameLength + ", as 4096");
+            frameLength = 4096;
+        }
+        this.frameLength = frameLength;
+        this.compatibleVersion = compatibleVersion;
+        this.bitDepth = bitDepth;
+        this.pb = pb;
+        this.mb = mb;
+        this.kb = kb;
+        this.numChannels = numChannels;
+        this.maxRun = maxRun;
+        this.maxFrameBytes = maxFrameBytes;
+        this.avgBitRate = avgBitRate;
+        this.sampleRate = sampleRate;
+        if (channelLayoutTag != -1) {
+            this.channelMap = ChannelLayout.channelMap(channelLayoutTag, numChannels);
+        } else if (numChannels > 2) {
+            this.channelMap = ChannelLayout.channelMap(ChannelLayout.defaultTag(numChannels), numChannels);
+        } else {
+            this.channelMap = null;
+        }
+    }
+
+    /**
+     * parses the sample description read by {@link QTMovieT}, the "alac" atom and a "chan" atom following it.
+     *
+     * @param codecData bytes in ints, signed as they are read
+     * @throws IllegalArgumentException unsupported parameters
+     */
+    static AlacConfig fromCodecData(int[] codecData) {
+        int index = 0;
+        index += 4; // size
+        index += 4; // frma
+        index += 4; // file
+        index += 4; // size
+        index += 4; // file
+
+        index += 4; // 0 ?
+
+        int frameLength = readInt(codecData, index);
+        index += 4;
+        int compatibleVersion = codecData[index] & 0xff;
+        index += 1;
+        int bitDepth = codecData[index] & 0xff;
+        index += 1;
+        int pb = codecData[index] & 0xff;
+        index += 1;
+        int mb = codecData[index] & 0xff;
+        index += 1;
+        int kb = codecData[index] & 0xff;
+        index += 1;
+        int numChannels = codecData[index] & 0xff;
+        index += 1;
+        int maxRun = ((codecData[index] & 0xff) << 8) | (codecData[index + 1] & 0xff);
+        index += 2;
+        int maxFrameBytes = readInt(codecData, index);
+        index += 4;
+        int avgBitRate = readInt(codecData, index);
+        index += 4;
+        int sampleRate = readInt(codecData, index);
+        index += 4;
+
+        // atoms following the alac atom in the sample description
+        int channelLayoutTag = -1;
+        while (index + 16 <= codecData.length) {
+            int size = readInt(codecData, index);
+            if (size < 8) {
+                break;
+            }
+            if (readInt(codecData, index + 4) == 0x6368_616e && size >= 16) { // "chan"
+                // version and flags, then the layout tag
+                channelLayoutTag = readInt(codecData, index + 12);
+            }
+            index += size;
+        }
+
+        return new AlacConfig(frameLength, compatibleVersion, bitDepth, pb, mb, kb,
+                numChannels, maxRun, maxFrameBytes, avgBitRate, sampleRate, channelLayoutTag);
+    }
+
+    /**
+     * @param fmtp sdp fmtp parameters of AirPlay (RAOP), "96 352 0 16 40 10 14 2 255 0 0 44100"
+     * @throws IllegalArgumentException unsupported parameters
+     */
+    public static AlacConfig fromFmtp(int[] fmtp) {
+        return new AlacConfig(fmtp[1], fmtp[2], fmtp[3], fmtp[4], fmtp[5], fmtp[6],
+                fmtp[7], fmtp[8], fmtp[9], fmtp[10], fmtp[11], -1);
+    }
+
+    /** reads a big endian int from bytes in ints */
+    private static int readInt(int[] buffer, int index) {
+        return ((buffer[index] & 0xff) << 24) | ((buffer[index + 1] & 0xff) << 16) | ((buffer[index + 2] & 0xff) << 8) | (buffer[index + 3] & 0xff);
+    }
+
+    /** the channel of a frame for a channel written */
+    int channel(int channel) {
+        return this.channelMap != null ? this.channelMap[channel] : channel;
+    }
+
+    /** bytes of a sample frame (all channels) as decoded, 20 bits are in 3 bytes */
+    int getBytesPerSample() {
+        return (this.bitDepth + 7) / 8 * this.numChannels;
+    }
+
+    /** max samples per channel of a frame */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /** bits of a sample */
+    public int getBitDepth() {
+        return bitDepth;
+    }
+
+    public int getNumChannels() {
+        return numChannels;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** max coded frame size, 0: unknown */
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+    /** average bit rate, 0: unknown */
+    public int getAvgBitRate() {
+        return avgBitRate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AlacConfig that)) return false;
+        return frameLength == that.frameLength && compatibleVersion == that.compatibleVersion &&
+               bitDepth == that.bitDepth && pb == that.pb && mb == that.mb && kb == that.kb &&
+               numChannels == that.numChannels && maxRun == that.maxRun && maxFrameBytes == that.maxFrameBytes &&
+               avgBitRate == that.avgBitRate && sampleRate == that.sampleRate && Arrays.equals(channelMap, that.channelMap);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(frameLength, bitDepth, numChannels, sampleRate, maxFrameBytes) * 31 + Arrays.hashCode(channelMap);
+    }
+
+    @Override
+    public String toString() {
+        return "AlacConfig{frameLength=" + frameLength + ", bitDepth=" + bitDepth + ", numChannels=" + numChannels +
+               ", sampleRate=" + sampleRate + ", pb=" + pb + ", mb=" + mb + ", kb=" + kb + ", maxRun=" + maxRun +
+               ", maxFrameBytes=" + maxFrameBytes + ", avgBitRate=" + avgBitRate +
+               ", channelMap=" + Arrays.toString(channelMap) + '}';
+    }
+}
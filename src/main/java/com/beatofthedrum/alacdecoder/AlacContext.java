@@ -8,6 +8,7 @@
 
 package com.beatofthedrum.alacdecoder;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -15,6 +16,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 
 import static java.lang.System.getLogger;
@@ -27,6 +29,9 @@ public class AlacContext {
 
     private static final Logger logger = getLogger(AlacContext.class.getName());
 
+    /** upper limit of bytes read at a time in chunk mode */
+    private static final int MAX_WINDOW = 4 * 1024 * 1024;
+
     /**
      * @author Denis Tulskiy
      * @since 4/7/11
@@ -57,7 +62,7 @@ logger.log(Level.DEBUG, "position: " + fc.position());
                 in.mark(total);
 logger.log(Level.DEBUG, "reset: " + in.available());
                 if (pos != 0)
-                    skipBytes((int) pos);
+                    in.skipNBytes(pos);
             }
         }
     }
@@ -66,9 +71,21 @@ logger.log(Level.DEBUG, "reset: " + in.available());
     AlacFile file;
     AlacInputStream inputStream;
     private int currentSampleBlock = 0;
+    /** samples per channel to be skipped in the next frame */
     private int offset;
-    /** sample big enough to hold any input for a single file frame */
-    private final byte[] readBuffer = new byte[1024 * 80];
+    /** frames are read from this by offsets when it's not null */
+    private AlacSource source;
+    /** bytes read ahead at a time from the source, 0: a chunk at a time */
+    private int readAhead;
+    /** frames read from the source at a time, valid until the next read */
+    private ByteBuffer window;
+    /** file offset of the window */
+    private long windowStart;
+    /** position of the first byte in the window */
+    private int windowBase;
+    /** bytes in the window */
+    private int windowLength;
+    private MyStream myStream;
 
     /** old original factory */
     public static AlacContext openFileInput(File inputFile) throws IOException {
@@ -112,9 +129,7 @@ logger.log(Level.DEBUG, "reset: " + in.available());
 
         // initialise the sound converter
 
-        file = AlacFile.create(demuxRes.sampleSize, demuxRes.numChannels);
-
-        file.setAlacInfo(demuxRes.codecData);
+        file = new AlacFile(AlacConfig.fromCodecData(demuxRes.codecData));
 
         context.demuxRes = demuxRes;
         context.file = file;
@@ -122,75 +137,70 @@ logger.log(Level.DEBUG, "reset: " + in.available());
         return context;
     }
 
+    /**
+     * frames are read by their offsets from {@code source}, the headers are read sequentially.
+     * the source is closed by {@link #close()}.
+     */
+    public void setSource(AlacSource source) throws IOException {
+        this.source = source;
+        setInputStream(new BufferedInputStream(new SourceInputStream(source)));
+    }
+
+    /**
+     * sets bytes of frames read from a source at a time.
+     * contiguous frames are read in a single read up to {@code bytes}, at least a frame is read.
+     *
+     * @param bytes 0: the rest of the chunk (stsc) of a frame (default)
+     * @throws IllegalArgumentException {@code bytes} is negative
+     */
+    public void setReadAhead(int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("negative read ahead: " + bytes);
+        }
+        this.readAhead = bytes;
+    }
+
     /** */
     public void setInputStream(InputStream is) throws IOException {
         inputStream = new AlacInputStream(is);
+        myStream = new MyStream(inputStream);
+    }
+
+    /** built at the first use */
+    private SeekIndex seekIndex;
+
+    /** */
+    SeekIndex getSeekIndex() throws IOException {
+        if (this.seekIndex == null) {
+            this.seekIndex = new SeekIndex(this.demuxRes);
+        }
+        return this.seekIndex;
     }
 
     /**
-     * sets position in pcm samples
+     * sets position in pcm samples, a position beyond the end makes the stream finished.
      *
      * @param position position in pcm samples to go to
-     * @throws IllegalArgumentException at getSampleInfo
+     * @throws IllegalArgumentException position is negative
      */
     public void setPosition(long position) throws IOException {
-        DemuxResT res = this.demuxRes;
-
-        int currentPosition = 0;
-        int currentSample = 0;
-        DemuxResT.SampleDuration sampleInfo = new DemuxResT.SampleDuration();
-        for (int i = 0; i < res.stsc.length; i++) {
-            DemuxResT.ChunkInfo chunkInfo = res.stsc[i];
-            int lastChunk;
-
-            if (i < res.stsc.length - 1) {
-                lastChunk = res.stsc[i + 1].firstChunk;
-            } else {
-                lastChunk = res.stco.length;
-            }
+        SeekIndex index = getSeekIndex();
 
-            for (int chunk = chunkInfo.firstChunk; chunk <= lastChunk; chunk++) {
-                int pos = res.stco[chunk - 1];
-                int sampleCount = chunkInfo.samplesPerChunk;
-                while (sampleCount > 0) {
-                    res.getSampleInfo(currentSample, sampleInfo);
-                    currentPosition += sampleInfo.sampleDuration;
-                    if (position < currentPosition) {
-                        this.inputStream.seek(pos);
-                        this.currentSampleBlock = currentSample;
-                        this.offset = (int) (position - (currentPosition - sampleInfo.sampleDuration)) * getNumChannels();
-                        return;
-                    }
-                    pos += sampleInfo.sampleByteSize;
-                    currentSample++;
-                    sampleCount--;
-                }
+        int frame = index.frameOf(position);
+        if (frame < index.size()) {
+            if (this.source == null) {
+                this.inputStream.seek(index.byteOffset(frame));
             }
+            this.offset = (int) (position - index.sampleStart(frame));
+        } else {
+            this.offset = 0;
         }
+        this.currentSampleBlock = frame;
     }
 
-    /** Get total number of samples contained in the Apple Lossless file, or -1 if unknown */
+    /** Get total number of samples contained in the Apple Lossless file */
     public int getNumSamples() throws IOException {
-        // calculate output size
-        int numSamples = 0;
-        @SuppressWarnings("unused")
-        boolean errorFound = false;
-        @SuppressWarnings("unused")
-        int retVal = 0;
-
-        for (int i = 0; i < this.demuxRes.sampleByteSize.length; i++) {
-            int thisSampleDuration = 0;
-            int thisSampleByteSize = 0;
-
-            DemuxResT.SampleDuration sampleInfo = new DemuxResT.SampleDuration();
-            this.demuxRes.getSampleInfo(i, sampleInfo);
-            thisSampleDuration = sampleInfo.sampleDuration;
-            thisSampleByteSize = sampleInfo.sampleByteSize;
-
-            numSamples += thisSampleDuration;
-        }
-
-        return numSamples;
+        return (int) getSeekIndex().getNumSamples();
     }
 
     public int getBytesPerSample() {
@@ -226,38 +236,161 @@ logger.log(Level.DEBUG, "reset: " + in.available());
         }
     }
 
+    /**
+     * reads and decodes the next frame
+     * @return samples per channel, -1 finished
+     */
+    private int decodeFrame() throws IOException {
+        // if currentSampleBlock is beyond last block then finished
+        if (this.currentSampleBlock >= this.demuxRes.sampleTable.getFrameCount()) {
+            return -1;
+        }
+
+        int sampleByteSize = this.demuxRes.sampleTable.getFrameSize(this.currentSampleBlock);
+
+        ByteBuffer frame;
+        if (this.source != null) {
+            long position = getSeekIndex().byteOffset(this.currentSampleBlock);
+            if (this.window == null || position < this.windowStart || position + sampleByteSize > this.windowStart + this.windowLength) {
+                fillWindow(this.currentSampleBlock);
+            }
+            // in place, no copy
+            int start = this.windowBase + (int) (position - this.windowStart);
+            frame = this.window.limit(Math.min(start + sampleByteSize, this.windowBase + this.windowLength)).position(start);
+        } else {
+            // big enough to hold any input for a single file frame, kept with the buffers of the decoder
+            ByteBuffer readBuffer = this.file.buffers.readBuffer;
+            if (readBuffer == null || readBuffer.capacity() < this.demuxRes.sampleTable.getMaxFrameSize()) {
+                readBuffer = ByteBuffer.allocate(this.demuxRes.sampleTable.getMaxFrameSize());
+                this.file.buffers.readBuffer = readBuffer;
+            }
+            this.myStream.read(sampleByteSize, readBuffer.array(), 0);
+            frame = readBuffer.clear().limit(sampleByteSize);
+        }
+
+        this.currentSampleBlock = this.currentSampleBlock + 1;
+        return this.file.decodeSamples(frame);
+    }
+
+    /** reads contiguous frames from {@code frame} in a single read */
+    private void fillWindow(int frame) throws IOException {
+        SeekIndex index = getSeekIndex();
+        SampleTable sampleTable = this.demuxRes.sampleTable;
+        int last = this.readAhead == 0 ? index.chunkEnd(frame) : index.size();
+        int limit = this.readAhead == 0 ? MAX_WINDOW : this.readAhead;
+
+        long start = index.byteOffset(frame);
+        long end = start + sampleTable.getFrameSize(frame);
+        for (int i = frame + 1; i < last && index.byteOffset(i) == end; i++) {
+            long next = end + sampleTable.getFrameSize(i);
+            if (next - start > limit) {
+                break;
+            }
+            end = next;
+        }
+
+        this.window = this.source.read(start, (int) (end - start));
+        this.windowStart = start;
+        this.windowBase = this.window.position();
+        this.windowLength = this.window.remaining();
+    }
+
     /**
      * Here's where we extract the actual music data
      * @return -1 finished
      */
     public int unpackSamples(int[] destBuffer) throws IOException {
-        DemuxResT.SampleDuration sampleInfo = new DemuxResT.SampleDuration();
-        byte[] readBuffer = this.readBuffer;
-//        int destBufferSize = 1024 * 24 * 3; // 24kb buffer = 4096 frames = 1 file sample (we support max 24bps)
-        int destBufferSize = destBuffer.length;
-        MyStream inputStream = new MyStream(this.inputStream);
+        int outputSamples = decodeFrame();
+        if (outputSamples == -1) {
+            return -1;
+        }
 
-        // if currentSampleBlock is beyond last block then finished
-        if (this.currentSampleBlock >= this.demuxRes.sampleByteSize.length) {
+        // now fetch
+        int outputBytes = this.file.writeInts(destBuffer, outputSamples);
+
+        if (this.offset != 0) {
+            // 16 bit: an int per sample, 24 bit: an int per byte
+            int intsPerSample = this.getBytesPerSample() == 3 ? 3 : 1;
+            int offset = this.offset * this.getNumChannels() * intsPerSample;
+            outputBytes -= this.offset * this.getNumChannels() * this.getBytesPerSample();
+            System.arraycopy(destBuffer, offset, destBuffer, 0, outputBytes / this.getBytesPerSample() * intsPerSample);
+        }
+        this.offset = 0;
+        return outputBytes;
+    }
+
+    /**
+     * decodes a frame straight into little endian interleaved pcm.
+     * @param pcmBuffer must have room for a whole frame
+     * @return bytes decoded, -1 finished
+     */
+    public int unpackSamples(byte[] pcmBuffer) throws IOException {
+        int outputSamples = decodeFrame();
+        if (outputSamples == -1) {
             return -1;
         }
 
-        this.demuxRes.getSampleInfo(this.currentSampleBlock, sampleInfo);
+        int outputBytes = this.file.writePcm(pcmBuffer, 0, Math.min(this.offset, outputSamples), outputSamples, false);
+        this.offset = 0;
+        return outputBytes;
+    }
 
-        int sampleByteSize = sampleInfo.sampleByteSize;
+    /**
+     * decodes a frame straight into interleaved pcm in the byte order of {@code pcmBuffer}.
+     * @param pcmBuffer must have room for a whole frame, the position is advanced
+     * @return bytes decoded, -1 finished
+     */
+    public int unpackSamples(ByteBuffer pcmBuffer) throws IOException {
+        int outputSamples = decodeFrame();
+        if (outputSamples == -1) {
+            return -1;
+        }
 
-        inputStream.read(sampleByteSize, readBuffer, 0);
+        int outputBytes = this.file.writePcm(pcmBuffer, Math.min(this.offset, outputSamples), outputSamples);
+        this.offset = 0;
+        return outputBytes;
+    }
 
-        // now fetch
-        int outputBytes = destBufferSize;
+    /**
+     * decodes a frame into planar int buffers.
+     * @param channels a buffer per channel, must have room for a whole frame
+     * @return samples per channel decoded, -1 finished
+     */
+    public int unpackSamples(int[][] channels) throws IOException {
+        int outputSamples = decodeFrame();
+        if (outputSamples == -1) {
+            return -1;
+        }
 
-        outputBytes = this.file.decodeFrame(readBuffer, destBuffer, outputBytes);
+        int samples = this.file.writePlanar(channels, Math.min(this.offset, outputSamples), outputSamples);
+        this.offset = 0;
+        return samples;
+    }
 
-        this.currentSampleBlock = this.currentSampleBlock + 1;
-        outputBytes -= this.offset * this.getBytesPerSample();
-        System.arraycopy(destBuffer, this.offset, destBuffer, 0, outputBytes);
+    /**
+     * decodes a frame into planar float buffers.
+     * @param channels a buffer per channel, must have room for a whole frame
+     * @return samples per channel decoded, -1 finished
+     */
+    public int unpackSamples(float[][] channels) throws IOException {
+        int outputSamples = decodeFrame();
+        if (outputSamples == -1) {
+            return -1;
+        }
+
+        int samples = this.file.writePlanar(channels, Math.min(this.offset, outputSamples), outputSamples);
         this.offset = 0;
-        return outputBytes;
+        return samples;
+    }
+
+    /** samples per channel of the biggest frame */
+    public int getMaxSamplesPerFrame() {
+        return this.file.config.frameLength;
+    }
+
+    /** bytes of pcm for the biggest frame */
+    public int getMaxFrameBytes() {
+        return this.file.config.frameLength * this.file.getOutputBytesPerSample();
     }
 
     /** */
@@ -0,0 +1,589 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+
+/**
+ * Apple Lossless encoder. encodes one frame at a time, the exact inverse of
+ * {@link AlacFile#decodeFrame}.
+ * <p>
+ * an instance is not thread safe, use one per thread.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class AlacEncoder {
+
+    /** samples per channel in a frame */
+    public static final int DEFAULT_FRAME_SIZE = 4096;
+
+    // magic cookie defaults same as apple's reference encoder
+    static final int PB0 = 40;
+    static final int MB0 = 10;
+    static final int KB0 = 14;
+    static final int MAX_RUN = 255;
+
+    /** predictor quantization (denominator shift) */
+    private static final int QUANT = 9;
+    /** predictor orders to try */
+    private static final int[] ORDERS = {4, 8};
+    /** rice modifiers to try */
+    private static final int[] RICE_MODIFIERS = {4, 2, 6};
+    /** interlacing shift */
+    private static final int MIX_BITS = 2;
+    /** max interlacing left weight */
+    private static final int MAX_MIX_RES = 4;
+
+    private final int sampleRate;
+    private final int sampleSize;
+    private final int numChannels;
+    private final int frameSize;
+    /** bytes per sample stored uncompressed in a compressed frame */
+    private final int shift;
+    /** elements of a frame */
+    private final int[] elements;
+    /** the channel of pcm for each channel of a frame */
+    private final int[] sources;
+
+    private final BitWriter writer = new BitWriter();
+
+    private final int[] mixA;
+    private final int[] mixB;
+    private final int[] shiftA;
+    private final int[] shiftB;
+    private final int[] residual;
+    private final int[] residualA;
+    private final int[] residualB;
+    private final int[] coefs = new int[32];
+    private final int[] coefsA = new int[32];
+    private final int[] coefsB = new int[32];
+    private final int[] coefsWork = new int[32];
+    private final double[] window;
+    private final double[] autoc = new double[33];
+    private final double[] lpc = new double[33];
+    private final double[] lpcWork = new double[33];
+
+    private int maxFrameBytes;
+    private long totalBytes;
+    private long totalSamples;
+
+    /**
+     * @param sampleSize 16 or 24
+     * @param numChannels 1 to 8, pcm is in the order of wave (L R C LFE Ls Rs ...)
+     * @param frameSize samples per channel in a frame
+     */
+    public AlacEncoder(int sampleRate, int sampleSize, int numChannels, int frameSize) {
+        if (sampleSize != 16 && sampleSize != 24) {
+            throw new IllegalArgumentException("unsupported sample size: " + sampleSize);
+        }
+        this.elements = ChannelLayout.elements(numChannels);
+        this.sources = ChannelLayout.sourceMap(ChannelLayout.defaultTag(numChannels), numChannels);
+        this.sampleRate = sampleRate;
+        this.sampleSize = sampleSize;
+        this.numChannels = numChannels;
+        this.frameSize = frameSize;
+        this.shift = sampleSize > 16 ? 1 : 0;
+
+        mixA = new int[frameSize];
+        mixB = new int[frameSize];
+        shiftA = new int[frameSize];
+        shiftB = new int[frameSize];
+        residual = new int[frameSize];
+        residualA = new int[frameSize];
+        residualB = new int[frameSize];
+        window = new double[frameSize];
+    }
+
+    public AlacEncoder(int sampleRate, int sampleSize, int numChannels) {
+        this(sampleRate, sampleSize, numChannels, DEFAULT_FRAME_SIZE);
+    }
+
+    /** samples per channel in a frame */
+    public int getFrameSize() {
+        return frameSize;
+    }
+
+    /** worst case encoded size of one frame in bytes */
+    public int getMaxEncodedFrameSize() {
+        // headers + raw samples + end tag
+        return 16 * elements.length + frameSize * numChannels * ((sampleSize + 7) / 8) + 1;
+    }
+
+    /**
+     * encodes one frame.
+     *
+     * @param pcm interleaved samples, sign extended
+     * @param numSamples samples per channel, up to {@link #getFrameSize()}
+     * @param out at least {@link #getMaxEncodedFrameSize()} bytes from {@code offset}
+     * @return encoded bytes
+     */
+    public int encodeFrame(int[] pcm, int numSamples, byte[] out, int offset) {
+        if (numSamples > frameSize) {
+            throw new IllegalArgumentException("too many samples: " + numSamples);
+        }
+        writer.reset(out, offset);
+        int channel = 0;
+        for (int element : elements) {
+            if (element == ChannelLayout.ID_CPE) {
+                encodeStereo(pcm, numSamples, channel);
+                channel += 2;
+            } else {
+                encodeMono(pcm, numSamples, element, channel);
+                channel++;
+            }
+        }
+        int size = finish(offset);
+        maxFrameBytes = Math.max(maxFrameBytes, size);
+        totalBytes += size;
+        totalSamples += numSamples;
+        return size;
+    }
+
+    /**
+     * the 24 bytes ALACSpecificConfig (magic cookie).
+     * max frame bytes and bit rate reflect the frames encoded so far.
+     */
+    public byte[] getCookie() {
+        int bitRate = totalSamples == 0 ? 0 : (int) (totalBytes * 8 * sampleRate / totalSamples);
+        return cookie(sampleRate, sampleSize, numChannels, frameSize, maxFrameBytes, bitRate);
+    }
+
+    /** the 24 bytes ALACSpecificConfig, read back by {@link AlacConfig#fromCodecData} */
+    static byte[] cookie(int sampleRate, int sampleSize, int numChannels, int frameSize, int maxFrameBytes, int bitRate) {
+        return new byte[] {
+            (byte) (frameSize >> 24), (byte) (frameSize >> 16), (byte) (frameSize >> 8), (byte) frameSize,
+            0, // compatible version
+            (byte) sampleSize,
+            PB0, MB0, KB0,
+            (byte) numChannels,
+            (byte) (MAX_RUN >> 8), (byte) MAX_RUN,
+            (byte) (maxFrameBytes >> 24), (byte) (maxFrameBytes >> 16), (byte) (maxFrameBytes >> 8), (byte) maxFrameBytes,
+            (byte) (bitRate >> 24), (byte) (bitRate >> 16), (byte) (bitRate >> 8), (byte) bitRate,
+            (byte) (sampleRate >> 24), (byte) (sampleRate >> 16), (byte) (sampleRate >> 8), (byte) sampleRate
+        };
+    }
+
+    /** writes a single channel or lfe element of {@code channel} of the frame */
+    private void encodeMono(int[] pcm, int numSamples, int element, int channel) {
+        int chanBits = sampleSize - shift * 8;
+        int[] a = mixA;
+        int source = sources[channel];
+        for (int i = 0; i < numSamples; i++) {
+            int s = pcm[i * numChannels + source];
+            if (shift != 0) {
+                shiftA[i] = s & 0xff;
+                s >>= 8;
+            }
+            a[i] = s;
+        }
+
+        int order = choosePredictor(a, numSamples, chanBits, coefsA, residualA);
+        int pb = chooseRiceModifier(residualA, numSamples, chanBits);
+        long bits = 16 + 16 + order * 16L + shift * 8L * numSamples + riceBits;
+        if (bits > (long) numSamples * sampleSize) {
+            encodeVerbatim(pcm, numSamples, element, channel, 1);
+            return;
+        }
+
+        BitWriter w = this.writer;
+        writeHeader(element, numSamples, shift, false);
+        w.write(0, 16);
+        writeChannelHeader(order, pb, coefsA);
+        if (shift != 0) {
+            for (int i = 0; i < numSamples; i++) {
+                w.write(shiftA[i], 8);
+            }
+        }
+        rice(residualA, numSamples, chanBits, pb, true);
+    }
+
+    /** writes a channel pair element of {@code channel} and the next of the frame */
+    private void encodeStereo(int[] pcm, int numSamples, int channel) {
+        int chanBits = sampleSize - shift * 8 + 1;
+        int[] l = mixA;
+        int[] r = mixB;
+        int sourceL = sources[channel];
+        int sourceR = sources[channel + 1];
+        for (int i = 0; i < numSamples; i++) {
+            int sl = pcm[i * numChannels + sourceL];
+            int sr = pcm[i * numChannels + sourceR];
+            if (shift != 0) {
+                shiftA[i] = sl & 0xff;
+                shiftB[i] = sr & 0xff;
+                sl >>= 8;
+                sr >>= 8;
+            }
+            l[i] = sl;
+            r[i] = sr;
+        }
+
+        // search the stereo decorrelation weight, then mix in place
+        int mixRes = chooseMixRes(l, r, numSamples);
+        for (int i = 0; i < numSamples; i++) {
+            int left = l[i];
+            int right = r[i];
+            if (mixRes != 0) {
+                int difference = left - right;
+                l[i] = right + ((difference * mixRes) >> MIX_BITS);
+                r[i] = difference;
+            }
+        }
+
+        int orderA = choosePredictor(l, numSamples, chanBits, coefsA, residualA);
+        int pbA = chooseRiceModifier(residualA, numSamples, chanBits);
+        long bits = riceBits;
+        int orderB = choosePredictor(r, numSamples, chanBits, coefsB, residualB);
+        int pbB = chooseRiceModifier(residualB, numSamples, chanBits);
+        bits += riceBits;
+        bits += 16 + 16 * 2 + (orderA + orderB) * 16L + shift * 16L * numSamples;
+        if (bits > (long) numSamples * sampleSize * 2) {
+            encodeVerbatim(pcm, numSamples, ChannelLayout.ID_CPE, channel, 2);
+            return;
+        }
+
+        BitWriter w = this.writer;
+        writeHeader(ChannelLayout.ID_CPE, numSamples, shift, false);
+        w.write(mixRes != 0 ? MIX_BITS : 0, 8);
+        w.write(mixRes, 8);
+        writeChannelHeader(orderA, pbA, coefsA);
+        writeChannelHeader(orderB, pbB, coefsB);
+        if (shift != 0) {
+            for (int i = 0; i < numSamples; i++) {
+                w.write(shiftA[i], 8);
+                w.write(shiftB[i], 8);
+            }
+        }
+        rice(residualA, numSamples, chanBits, pbA, true);
+        rice(residualB, numSamples, chanBits, pbB, true);
+    }
+
+    /** the uncompressed element escape */
+    private void encodeVerbatim(int[] pcm, int numSamples, int element, int channel, int channels) {
+        BitWriter w = this.writer;
+        writeHeader(element, numSamples, 0, true);
+        for (int i = 0; i < numSamples; i++) {
+            for (int c = channel; c < channel + channels; c++) {
+                int s = pcm[i * numChannels + sources[c]];
+                if (sampleSize <= 16) {
+                    w.write(s, sampleSize);
+                } else {
+                    w.write(s >> (sampleSize - 16), 16);
+                    w.write(s, sampleSize - 16);
+                }
+            }
+        }
+    }
+
+    /** */
+    private void writeHeader(int element, int numSamples, int uncompressedBytes, boolean notCompressed) {
+        BitWriter w = this.writer;
+        w.write(element, 3);
+        w.write(0, 4); // element instance tag
+        w.write(0, 12); // unused
+        boolean hasSize = numSamples != frameSize;
+        w.write(hasSize ? 1 : 0, 1);
+        w.write(uncompressedBytes, 2);
+        w.write(notCompressed ? 1 : 0, 1);
+        if (hasSize) {
+            w.write(numSamples, 32);
+        }
+    }
+
+    /** */
+    private void writeChannelHeader(int order, int riceModifier, int[] coefs) {
+        BitWriter w = this.writer;
+        w.write(0, 4); // prediction type: adaptive fir
+        w.write(QUANT, 4);
+        w.write(riceModifier, 3);
+        w.write(order, 5);
+        for (int i = 0; i < order; i++) {
+            w.write(coefs[i], 16);
+        }
+    }
+
+    /** writes the end tag and pads */
+    private int finish(int offset) {
+        BitWriter w = this.writer;
+        w.write(ChannelLayout.ID_END, 3);
+        w.align();
+        return w.index() - offset;
+    }
+
+    /**
+     * picks the interlacing left weight by the second order difference energy
+     * of the mixed channels.
+     */
+    private int chooseMixRes(int[] l, int[] r, int numSamples) {
+        int best = 0;
+        long bestCost = Long.MAX_VALUE;
+        for (int res = 0; res <= MAX_MIX_RES; res++) {
+            long cost = 0;
+            int a1 = 0, a2 = 0, b1 = 0, b2 = 0;
+            for (int i = 0; i < numSamples; i += 2) {
+                int a, b;
+                if (res == 0) {
+                    a = l[i];
+                    b = r[i];
+                } else {
+                    int difference = l[i] - r[i];
+                    a = r[i] + ((difference * res) >> MIX_BITS);
+                    b = difference;
+                }
+                cost += Math.abs(a - 2 * a1 + a2) + Math.abs(b - 2 * b1 + b2);
+                a2 = a1;
+                a1 = a;
+                b2 = b1;
+                b1 = b;
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = res;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * estimates predictor coefficients for each candidate order and keeps the
+     * cheapest one.
+     *
+     * @param coefsOut the chosen coefficients (as written in the header, before adaptation)
+     * @param residualOut the residuals for the chosen coefficients
+     * @return the chosen order
+     */
+    private int choosePredictor(int[] samples, int numSamples, int chanBits, int[] coefsOut, int[] residualOut) {
+        int bestOrder = -1;
+        long bestBits = Long.MAX_VALUE;
+        for (int order : ORDERS) {
+            if (order >= numSamples) {
+                continue;
+            }
+            estimateCoefs(samples, numSamples, order, coefs);
+            int[] work = bestOrder < 0 ? residualOut : residual;
+            System.arraycopy(coefs, 0, coefsWork, 0, order);
+            predict(samples, numSamples, chanBits, coefsWork, order, work);
+            long bits = rice(work, numSamples, chanBits, RICE_MODIFIERS[0], false) + order * 16L;
+            if (bits < bestBits) {
+                bestBits = bits;
+                if (work != residualOut) {
+                    System.arraycopy(work, 0, residualOut, 0, numSamples);
+                }
+                System.arraycopy(coefs, 0, coefsOut, 0, order);
+                bestOrder = order;
+            }
+        }
+        if (bestOrder < 0) {
+            // too short for prediction, deltas only
+            predict(samples, numSamples, chanBits, coefsWork, 0, residualOut);
+            bestOrder = 0;
+        }
+        return bestOrder;
+    }
+
+    /** bits of the last {@link #chooseRiceModifier} result */
+    private long riceBits;
+
+    /** */
+    private int chooseRiceModifier(int[] residual, int numSamples, int chanBits) {
+        int best = RICE_MODIFIERS[0];
+        long bestBits = Long.MAX_VALUE;
+        for (int pb : RICE_MODIFIERS) {
+            long bits = rice(residual, numSamples, chanBits, pb, false);
+            if (bits < bestBits) {
+                bestBits = bits;
+                best = pb;
+            }
+        }
+        riceBits = bestBits;
+        return best;
+    }
+
+    /**
+     * linear prediction coefficients by levinson-durbin recursion on the
+     * windowed autocorrelation, quantized to the alac coefficient format.
+     */
+    private void estimateCoefs(int[] samples, int numSamples, int order, int[] coefs) {
+        double[] window = this.window;
+        for (int i = 0; i < numSamples; i++) {
+            // welch window
+            double x = (2.0 * i - (numSamples - 1)) / (numSamples + 1);
+            window[i] = samples[i] * (1 - x * x);
+        }
+        double[] autoc = this.autoc;
+        for (int lag = 0; lag <= order; lag++) {
+            double sum = 0;
+            for (int i = lag; i < numSamples; i++) {
+                sum += window[i] * window[i - lag];
+            }
+            autoc[lag] = sum;
+        }
+        autoc[0] *= 1.0 + 1e-9;
+
+        double[] lpc = this.lpc;
+        double[] tmp = this.lpcWork;
+        for (int i = 0; i <= order; i++) {
+            lpc[i] = 0;
+        }
+        double error = autoc[0];
+        if (error == 0) {
+            for (int i = 0; i < order; i++) {
+                coefs[i] = 0;
+            }
+            return;
+        }
+        for (int i = 1; i <= order; i++) {
+            double acc = autoc[i];
+            for (int j = 1; j < i; j++) {
+                acc -= lpc[j] * autoc[i - j];
+            }
+            double k = acc / error;
+            tmp[i] = k;
+            for (int j = 1; j < i; j++) {
+                tmp[j] = lpc[j] - k * lpc[i - j];
+            }
+            System.arraycopy(tmp, 1, lpc, 1, i);
+            error *= 1 - k * k;
+            if (error <= 0) {
+                break;
+            }
+        }
+        for (int i = 0; i < order; i++) {
+            long c = Math.round(lpc[i + 1] * (1 << QUANT));
+            coefs[i] = (int) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, c));
+        }
+    }
+
+    /**
+     * the adaptive fir predictor, mirrors {@link AlacFile} decompression exactly
+     * (coefficients adapt in place).
+     */
+    private static void predict(int[] samples, int numSamples, int chanBits, int[] coefs, int order, int[] residual) {
+        int bitsMove = 32 - chanBits;
+        if (numSamples == 0) {
+            return;
+        }
+        residual[0] = samples[0];
+        if (order == 0) {
+            for (int i = 1; i < numSamples; i++) {
+                residual[i] = samples[i];
+            }
+            return;
+        }
+        int warmup = Math.min(order, numSamples - 1);
+        for (int i = 1; i <= warmup; i++) {
+            residual[i] = ((samples[i] - samples[i - 1]) << bitsMove) >> bitsMove;
+        }
+        int quant = QUANT;
+        for (int i = order + 1; i < numSamples; i++) {
+            int index = i - order - 1;
+            int base = samples[index];
+            int sum = 0;
+            for (int j = 0; j < order; j++) {
+                sum += (samples[index + order - j] - base) * coefs[j];
+            }
+            int predicted = ((1 << (quant - 1)) + sum) >> quant;
+            int errorVal = ((samples[i] - predicted - base) << bitsMove) >> bitsMove;
+            residual[i] = errorVal;
+
+            if (errorVal > 0) {
+                for (int p = order - 1; p >= 0 && errorVal > 0; p--) {
+                    int val = base - samples[index + order - p];
+                    int sign = Integer.compare(val, 0);
+                    coefs[p] -= sign;
+                    val *= sign;
+                    errorVal -= (val >> quant) * (order - p);
+                }
+            } else if (errorVal < 0) {
+                for (int p = order - 1; p >= 0 && errorVal < 0; p--) {
+                    int val = base - samples[index + order - p];
+                    int sign = -Integer.compare(val, 0);
+                    coefs[p] -= sign;
+                    val *= sign;
+                    errorVal -= (val >> quant) * (order - p);
+                }
+            }
+        }
+    }
+
+    /**
+     * the adaptive golomb-rice coder, mirrors {@link AlacFile} entropy decoding.
+     *
+     * @param write false: counts bits only
+     * @return bits
+     */
+    private long rice(int[] residual, int numSamples, int chanBits, int riceModifier, boolean write) {
+        int historyMult = riceModifier * (PB0 / 4);
+        int history = MB0;
+        int signModifier = 0;
+        long bits = 0;
+        for (int i = 0; i < numSamples; i++) {
+            int k = 31 - KB0 - Integer.numberOfLeadingZeros((history >> 9) + 3);
+            k = k < 0 ? k + KB0 : KB0;
+
+            int e = residual[i];
+            int decoded = e > 0 ? e * 2 : e < 0 ? -e * 2 - 1 : 0;
+            bits += encodeValue(decoded - signModifier, k, chanBits, write);
+
+            signModifier = 0;
+            history += (decoded * historyMult) - ((history * historyMult) >> 9);
+            if (decoded > 0xffff) {
+                history = 0xffff;
+            }
+
+            // zero run
+            if (history < 128 && i + 1 < numSamples) {
+                int blockSize = 0;
+                int limit = Math.min(0xffff, numSamples - i - 1);
+                while (blockSize < limit && residual[i + 1 + blockSize] == 0) {
+                    blockSize++;
+                }
+                k = Integer.numberOfLeadingZeros(history) + ((history + 16) >> 6) - 24;
+                bits += encodeValue(blockSize, k, 16, write);
+                signModifier = 1;
+                history = 0;
+                i += blockSize;
+            }
+        }
+        return bits;
+    }
+
+    /** @return bits */
+    private int encodeValue(int value, int k, int readSampleSize, boolean write) {
+        int q;
+        int m = (1 << k) - 1;
+        if (k == 1) {
+            q = value;
+        } else {
+            q = value / m;
+        }
+        if (q > AlacFile.RICE_THRESHOLD) {
+            if (write) {
+                writer.writeOnes(AlacFile.RICE_THRESHOLD + 1);
+                writer.write(value, readSampleSize);
+            }
+            return AlacFile.RICE_THRESHOLD + 1 + readSampleSize;
+        }
+        if (k == 1) {
+            if (write) {
+                writer.writeOnes(q);
+                writer.write(0, 1);
+            }
+            return q + 1;
+        }
+        int r = value - q * m;
+        if (write) {
+            writer.writeOnes(q);
+            writer.write(0, 1);
+            if (r == 0) {
+                writer.write(0, k - 1);
+            } else {
+                writer.write(r + 1, k);
+            }
+        }
+        return q + 1 + (r == 0 ? k - 1 : k);
+    }
+}
@@ -10,79 +10,157 @@ package com.beatofthedrum.alacdecoder;
 
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 import static java.lang.System.getLogger;
 
 
 /**
- * AlacFile.
+ * AlacFile, the state of a decoder.
+ * <p>
+ * the parameters are in an {@link AlacConfig} which may be shared, this has the bit reader,
+ * the buffers and the output format, so an instance is for a thread at a time.
  */
 class AlacFile {
 
     private static final Logger logger = getLogger(AlacFile.class.getName());
 
     static int RICE_THRESHOLD = 8;
-    byte[] inputBuffer;
-    int ibIndex = 0;
-    /** used so we can do arbitrary bit reads */
-    int inputBufferBitAccumulator = 0;
-
-    int sampleSize = 0;
-    int numChannels = 0;
-    int bytesPerSample = 0;
-
-    LeadingZeros lz = new LeadingZeros();
-
-    private static final int bufferSize = 16384;
-
-    // buffers
-    int[] predicterrorBufferA = new int[bufferSize];
-    int[] predicterrorBufferB = new int[bufferSize];
-
-    int[] outputSamplesBufferA = new int[bufferSize];
-    int[] outputsamplesBufferB = new int[bufferSize];
-
-    int[] uncompressedBytesBufferA = new int[bufferSize];
-    int[] uncompressedBytesBufferB = new int[bufferSize];
-
-    // stuff from setinfo
-
-    /** max samples per frame? */
-    int setInfo_maxSamplesPerFrame = 0; // 0x1000 = 4096
-    int setInfo_7A = 0; // 0x00
-    int setInfo_sampleSize = 0; // 0x10
-    int setInfo_riceHistoryMult = 0; // 0x28
-    int setInfo_riceInitialHistory = 0; // 0x0a
-    int setInfo_riceKModifier = 0; // 0x0e
-    int setInfo_7f = 0; // 0x02
-    int setInfo_80 = 0; // 0x00ff
-    /** max sample size?? */
-    int setInfo_82 = 0; // 0x000020e7
-    /** bit rate (avarge)?? */
-    int setInfo_86 = 0; // 0x00069fe4
-    /** end setinfo stuff */
-    int setInfo_8a_rate = 0; // 0x0000ac44
-
-    public int[] predictorCoefTable = new int[1024];
-    public int[] predictorCoefTableA = new int[1024];
-    public int[] predictorCoefTableB = new int[1024];
+
+    /** channels from which the elements of a frame are reconstructed in parallel, by default */
+    static final int PARALLEL_CHANNELS = ForkJoinPool.getCommonPoolParallelism() > 1 ? 6 : Integer.MAX_VALUE;
+
+    /** the input frame */
+    final BitReader reader = new BitReader();
+
+    /** the parameters */
+    final AlacConfig config;
+
+    /**
+     * buffers by channel of a frame, allocated by the max samples per frame of the cookie
+     * when the channel is decoded, or reused from a {@link DecoderPool}
+     */
+    final DecoderPool.Buffers buffers;
+
+    /** elements in the last decoded frame */
+    private final Element[] elements = new Element[ChannelLayout.MAX_CHANNELS];
+    private int numElements;
+    /** for pcm output into a buffer without an accessible array */
+    private byte[] pcmBuffer;
+
+    /** bits of a pcm sample written, 0: as decoded */
+    private int outputSampleSize;
+    /** pcm is written as 32 bit float */
+    private boolean outputFloat;
+    /** tpdf dither when 24 bit samples are written as 16 bit */
+    private boolean dither;
+    /** the loop of {@link #writePcm}, chosen when the output format is set */
+    private int interleaver;
+    /** state of the dither noise generator */
+    private int ditherSeed = 1;
+    /** channels from which the elements of a frame are reconstructed in parallel */
+    private int parallelChannels = PARALLEL_CHANNELS;
+
+    /**
+     * an element (one or two channels) of a frame. elements are parsed in order, but
+     * reconstructed (prediction, decorrelation) independently of each other.
+     */
+    @SuppressWarnings("serial")
+    private final class Element extends RecursiveAction {
+        /** the first channel in the frame */
+        int channel;
+        /** 1 or 2 */
+        int channels;
+        int outputSamples;
+        boolean compressed;
+        int readSampleSize;
+        int uncompressedBytes;
+        int interlacingShift;
+        int interlacingLeftWeight;
+        final int[] predictionTypes = new int[2];
+        final int[] predictionQuantitizations = new int[2];
+        final int[] riceModifiers = new int[2];
+        final int[] predictorCoefNums = new int[2];
+        final int[][] predictorCoefTables = new int[2][32];
+
+        @Override
+        protected void compute() {
+            reconstruct();
+        }
+
+        /** predicts samples, restores left and right from mid and side and appends the uncompressed bytes, in place */
+        void reconstruct() {
+            for (int c = 0; c < channels; c++) {
+                if (!compressed) {
+                    break;
+                }
+                if (predictionTypes[c] == 0) { // adaptive fir
+                    predictorDecompressFirAdapt(sampleBuffer(channel + c), outputSamples, readSampleSize, predictorCoefTables[c], predictorCoefNums[c], predictionQuantitizations[c]);
+                } else {
+                    logger.log(Level.WARNING, "FIXME: unhandled predicition type: " + predictionTypes[c]);
+
+                    // i think the only other prediction type (or perhaps this is just a
+                    // boolean?) runs adaptive fir twice.. like:
+                    // predictor_decompress_fir_adapt(predictor_error, tempout, ...)
+                    // predictor_decompress_fir_adapt(predictor_error, outputsamples ...)
+                    // little strange..
+                }
+            }
+
+            if (channels == 2) {
+                decorrelate(sampleBuffer(channel), sampleBuffer(channel + 1), outputSamples, interlacingShift, interlacingLeftWeight);
+            }
+
+            if (uncompressedBytes != 0) {
+                for (int c = 0; c < channels; c++) {
+                    appendUncompressedBytes(sampleBuffer(channel + c), uncompressedBytesBuffer(channel + c), outputSamples, uncompressedBytes);
+                }
+            }
+        }
+    }
+
+    /** samples of a channel of a frame */
+    private int[] sampleBuffer(int channel) {
+        int[] buffer = this.buffers.sampleBuffers[channel];
+        if (buffer == null) {
+            buffer = new int[this.config.frameLength];
+            this.buffers.sampleBuffers[channel] = buffer;
+        }
+        return buffer;
+    }
+
+    /** */
+    private int[] uncompressedBytesBuffer(int channel) {
+        int[] buffer = this.buffers.uncompressedBytesBuffers[channel];
+        if (buffer == null) {
+            buffer = new int[this.config.frameLength];
+            this.buffers.uncompressedBytesBuffers[channel] = buffer;
+        }
+        return buffer;
+    }
+
+    /** samples of a channel written */
+    private int[] outputBuffer(int channel) {
+        return sampleBuffer(this.config.channel(channel));
+    }
 
     // stream reading
 
-    private static int[] predictorDecompressFirAdapt(int[] errorBuffer, int outputSize, int readSampleSize, int[] predictorCoefTable, int predictorCoefNum, int predictorQuantitization) {
-        int bufferOutIndex = 0;
+    static int[] predictorDecompressFirAdapt(int[] errorBuffer, int outputSize, int readSampleSize, int[] predictorCoefTable, int predictorCoefNum, int predictorQuantitization) {
         int[] bufferOut;
-        int bitsMove = 0;
+        int bitsMove = 32 - readSampleSize;
 
-        // first sample always copies
+        // first sample always copies, the output overwrites the errors in place
         bufferOut = errorBuffer;
 
         if (predictorCoefNum == 0) {
-            if (outputSize <= 1)
-                return (bufferOut);
-            int sizeToCopy = 0;
-            sizeToCopy = (outputSize - 1) * 4;
-            System.arraycopy(errorBuffer, 1, bufferOut, 1, sizeToCopy);
+            // the rest are copies too
             return (bufferOut);
         }
 
@@ -99,7 +177,6 @@ class AlacFile {
                 prevValue = bufferOut[i];
                 errorValue = errorBuffer[i + 1];
 
-                bitsMove = 32 - readSampleSize;
                 bufferOut[i + 1] = (((prevValue + errorValue) << bitsMove) >> bitsMove);
             }
             return (bufferOut);
@@ -112,193 +189,456 @@ class AlacFile {
 
                 val = bufferOut[i] + errorBuffer[i + 1];
 
-                bitsMove = 32 - readSampleSize;
-
                 val = ((val << bitsMove) >> bitsMove);
 
                 bufferOut[i + 1] = val;
             }
         }
 
-        // general case
-        if (predictorCoefNum > 0) {
-            bufferOutIndex = 0;
-            for (int i = predictorCoefNum + 1; i < outputSize; i++) {
-                int j;
-                int sum = 0;
-                int outVal;
-                int errorVal = errorBuffer[i];
-
-                for (j = 0; j < predictorCoefNum; j++) {
-                    sum += (bufferOut[bufferOutIndex + predictorCoefNum - j] - bufferOut[bufferOutIndex]) * predictorCoefTable[j];
-                }
+        // general case, iTunes and afconvert use orders 4 and 8 almost always
+        switch (predictorCoefNum) {
+        case 4:
+            predictorDecompressFir4(bufferOut, outputSize, bitsMove, predictorCoefTable, predictorQuantitization);
+            break;
+        case 8:
+            predictorDecompressFir8(bufferOut, outputSize, bitsMove, predictorCoefTable, predictorQuantitization);
+            break;
+        default:
+            predictorDecompressFir(bufferOut, outputSize, bitsMove, predictorCoefTable, predictorCoefNum, predictorQuantitization);
+            break;
+        }
+        return bufferOut;
+    }
 
-                outVal = (1 << (predictorQuantitization - 1)) + sum;
-                outVal = outVal >> predictorQuantitization;
-                outVal = outVal + bufferOut[bufferOutIndex] + errorVal;
-                bitsMove = 32 - readSampleSize;
+    /**
+     * adaptive fir for any order.
+     *
+     * @param buffer errors in, samples out (after warm-up samples)
+     */
+    static void predictorDecompressFir(int[] buffer, int outputSize, int bitsMove, int[] predictorCoefTable, int predictorCoefNum, int predictorQuantitization) {
+        int bufferOutIndex = 0;
+        for (int i = predictorCoefNum + 1; i < outputSize; i++) {
+            int j;
+            int sum = 0;
+            int outVal;
+            int errorVal = buffer[i];
+
+            for (j = 0; j < predictorCoefNum; j++) {
+                sum += (buffer[bufferOutIndex + predictorCoefNum - j] - buffer[bufferOutIndex]) * predictorCoefTable[j];
+            }
 
-                outVal = ((outVal << bitsMove) >> bitsMove);
+            outVal = (1 << (predictorQuantitization - 1)) + sum;
+            outVal = outVal >> predictorQuantitization;
+            outVal = outVal + buffer[bufferOutIndex] + errorVal;
 
-                bufferOut[bufferOutIndex + predictorCoefNum + 1] = outVal;
+            outVal = ((outVal << bitsMove) >> bitsMove);
 
-                if (errorVal > 0) {
-                    int predictorNum = predictorCoefNum - 1;
+            buffer[bufferOutIndex + predictorCoefNum + 1] = outVal;
 
-                    while (predictorNum >= 0 && errorVal > 0) {
-                        int val = bufferOut[bufferOutIndex] - bufferOut[bufferOutIndex + predictorCoefNum - predictorNum];
-                        int sign = (Integer.compare(val, 0));
+            if (errorVal > 0) {
+                int predictorNum = predictorCoefNum - 1;
 
-                        predictorCoefTable[predictorNum] -= sign;
+                while (predictorNum >= 0 && errorVal > 0) {
+                    int val = buffer[bufferOutIndex] - buffer[bufferOutIndex + predictorCoefNum - predictorNum];
+                    int sign = (Integer.compare(val, 0));
 
-                        val *= sign; // absolute value
+                    predictorCoefTable[predictorNum] -= sign;
 
-                        errorVal -= ((val >> predictorQuantitization) * (predictorCoefNum - predictorNum));
+                    val *= sign; // absolute value
 
-                        predictorNum--;
-                    }
-                } else if (errorVal < 0) {
-                    int predictorNum = predictorCoefNum - 1;
+                    errorVal -= ((val >> predictorQuantitization) * (predictorCoefNum - predictorNum));
 
-                    while (predictorNum >= 0 && errorVal < 0) {
-                        int val = bufferOut[bufferOutIndex] - bufferOut[bufferOutIndex + predictorCoefNum - predictorNum];
-                        int sign = -(Integer.compare(val, 0));
+                    predictorNum--;
+                }
+            } else if (errorVal < 0) {
+                int predictorNum = predictorCoefNum - 1;
 
-                        predictorCoefTable[predictorNum] -= sign;
+                while (predictorNum >= 0 && errorVal < 0) {
+                    int val = buffer[bufferOutIndex] - buffer[bufferOutIndex + predictorCoefNum - predictorNum];
+                    int sign = -(Integer.compare(val, 0));
 
-                        val *= sign; // neg value
+                    predictorCoefTable[predictorNum] -= sign;
 
-                        errorVal -= ((val >> predictorQuantitization) * (predictorCoefNum - predictorNum));
+                    val *= sign; // neg value
 
-                        predictorNum--;
-                    }
-                }
+                    errorVal -= ((val >> predictorQuantitization) * (predictorCoefNum - predictorNum));
 
-                bufferOutIndex++;
+                    predictorNum--;
+                }
             }
+
+            bufferOutIndex++;
         }
-        return bufferOut;
     }
 
-    private static void deinterlace16(int[] bufferA, int[] bufferB, int[] bufferOut, int numChannels, int numSamples, int interlacingShift, int interlacingLeftWeight) {
-
-        if (numSamples <= 0)
-            return;
-
-        // weighted interlacing
-        if (0 != interlacingLeftWeight) {
-            for (int i = 0; i < numSamples; i++) {
-                int difference = 0;
-                int midright = 0;
-                int left = 0;
-                int right = 0;
-
-                midright = bufferA[i];
-                difference = bufferB[i];
-
-                right = (midright - ((difference * interlacingLeftWeight) >> interlacingShift));
-                left = (right + difference);
-
-                // output is always little endian
-
-                bufferOut[i * numChannels] = left;
-                bufferOut[i * numChannels + 1] = right;
+    /**
+     * adaptive fir for order 4, unrolled and the coefficients are kept in locals.
+     * <p>
+     * the sign adaptation walks from the oldest sample and stops as soon as
+     * the error changes its sign, the same as {@link #predictorDecompressFir}.
+     * the positive and negative error cases share one path, the sign of
+     * the error is multiplied into the sign of each difference.
+     */
+    static void predictorDecompressFir4(int[] buffer, int outputSize, int bitsMove, int[] predictorCoefTable, int predictorQuantitization) {
+        int c0 = predictorCoefTable[0];
+        int c1 = predictorCoefTable[1];
+        int c2 = predictorCoefTable[2];
+        int c3 = predictorCoefTable[3];
+        int q = predictorQuantitization;
+        int round = 1 << (q - 1);
+
+        for (int i = 5; i < outputSize; i++) {
+            int base = buffer[i - 5];
+            int d3 = base - buffer[i - 4];
+            int d2 = base - buffer[i - 3];
+            int d1 = base - buffer[i - 2];
+            int d0 = base - buffer[i - 1];
+            int errorVal = buffer[i];
+
+            int sum = -(d0 * c0 + d1 * c1 + d2 * c2 + d3 * c3);
+            int outVal = ((round + sum) >> q) + base + errorVal;
+            buffer[i] = (outVal << bitsMove) >> bitsMove;
+
+            int errorSign = Integer.signum(errorVal);
+            adapt:
+            if (errorSign != 0) {
+                int sign;
+                sign = Integer.signum(d3) * errorSign;
+                c3 -= sign;
+                errorVal -= (d3 * sign) >> q;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d2) * errorSign;
+                c2 -= sign;
+                errorVal -= ((d2 * sign) >> q) * 2;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d1) * errorSign;
+                c1 -= sign;
+                errorVal -= ((d1 * sign) >> q) * 3;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d0) * errorSign;
+                c0 -= sign;
             }
-
-            return;
         }
 
-        // otherwise basic interlacing took place
-        for (int i = 0; i < numSamples; i++) {
-            int left = 0;
-            int right = 0;
-
-            left = bufferA[i];
-            right = bufferB[i];
-
-            // output is always little endian
+        predictorCoefTable[0] = c0;
+        predictorCoefTable[1] = c1;
+        predictorCoefTable[2] = c2;
+        predictorCoefTable[3] = c3;
+    }
 
-            bufferOut[i * numChannels] = left;
-            bufferOut[i * numChannels + 1] = right;
+    /**
+     * adaptive fir for order 8.
+     * @see #predictorDecompressFir4
+     */
+    static void predictorDecompressFir8(int[] buffer, int outputSize, int bitsMove, int[] predictorCoefTable, int predictorQuantitization) {
+        int c0 = predictorCoefTable[0];
+        int c1 = predictorCoefTable[1];
+        int c2 = predictorCoefTable[2];
+        int c3 = predictorCoefTable[3];
+        int c4 = predictorCoefTable[4];
+        int c5 = predictorCoefTable[5];
+        int c6 = predictorCoefTable[6];
+        int c7 = predictorCoefTable[7];
+        int q = predictorQuantitization;
+        int round = 1 << (q - 1);
+
+        for (int i = 9; i < outputSize; i++) {
+            int base = buffer[i - 9];
+            int d7 = base - buffer[i - 8];
+            int d6 = base - buffer[i - 7];
+            int d5 = base - buffer[i - 6];
+            int d4 = base - buffer[i - 5];
+            int d3 = base - buffer[i - 4];
+            int d2 = base - buffer[i - 3];
+            int d1 = base - buffer[i - 2];
+            int d0 = base - buffer[i - 1];
+            int errorVal = buffer[i];
+
+            int sum = -(d0 * c0 + d1 * c1 + d2 * c2 + d3 * c3 + d4 * c4 + d5 * c5 + d6 * c6 + d7 * c7);
+            int outVal = ((round + sum) >> q) + base + errorVal;
+            buffer[i] = (outVal << bitsMove) >> bitsMove;
+
+            int errorSign = Integer.signum(errorVal);
+            adapt:
+            if (errorSign != 0) {
+                int sign;
+                sign = Integer.signum(d7) * errorSign;
+                c7 -= sign;
+                errorVal -= (d7 * sign) >> q;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d6) * errorSign;
+                c6 -= sign;
+                errorVal -= ((d6 * sign) >> q) * 2;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d5) * errorSign;
+                c5 -= sign;
+                errorVal -= ((d5 * sign) >> q) * 3;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d4) * errorSign;
+                c4 -= sign;
+                errorVal -= ((d4 * sign) >> q) * 4;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d3) * errorSign;
+                c3 -= sign;
+                errorVal -= ((d3 * sign) >> q) * 5;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d2) * errorSign;
+                c2 -= sign;
+                errorVal -= ((d2 * sign) >> q) * 6;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d1) * errorSign;
+                c1 -= sign;
+                errorVal -= ((d1 * sign) >> q) * 7;
+                if (Integer.signum(errorVal) != errorSign) break adapt;
+                sign = Integer.signum(d0) * errorSign;
+                c0 -= sign;
+            }
         }
+
+        predictorCoefTable[0] = c0;
+        predictorCoefTable[1] = c1;
+        predictorCoefTable[2] = c2;
+        predictorCoefTable[3] = c3;
+        predictorCoefTable[4] = c4;
+        predictorCoefTable[5] = c5;
+        predictorCoefTable[6] = c6;
+        predictorCoefTable[7] = c7;
     }
 
-    private static void deinterlace24(int[] bufferA, int[] bufferB, int uncompressedBytes,
-                                      int[] uncompressedBytesBufferA, int[] uncompressedBytesBufferB, int[] bufferOut,
-                                      int numChannels, int numSamples, int interlacingShift, int interlacingLeftWeight) {
-        if (numSamples <= 0)
+    /** restores left and right from mid and side, in place */
+    static void decorrelate(int[] bufferA, int[] bufferB, int numSamples, int interlacingShift, int interlacingLeftWeight) {
+        // otherwise basic interlacing took place
+        if (interlacingLeftWeight == 0)
             return;
 
         // weighted interlacing
-        if (interlacingLeftWeight != 0) {
-            for (int i = 0; i < numSamples; i++) {
-                int difference = 0;
-                int midright = 0;
-                int left = 0;
-                int right = 0;
-
-                midright = bufferA[i];
-                difference = bufferB[i];
-
-                right = midright - ((difference * interlacingLeftWeight) >> interlacingShift);
-                left = right + difference;
-
-                if (uncompressedBytes != 0) {
-                    int mask = ~(0xFFFFFFFF << (uncompressedBytes * 8));
-                    left <<= (uncompressedBytes * 8);
-                    right <<= (uncompressedBytes * 8);
-
-                    left = left | (uncompressedBytesBufferA[i] & mask);
-                    right = right | (uncompressedBytesBufferB[i] & mask);
-                }
+        for (int i = 0; i < numSamples; i++) {
+            int midright = bufferA[i];
+            int difference = bufferB[i];
 
-                bufferOut[i * numChannels * 3] = (left & 0xFF);
-                bufferOut[i * numChannels * 3 + 1] = ((left >> 8) & 0xFF);
-                bufferOut[i * numChannels * 3 + 2] = ((left >> 16) & 0xFF);
+            int right = midright - ((difference * interlacingLeftWeight) >> interlacingShift);
+            bufferA[i] = right + difference;
+            bufferB[i] = right;
+        }
+    }
+
+    /** appends the low bytes which were stored uncompressed, in place */
+    private static void appendUncompressedBytes(int[] buffer, int[] uncompressedBytesBuffer, int numSamples, int uncompressedBytes) {
+        int shift = uncompressedBytes * 8;
+        int mask = ~(0xffff_ffff << shift);
+        for (int i = 0; i < numSamples; i++) {
+            buffer[i] = (buffer[i] << shift) | (uncompressedBytesBuffer[i] & mask);
+        }
+    }
 
-                bufferOut[i * numChannels * 3 + 3] = (right & 0xFF);
-                bufferOut[i * numChannels * 3 + 4] = ((right >> 8) & 0xFF);
-                bufferOut[i * numChannels * 3 + 5] = ((right >> 16) & 0xFF);
+    /**
+     * interleaves 16 bit samples into pcm bytes.
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @return bytes written
+     */
+    private static int interleave16(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                    byte[] out, int offset, boolean bigEndian) {
+        int lo = bigEndian ? 1 : 0;
+        int hi = 1 - lo;
+        int o = offset;
+        int stride = numChannels * 2;
+        if (bufferB == null) {
+            for (int i = from; i < to; i++) {
+                int sample = bufferA[i];
+                out[o + lo] = (byte) sample;
+                out[o + hi] = (byte) (sample >> 8);
+                o += stride;
             }
+        } else {
+            for (int i = from; i < to; i++) {
+                int left = bufferA[i];
+                int right = bufferB[i];
+                out[o + lo] = (byte) left;
+                out[o + hi] = (byte) (left >> 8);
+                out[o + 2 + lo] = (byte) right;
+                out[o + 2 + hi] = (byte) (right >> 8);
+                o += stride;
+            }
+        }
+        return o - offset;
+    }
 
-            return;
+    /**
+     * interleaves samples into 24 bit pcm bytes.
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @param shift bits to widen samples to 24 bits
+     * @return bytes written
+     */
+    private static int interleave24(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                    byte[] out, int offset, boolean bigEndian, int shift) {
+        int lo = bigEndian ? 2 : 0;
+        int hi = 2 - lo;
+        int o = offset;
+        int stride = numChannels * 3;
+        if (bufferB == null) {
+            for (int i = from; i < to; i++) {
+                int sample = bufferA[i] << shift;
+                out[o + lo] = (byte) sample;
+                out[o + 1] = (byte) (sample >> 8);
+                out[o + hi] = (byte) (sample >> 16);
+                o += stride;
+            }
+        } else {
+            for (int i = from; i < to; i++) {
+                int left = bufferA[i] << shift;
+                int right = bufferB[i] << shift;
+                out[o + lo] = (byte) left;
+                out[o + 1] = (byte) (left >> 8);
+                out[o + hi] = (byte) (left >> 16);
+                out[o + 3 + lo] = (byte) right;
+                out[o + 4] = (byte) (right >> 8);
+                out[o + 3 + hi] = (byte) (right >> 16);
+                o += stride;
+            }
         }
+        return o - offset;
+    }
 
-        // otherwise basic interlacing took place
-        for (int i = 0; i < numSamples; i++) {
-            int left = 0;
-            int right = 0;
+    /**
+     * interleaves samples into 32 bit pcm bytes.
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @param shift bits to widen samples to 32 bits
+     * @return bytes written
+     */
+    private static int interleave32(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                    byte[] out, int offset, boolean bigEndian, int shift) {
+        int o = offset;
+        int stride = numChannels * 4;
+        for (int i = from; i < to; i++) {
+            putInt(out, o, bufferA[i] << shift, bigEndian);
+            if (bufferB != null) {
+                putInt(out, o + 4, bufferB[i] << shift, bigEndian);
+            }
+            o += stride;
+        }
+        return o - offset;
+    }
 
-            left = bufferA[i];
-            right = bufferB[i];
+    /**
+     * interleaves samples into 32 bit float pcm bytes in [-1, 1).
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @param scale 1 / full scale of the samples
+     * @return bytes written
+     */
+    private static int interleaveFloat(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                       byte[] out, int offset, boolean bigEndian, float scale) {
+        int o = offset;
+        int stride = numChannels * 4;
+        for (int i = from; i < to; i++) {
+            putInt(out, o, Float.floatToRawIntBits(bufferA[i] * scale), bigEndian);
+            if (bufferB != null) {
+                putInt(out, o + 4, Float.floatToRawIntBits(bufferB[i] * scale), bigEndian);
+            }
+            o += stride;
+        }
+        return o - offset;
+    }
 
-            if (uncompressedBytes != 0) {
-                int mask = ~(0xFFFFFFFF << (uncompressedBytes * 8));
-                left <<= (uncompressedBytes * 8);
-                right <<= (uncompressedBytes * 8);
+    /** */
+    private static void putInt(byte[] out, int o, int value, boolean bigEndian) {
+        if (bigEndian) {
+            out[o] = (byte) (value >> 24);
+            out[o + 1] = (byte) (value >> 16);
+            out[o + 2] = (byte) (value >> 8);
+            out[o + 3] = (byte) value;
+        } else {
+            out[o] = (byte) value;
+            out[o + 1] = (byte) (value >> 8);
+            out[o + 2] = (byte) (value >> 16);
+            out[o + 3] = (byte) (value >> 24);
+        }
+    }
 
-                left = left | (uncompressedBytesBufferA[i] & mask);
-                right = right | (uncompressedBytesBufferB[i] & mask);
+    /**
+     * interleaves 24 bit samples into 16 bit pcm bytes, the lower 8 bits are dropped.
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @param shift bits to widen samples to 24 bits
+     * @return bytes written
+     */
+    private static int interleave24To16(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                        byte[] out, int offset, boolean bigEndian, int shift) {
+        int lo = bigEndian ? 1 : 0;
+        int hi = 1 - lo;
+        int o = offset;
+        int stride = numChannels * 2;
+        for (int i = from; i < to; i++) {
+            int left = (bufferA[i] << shift) >> 8;
+            out[o + lo] = (byte) left;
+            out[o + hi] = (byte) (left >> 8);
+            if (bufferB != null) {
+                int right = (bufferB[i] << shift) >> 8;
+                out[o + 2 + lo] = (byte) right;
+                out[o + 2 + hi] = (byte) (right >> 8);
             }
+            o += stride;
+        }
+        return o - offset;
+    }
 
-            bufferOut[i * numChannels * 3] = (left & 0xFF);
-            bufferOut[i * numChannels * 3 + 1] = ((left >> 8) & 0xFF);
-            bufferOut[i * numChannels * 3 + 2] = ((left >> 16) & 0xFF);
-
-            bufferOut[i * numChannels * 3 + 3] = (right & 0xFF);
-            bufferOut[i * numChannels * 3 + 4] = ((right >> 8) & 0xFF);
-            bufferOut[i * numChannels * 3 + 5] = ((right >> 16) & 0xFF);
+    /**
+     * interleaves 24 bit samples into 16 bit pcm bytes with tpdf dither,
+     * triangular noise of &plusmn;1 lsb of 16 bit is added before rounding.
+     * a channel or a pair of channels ({@code bufferB} is not null) is written from {@code offset},
+     * the rest of a sample frame is left as is.
+     *
+     * @param shift bits to widen samples to 24 bits
+     * @return bytes written
+     */
+    private int interleave24To16Dither(int[] bufferA, int[] bufferB, int numChannels, int from, int to,
+                                       byte[] out, int offset, boolean bigEndian, int shift) {
+        int lo = bigEndian ? 1 : 0;
+        int hi = 1 - lo;
+        int o = offset;
+        int stride = numChannels * 2;
+        int seed = this.ditherSeed;
+        for (int i = from; i < to; i++) {
+            // two uniform values of 8 bits from an lcg step make a triangular one
+            seed = seed * 1664525 + 1013904223;
+            int left = dither(bufferA[i] << shift, ((seed >>> 24) + ((seed >>> 16) & 0xff)) - 255);
+            out[o + lo] = (byte) left;
+            out[o + hi] = (byte) (left >> 8);
+            if (bufferB != null) {
+                seed = seed * 1664525 + 1013904223;
+                int right = dither(bufferB[i] << shift, ((seed >>> 24) + ((seed >>> 16) & 0xff)) - 255);
+                out[o + 2 + lo] = (byte) right;
+                out[o + 2 + hi] = (byte) (right >> 8);
+            }
+            o += stride;
         }
+        this.ditherSeed = seed;
+        return o - offset;
     }
 
-    public static AlacFile create(int sampleSize, int numChannels) {
-        AlacFile newFile = new AlacFile();
+    /** 24 bit sample plus noise, rounded and saturated to 16 bit */
+    private static int dither(int sample, int noise) {
+        int value = (sample + noise + 128) >> 8;
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, value));
+    }
 
-        newFile.sampleSize = sampleSize;
-        newFile.numChannels = numChannels;
-        newFile.bytesPerSample = (sampleSize / 8) * numChannels;
+    AlacFile(AlacConfig config) {
+        this(config, new DecoderPool.Buffers(config));
+    }
 
-        return newFile;
+    /** @param buffers of the same bit depth, channels and max samples per frame as {@code config} */
+    AlacFile(AlacConfig config, DecoderPool.Buffers buffers) {
+        this.config = config;
+        this.buffers = buffers;
+        this.interleaver = interleaver();
     }
 
     public void decodeEntropyRice(int[] outputBuffer, int outputSize, int readSampleSize, int riceInitialHistory,
@@ -312,7 +652,7 @@ class AlacFile {
             int finalValue = 0;
             int k = 0;
 
-            k = 31 - riceKModifier - this.lz.countLeadingZeros((history >> 9) + 3);
+            k = 31 - riceKModifier - Integer.numberOfLeadingZeros((history >> 9) + 3);
 
             if (k < 0)
                 k += riceKModifier;
@@ -343,19 +683,16 @@ class AlacFile {
 
                 signModifier = 1;
 
-                k = this.lz.countLeadingZeros(history) + ((history + 16) / 64) - 24;
+                k = Integer.numberOfLeadingZeros(history) + ((history + 16) / 64) - 24;
 
                 // note: blockSize is always 16bit
                 blockSize = decodeEntropyValue(16, k, riceKModifierMask);
 
-                // got blockSize 0s
-                if (blockSize > 0) {
-                    int countSize = 0;
-                    countSize = blockSize;
-                    for (int j = 0; j < countSize; j++) {
-                        outputBuffer[outputCount + 1 + j] = 0;
-                    }
-                    outputCount += blockSize;
+                // got blockSize 0s, no more than the rest
+                int zeros = Math.min(blockSize, outputSize - outputCount - 1);
+                if (zeros > 0) {
+                    Arrays.fill(outputBuffer, outputCount + 1, outputCount + 1 + zeros, 0);
+                    outputCount += zeros;
                 }
 
                 if (blockSize > 0xFFFF)
@@ -368,505 +705,560 @@ class AlacFile {
         }
     }
 
-    /** */
-    public int decodeFrame(byte[] inBuffer, int[] outBuffer, int outputSize) {
-        int channels;
-        int outputSamples = this.setInfo_maxSamplesPerFrame;
-
+    /**
+     * decodes a frame into planar samples, a buffer per channel in the order of the frame,
+     * already decorrelated and with the uncompressed bytes appended.
+     *
+     * @return samples per channel
+     */
+    int decodeSamples(byte[] inBuffer) {
         // setup the stream
-        this.inputBuffer = inBuffer;
-        this.inputBufferBitAccumulator = 0;
-        this.ibIndex = 0;
-
-        channels = readBits(3);
-
-        outputSize = outputSamples * this.bytesPerSample;
-
-        if (channels == 0) { // 1 channel
-            int hasSize;
-            int isNotCompressed;
-            int readSampleSize;
-
-            int uncompressedBytes;
-            int riceModifier;
-
-            int tempPred = 0;
-
-            // 2^result = something to do with output waiting.
-			// perhaps matters if we read > 1 frame in a pass?
-            readBits(4);
-
-            readBits(12); // unknown, skip 12 bits
-
-            hasSize = readBits(1); // the output sample size is stored soon
-
-            uncompressedBytes = readBits(2); // number of bytes in the (compressed) stream that are not compressed
-
-            isNotCompressed = readBits(1); // whether the frame is compressed
-
-            if (hasSize != 0) {
-                // now read the number of samples,
-				// as a 32bit integer
-                outputSamples = readBits(32);
-                outputSize = outputSamples * this.bytesPerSample;
-            }
-
-            readSampleSize = this.setInfo_sampleSize - (uncompressedBytes * 8);
-
-            if (isNotCompressed == 0) { // so it is compressed
-                int[] predictorCoefTable = this.predictorCoefTable;
-                int predictorCoefNum;
-                int predictionType;
-                int predictionQuantitization;
-
-                // skip 16 bits, not sure what they are. seem to be used in
-                // two channel case
-                readBits(8);
-                readBits(8);
-
-                predictionType = readBits(4);
-                predictionQuantitization = readBits(4);
-
-                riceModifier = readBits(3);
-                predictorCoefNum = readBits(5);
-
-                // read the predictor table
-
-                for (int i = 0; i < predictorCoefNum; i++) {
-                    tempPred = readBits(16);
-                    if (tempPred > 32767) {
-                        // the predictor coef table values are only 16 bit signed
-                        tempPred = tempPred - 65536;
-                    }
-
-                    predictorCoefTable[i] = tempPred;
-                }
-
-                if (uncompressedBytes != 0) {
-                    for (int i = 0; i < outputSamples; i++) {
-                        this.uncompressedBytesBufferA[i] = readBits(uncompressedBytes * 8);
-                    }
-                }
-
-                this.decodeEntropyRice(this.predicterrorBufferA, outputSamples, readSampleSize, this.setInfo_riceInitialHistory, this.setInfo_riceKModifier, riceModifier * (this.setInfo_riceHistoryMult / 4), (1 << this.setInfo_riceKModifier) - 1);
+        this.reader.reset(inBuffer, 0, inBuffer.length);
+        return decodeSamples();
+    }
 
-                if (predictionType == 0) { // adaptive fir
-                    this.outputSamplesBufferA = predictorDecompressFirAdapt(this.predicterrorBufferA, outputSamples, readSampleSize, predictorCoefTable, predictorCoefNum, predictionQuantitization);
-                } else {
-                    logger.log(Level.WARNING, "FIXME: unhandled predicition type: " + predictionType);
+    /**
+     * decodes a frame from the position to the limit of {@code inBuffer} into planar samples,
+     * a buffer without an accessible array (e.g. a file mapping) is read in place.
+     *
+     * @return samples per channel
+     * @see #decodeSamples(byte[])
+     */
+    int decodeSamples(ByteBuffer inBuffer) {
+        this.reader.reset(inBuffer);
+        return decodeSamples();
+    }
 
-                    // i think the only other prediction type (or perhaps this is just a
-					// boolean?) runs adaptive fir twice.. like:
-					// predictor_decompress_fir_adapt(predictor_error, tempout, ...)
-					// predictor_decompress_fir_adapt(predictor_error, outputsamples ...)
-					// little strange..
+    /** decodes a frame from {@link #reader} */
+    private int decodeSamples() {
+        int outputSamples = this.config.frameLength;
+        int channel = 0;
+        this.numElements = 0;
+
+        boolean end = false;
+        while (!end && channel < this.config.numChannels) {
+            int tag = readBits(3);
+            switch (tag) {
+            case ChannelLayout.ID_SCE:
+            case ChannelLayout.ID_LFE:
+            case ChannelLayout.ID_CPE:
+                int channels = tag == ChannelLayout.ID_CPE ? 2 : 1;
+                if (channel + channels > ChannelLayout.MAX_CHANNELS) {
+                    logger.log(Level.WARNING, "too many channels: " + (channel + channels));
+                    end = true;
+                    break;
                 }
-
-            } else { // not compressed, easy case
-                if (this.setInfo_sampleSize <= 16) {
-                    int bitsmove;
-                    for (int i = 0; i < outputSamples; i++) {
-                        int audiobits = readBits(this.setInfo_sampleSize);
-                        bitsmove = 32 - this.setInfo_sampleSize;
-
-                        audiobits = ((audiobits << bitsmove) >> bitsmove);
-
-                        this.outputSamplesBufferA[i] = audiobits;
-                    }
-                } else {
-                    int m = 1 << (24 - 1);
-                    for (int i = 0; i < outputSamples; i++) {
-                        int audiobits;
-
-                        audiobits = readBits(16);
-                        // special case of sign extension..
-						// as we'll be ORing the low 16bits into this
-                        audiobits = audiobits << (this.setInfo_sampleSize - 16);
-                        audiobits = audiobits | readBits(this.setInfo_sampleSize - 16);
-                        int x = audiobits & ((1 << 24) - 1);
-                        audiobits = (x ^ m) - m; // sign extend 24 bits
-
-                        this.outputSamplesBufferA[i] = audiobits;
-                    }
-                }
-                uncompressedBytes = 0; // always 0 for uncompressed
-            }
-
-            switch (this.setInfo_sampleSize) {
-            case 16: {
-
-                for (int i = 0; i < outputSamples; i++) {
-                    int sample = this.outputSamplesBufferA[i];
-                    outBuffer[i * this.numChannels] = sample;
-
-                    // We have to handle the case where the data is actually mono, but the stsd atom says it has 2 channels
-                    // in this case we create a stereo file where one of the channels is silent. If mono and 1 channel this value
-                    // will be overwritten in the next iteration
-
-                    outBuffer[(i * this.numChannels) + 1] = 0;
+                Element element = this.elements[this.numElements];
+                if (element == null) {
+                    element = new Element();
+                    this.elements[this.numElements] = element;
                 }
+                this.numElements++;
+                outputSamples = readElement(element, channel, channels, outputSamples);
+                channel += channels;
                 break;
-            }
-            case 24: {
-                for (int i = 0; i < outputSamples; i++) {
-                    int sample = this.outputSamplesBufferA[i];
-
-                    if (uncompressedBytes != 0) {
-                        int mask = 0;
-                        sample = sample << (uncompressedBytes * 8);
-                        mask = ~(0xffff_ffff << (uncompressedBytes * 8));
-                        sample = sample | (this.uncompressedBytesBufferA[i] & mask);
-                    }
-
-                    outBuffer[i * this.numChannels * 3] = ((sample) & 0xFF);
-                    outBuffer[i * this.numChannels * 3 + 1] = ((sample >> 8) & 0xFF);
-                    outBuffer[i * this.numChannels * 3 + 2] = ((sample >> 16) & 0xFF);
-
-                    // We have to handle the case where the data is actually mono, but the stsd atom says it has 2 channels
-					// in this case we create a stereo file where one of the channels is silent. If mono and 1 channel this value
-					// will be overwritten in the next iteration
-
-                    outBuffer[i * this.numChannels * 3 + 3] = 0;
-                    outBuffer[i * this.numChannels * 3 + 4] = 0;
-                    outBuffer[i * this.numChannels * 3 + 5] = 0;
-
-                }
+            case ChannelLayout.ID_DSE:
+                skipDataStream();
+                break;
+            case ChannelLayout.ID_FIL:
+                skipFill();
+                break;
+            case ChannelLayout.ID_END:
+                end = true;
                 break;
-            }
-            case 20:
-            case 32:
-                logger.log(Level.WARNING, "FIXME: unimplemented sample size " + this.setInfo_sampleSize);
             default:
+                logger.log(Level.WARNING, "FIXME: unhandled element: " + tag);
+                end = true;
+                break;
             }
-        } else if (channels == 1) { // 2 channels
-            int hasSize;
-            int isNotCompressed;
-            int readSampleSize;
-
-            int uncompressedBytes;
-
-            int interlacingShift;
-            int interlacingLeftWeight;
-
-            // 2^result = something to do with output waiting.
-			// perhaps matters if we read > 1 frame in a pass?
-            readBits(4);
-
-            readBits(12); // unknown, skip 12 bits
+        }
 
-            hasSize = readBits(1); // the output sample size is stored soon
+        reconstruct(channel);
 
-            uncompressedBytes = readBits(2); // the number of bytes in the (compressed) stream that are not compressed
+        // the data is actually mono, but the stsd atom says it has 2 channels,
+        // in this case the channels not in the frame are silent
+        for (int c = channel; c < this.config.numChannels; c++) {
+            Arrays.fill(sampleBuffer(c), 0, outputSamples, 0);
+        }
 
-            isNotCompressed = readBits(1); // whether the frame is compressed
+        return outputSamples;
+    }
 
-            if (hasSize != 0) {
-                // now read the number of samples,
-                // as a 32bit integer
-                outputSamples = readBits(32);
-                outputSize = outputSamples * this.bytesPerSample;
+    /**
+     * reconstructs the elements read, in parallel when the frame has {@link #parallelChannels} or more.
+     * a frame decoded on a fork join pool (e.g. by {@link ParallelDecoder}) is already in parallel with others.
+     */
+    private void reconstruct(int channels) {
+        if (this.numElements > 1 && channels >= this.parallelChannels && !ForkJoinTask.inForkJoinPool()) {
+            for (int i = 0; i < this.numElements; i++) {
+                this.elements[i].reinitialize();
             }
+            ForkJoinTask.invokeAll(Arrays.asList(this.elements).subList(0, this.numElements));
+        } else {
+            for (int i = 0; i < this.numElements; i++) {
+                this.elements[i].reconstruct();
+            }
+        }
+    }
 
-            readSampleSize = this.setInfo_sampleSize - (uncompressedBytes * 8) + 1;
-
-            if (isNotCompressed == 0) { // compressed
-                int[] predictorCoefTableA = this.predictorCoefTableA;
-                int predictorCoefNumA;
-                int predictionTypeA;
-                int predictionQuantitizationA;
-                int riceModifierA;
-
-                int[] predictorCoefTableB = this.predictorCoefTableB;
-                int predictorCoefNumB;
-                int predictionTypeB;
-                int predictionQuantitizationB;
-                int riceModifierB;
-
-                int tempPred = 0;
+    /**
+     * reads an element into the sample buffers of its channels, rice decoded but not predicted.
+     *
+     * @param channel the first channel of the element in the frame
+     * @param channels 1: a single channel or lfe element, 2: a channel pair element
+     * @param outputSamples samples per channel unless the element has its size
+     * @return samples per channel
+     */
+    private int readElement(Element element, int channel, int channels, int outputSamples) {
+        int hasSize;
+        int isNotCompressed;
+        int uncompressedBytes;
+
+        element.channel = channel;
+        element.channels = channels;
+
+        // 2^result = something to do with output waiting.
+        // perhaps matters if we read > 1 frame in a pass?
+        readBits(4);
+
+        readBits(12); // unknown, skip 12 bits
+
+        hasSize = readBits(1); // the output sample size is stored soon
+
+        uncompressedBytes = readBits(2); // the number of bytes in the (compressed) stream that are not compressed
+
+        isNotCompressed = readBits(1); // whether the frame is compressed
+
+        if (hasSize != 0) {
+            // now read the number of samples,
+            // as a 32bit integer
+            outputSamples = readBits(32);
+            if (outputSamples < 0 || outputSamples > this.config.frameLength) {
+                // the buffers and the callers' ones are sized by the cookie
+                logger.log(Level.WARNING, "samples: " + outputSamples + " more than max: " + this.config.frameLength);
+                outputSamples = this.config.frameLength;
+            }
+        }
 
-                interlacingShift = readBits(8);
-                interlacingLeftWeight = readBits(8);
+        // a channel pair has a bit more for the side
+        int readSampleSize = this.config.bitDepth - (uncompressedBytes * 8) + channels - 1;
 
-                // channel 1
-                predictionTypeA = readBits(4);
-                predictionQuantitizationA = readBits(4);
+        if (isNotCompressed == 0) { // compressed
+            readCompressed(element, channel, channels, outputSamples, readSampleSize, uncompressedBytes);
+        } else { // not compressed, easy case
+            if (this.config.bitDepth <= 16) {
+                readVerbatim16(channel, channels, outputSamples);
+            } else {
+                readVerbatim24(channel, channels, outputSamples);
+            }
+            uncompressedBytes = 0; // always 0 for uncompressed
+            element.interlacingShift = 0;
+            element.interlacingLeftWeight = 0;
+        }
 
-                riceModifierA = readBits(3);
-                predictorCoefNumA = readBits(5);
+        element.outputSamples = outputSamples;
+        element.compressed = isNotCompressed == 0;
+        element.readSampleSize = readSampleSize;
+        element.uncompressedBytes = uncompressedBytes;
+        return outputSamples;
+    }
 
-                // read the predictor table
+    /** reads the predictors, the uncompressed bytes and the rice coded errors of a compressed element */
+    private void readCompressed(Element element, int channel, int channels, int outputSamples, int readSampleSize, int uncompressedBytes) {
+        int[] riceModifiers = element.riceModifiers;
 
-                for (int i = 0; i < predictorCoefNumA; i++) {
-                    tempPred = readBits(16);
-                    if (tempPred > 32767) {
-                        // the predictor coef table values are only 16bit signed
-                        tempPred = tempPred - 65536;
-                    }
-                    predictorCoefTableA[i] = tempPred;
-                }
+        // the interlacing is 0 for a single channel
+        element.interlacingShift = readBits(8);
+        element.interlacingLeftWeight = readBits(8);
 
-                // channel 2
-                predictionTypeB = readBits(4);
-                predictionQuantitizationB = readBits(4);
+        for (int c = 0; c < channels; c++) {
+            element.predictionTypes[c] = readBits(4);
+            element.predictionQuantitizations[c] = readBits(4);
 
-                riceModifierB = readBits(3);
-                predictorCoefNumB = readBits(5);
+            riceModifiers[c] = readBits(3);
+            element.predictorCoefNums[c] = readBits(5);
 
-                // read the predictor table
+            // read the predictor table
 
-                for (int i = 0; i < predictorCoefNumB; i++) {
-                    tempPred = readBits(16);
-                    if (tempPred > 32767) {
-                        // the predictor coef table values are only 16bit signed
-                        tempPred = tempPred - 65536;
-                    }
-                    predictorCoefTableB[i] = tempPred;
+            int[] predictorCoefTable = element.predictorCoefTables[c];
+            for (int i = 0; i < element.predictorCoefNums[c]; i++) {
+                int tempPred = readBits(16);
+                if (tempPred > 32767) {
+                    // the predictor coef table values are only 16bit signed
+                    tempPred = tempPred - 65536;
                 }
+                predictorCoefTable[i] = tempPred;
+            }
+        }
 
-                //
-                if (uncompressedBytes != 0) {
-                    // see mono case
-                    for (int i = 0; i < outputSamples; i++) {
-                        this.uncompressedBytesBufferA[i] = readBits(uncompressedBytes * 8);
-                        this.uncompressedBytesBufferB[i] = readBits(uncompressedBytes * 8);
-                    }
+        if (uncompressedBytes != 0) {
+            int[] bufferA = uncompressedBytesBuffer(channel);
+            int[] bufferB = channels > 1 ? uncompressedBytesBuffer(channel + 1) : null;
+            for (int i = 0; i < outputSamples; i++) {
+                bufferA[i] = readBits(uncompressedBytes * 8);
+                if (bufferB != null) {
+                    bufferB[i] = readBits(uncompressedBytes * 8);
                 }
+            }
+        }
 
-                // channel 1
-
-                this.decodeEntropyRice(this.predicterrorBufferA, outputSamples, readSampleSize, this.setInfo_riceInitialHistory, this.setInfo_riceKModifier, riceModifierA * (this.setInfo_riceHistoryMult / 4), (1 << this.setInfo_riceKModifier) - 1);
-
-                if (predictionTypeA == 0) { // adaptive fir
-
-                    this.outputSamplesBufferA = predictorDecompressFirAdapt(this.predicterrorBufferA, outputSamples, readSampleSize, predictorCoefTableA, predictorCoefNumA, predictionQuantitizationA);
-
-                } else { // see mono case
-                    logger.log(Level.WARNING, "FIXME: unhandled predicition type: " + predictionTypeA);
-                }
+        for (int c = 0; c < channels; c++) {
+            this.decodeEntropyRice(sampleBuffer(channel + c), outputSamples, readSampleSize, this.config.mb, this.config.kb, riceModifiers[c] * (this.config.pb / 4), (1 << this.config.kb) - 1);
+        }
+    }
 
-                // channel 2
-                this.decodeEntropyRice(this.predicterrorBufferB, outputSamples, readSampleSize, this.setInfo_riceInitialHistory, this.setInfo_riceKModifier, riceModifierB * (this.setInfo_riceHistoryMult / 4), (1 << this.setInfo_riceKModifier) - 1);
+    /** reads the samples of a not compressed element of 16 bits or less */
+    private void readVerbatim16(int channel, int channels, int outputSamples) {
+        int[] bufferA = sampleBuffer(channel);
+        int[] bufferB = channels > 1 ? sampleBuffer(channel + 1) : null;
+        int bitDepth = this.config.bitDepth;
+        int bitsMove = 32 - bitDepth;
+        for (int i = 0; i < outputSamples; i++) {
+            bufferA[i] = (readBits(bitDepth) << bitsMove) >> bitsMove;
+            if (bufferB != null) {
+                bufferB[i] = (readBits(bitDepth) << bitsMove) >> bitsMove;
+            }
+        }
+    }
 
-                if (predictionTypeB == 0) { // adaptive fir
-                    this.outputsamplesBufferB = predictorDecompressFirAdapt(this.predicterrorBufferB, outputSamples, readSampleSize, predictorCoefTableB, predictorCoefNumB, predictionQuantitizationB);
-                } else {
-                    logger.log(Level.WARNING, "FIXME: unhandled predicition type: " + predictionTypeB);
-                }
-            } else { // not compressed, easy case
-                if (this.setInfo_sampleSize <= 16) {
-                    int bitsMove;
+    /** reads the samples of a not compressed element of more than 16 bits */
+    private void readVerbatim24(int channel, int channels, int outputSamples) {
+        int[] bufferA = sampleBuffer(channel);
+        int[] bufferB = channels > 1 ? sampleBuffer(channel + 1) : null;
+        for (int i = 0; i < outputSamples; i++) {
+            bufferA[i] = readUncompressed24();
+            if (bufferB != null) {
+                bufferB[i] = readUncompressed24();
+            }
+        }
+    }
 
-                    for (int i = 0; i < outputSamples; i++) {
-                        int audioBitsA;
-                        int audioBitsB;
+    /** reads a sample of a not compressed element of more than 16 bits */
+    private int readUncompressed24() {
+        int audioBits = readBits(16);
+        // special case of sign extension..
+        // as we'll be ORing the low 16bits into this
+        audioBits = audioBits << (this.config.bitDepth - 16);
+        audioBits = audioBits | readBits(this.config.bitDepth - 16);
+        int bitsMove = 32 - this.config.bitDepth;
+        return (audioBits << bitsMove) >> bitsMove; // sign extend the bit depth
+    }
 
-                        audioBitsA = readBits(this.setInfo_sampleSize);
-                        audioBitsB = readBits(this.setInfo_sampleSize);
+    /** skips a data stream element */
+    private void skipDataStream() {
+        readBits(4); // element instance tag
+        boolean byteAlign = readBits(1) != 0;
+        int count = readBits(8);
+        if (count == 255) {
+            count += readBits(8);
+        }
+        if (byteAlign) {
+            this.reader.align();
+        }
+        for (int i = 0; i < count; i++) {
+            readBits(8);
+        }
+    }
 
-                        bitsMove = 32 - this.setInfo_sampleSize;
+    /** skips a fill element */
+    private void skipFill() {
+        int count = readBits(4);
+        if (count == 15) {
+            count += readBits(8) - 1;
+        }
+        for (int i = 0; i < count; i++) {
+            readBits(8);
+        }
+    }
 
-                        audioBitsA = ((audioBitsA << bitsMove) >> bitsMove);
-                        audioBitsB = ((audioBitsB << bitsMove) >> bitsMove);
+    /**
+     * decodes a frame into ints, 16 bit: a sample per int, 20 (in 24) and 24 bit: a little endian byte per int.
+     *
+     * @return bytes decoded
+     */
+    public int decodeFrame(byte[] inBuffer, int[] outBuffer, int outputSize) {
+        return writeInts(outBuffer, decodeSamples(inBuffer));
+    }
 
-                        this.outputSamplesBufferA[i] = audioBitsA;
-                        this.outputsamplesBufferB[i] = audioBitsB;
-                    }
-                } else {
-                    int x;
-                    int m = 1 << (24 - 1);
-
-                    for (int i = 0; i < outputSamples; i++) {
-                        int audioBitsA;
-                        int audioBitsB;
-
-                        audioBitsA = readBits(16);
-                        audioBitsA = audioBitsA << (this.setInfo_sampleSize - 16);
-                        audioBitsA = audioBitsA | readBits(this.setInfo_sampleSize - 16);
-                        x = audioBitsA & ((1 << 24) - 1);
-                        audioBitsA = (x ^ m) - m; // sign extend 24 bits
-
-                        audioBitsB = readBits(16);
-                        audioBitsB = audioBitsB << (this.setInfo_sampleSize - 16);
-                        audioBitsB = audioBitsB | readBits(this.setInfo_sampleSize - 16);
-                        x = audioBitsB & ((1 << 24) - 1);
-                        audioBitsB = (x ^ m) - m; // sign extend 24 bits
-
-                        this.outputSamplesBufferA[i] = audioBitsA;
-                        this.outputsamplesBufferB[i] = audioBitsB;
-                    }
+    /**
+     * writes decoded samples into ints, 16 bit: a sample per int, 20 (in 24) and 24 bit: a little endian byte per int.
+     *
+     * @return bytes written
+     */
+    int writeInts(int[] outBuffer, int outputSamples) {
+        int stride = this.config.numChannels;
+        switch (this.config.bitDepth) {
+        case 16:
+            for (int c = 0; c < this.config.numChannels; c++) {
+                int[] buffer = outputBuffer(c);
+                for (int i = 0; i < outputSamples; i++) {
+                    outBuffer[i * stride + c] = buffer[i];
                 }
-                uncompressedBytes = 0; // always 0 for uncompressed
-                interlacingShift = 0;
-                interlacingLeftWeight = 0;
-            }
-
-            switch (this.setInfo_sampleSize) {
-            case 16: {
-                deinterlace16(this.outputSamplesBufferA, this.outputsamplesBufferB, outBuffer, this.numChannels, outputSamples, interlacingShift, interlacingLeftWeight);
-                break;
             }
-            case 24: {
-                deinterlace24(this.outputSamplesBufferA, this.outputsamplesBufferB, uncompressedBytes, this.uncompressedBytesBufferA, this.uncompressedBytesBufferB, outBuffer, this.numChannels, outputSamples, interlacingShift, interlacingLeftWeight);
-                break;
-            }
-            case 20:
-            case 32:
-            default:
-                logger.log(Level.WARNING, "FIXME: unimplemented sample size " + this.setInfo_sampleSize);
+            break;
+        case 20:
+        case 24:
+            stride *= 3;
+            int shift = 24 - this.config.bitDepth;
+            for (int c = 0; c < this.config.numChannels; c++) {
+                int[] buffer = outputBuffer(c);
+                for (int i = 0; i < outputSamples; i++) {
+                    int sample = buffer[i] << shift;
+                    int o = i * stride + c * 3;
+                    outBuffer[o] = sample & 0xff;
+                    outBuffer[o + 1] = (sample >> 8) & 0xff;
+                    outBuffer[o + 2] = (sample >> 16) & 0xff;
+                }
             }
+            break;
+        default:
+            logger.log(Level.WARNING, "FIXME: unimplemented sample size " + this.config.bitDepth);
         }
-        return outputSize;
+        return outputSamples * this.config.getBytesPerSample();
     }
 
-    public int decodeEntropyValue(int readSampleSize, int k, int riceKModifierMask) {
-        int x = 0; // decoded value
-
-        // read x, number of 1s before 0 represent the rice value.
-        while (x <= RICE_THRESHOLD && readBit() != 0) {
-            x++;
-        }
-
-        if (x > RICE_THRESHOLD) {
-            // read the number from the bit stream (raw value)
-            int value = 0;
-
-            value = readBits(readSampleSize);
+    /**
+     * decodes a frame straight into interleaved pcm bytes.
+     *
+     * @param outBuffer must have room for the decoded frame from {@code outOffset}
+     * @param skip samples per channel at the top of the frame not to be written
+     * @param bigEndian byte order of the pcm
+     * @return bytes written
+     */
+    public int decodeFrame(byte[] inBuffer, byte[] outBuffer, int outOffset, int skip, boolean bigEndian) {
+        int outputSamples = decodeSamples(inBuffer);
+        return writePcm(outBuffer, outOffset, Math.min(skip, outputSamples), outputSamples, bigEndian);
+    }
 
-            // mask value
-            value &= ((0xffff_ffff) >> (32 - readSampleSize));
+    /**
+     * decodes a frame straight into interleaved pcm bytes in the byte order of {@code outBuffer}.
+     * the position of {@code outBuffer} is advanced.
+     *
+     * @param skip samples per channel at the top of the frame not to be written
+     * @return bytes written
+     * @throws BufferOverflowException {@code outBuffer} does not have enough room
+     */
+    public int decodeFrame(byte[] inBuffer, ByteBuffer outBuffer, int skip) {
+        int outputSamples = decodeSamples(inBuffer);
+        return writePcm(outBuffer, Math.min(skip, outputSamples), outputSamples);
+    }
 
-            x = value;
+    /**
+     * writes decoded samples {@code from} to {@code to} as interleaved pcm in the byte order of {@code outBuffer}.
+     * the position of {@code outBuffer} is advanced.
+     *
+     * @return bytes written
+     * @throws BufferOverflowException {@code outBuffer} does not have enough room
+     */
+    int writePcm(ByteBuffer outBuffer, int from, int outputSamples) {
+        int length = (outputSamples - from) * getOutputBytesPerSample();
+        if (outBuffer.remaining() < length) {
+            throw new BufferOverflowException();
+        }
+        boolean bigEndian = outBuffer.order() == ByteOrder.BIG_ENDIAN;
+        if (outBuffer.hasArray()) {
+            int position = outBuffer.position();
+            writePcm(outBuffer.array(), outBuffer.arrayOffset() + position, from, outputSamples, bigEndian);
+            outBuffer.position(position + length);
         } else {
-            if (k != 1) {
-                int extraBits = readBits(k);
-
-                x *= (((1 << k) - 1) & riceKModifierMask);
-
-                if (extraBits > 1)
-                    x += extraBits - 1;
-                else
-                    unreadBits(1);
+            // direct or read only buffer
+            if (this.pcmBuffer == null || this.pcmBuffer.length < length) {
+                this.pcmBuffer = new byte[length];
             }
+            writePcm(this.pcmBuffer, 0, from, outputSamples, bigEndian);
+            outBuffer.put(this.pcmBuffer, 0, length);
         }
-
-        return x;
+        return length;
     }
 
-    void unreadBits(int bits) {
-        int newAccumulator = (this.inputBufferBitAccumulator - bits);
-
-        this.ibIndex += (newAccumulator >> 3);
-
-        this.inputBufferBitAccumulator = (newAccumulator & 7);
-        if (this.inputBufferBitAccumulator < 0)
-            this.inputBufferBitAccumulator *= -1;
+    /**
+     * sets the layout of pcm written by {@link #writePcm}, every layout has its own loop.
+     *
+     * @param sampleSize bits of a sample written, 16, 24 or 32, 0: as decoded. ignored when {@code floating}
+     * @param floating samples are written as 32 bit float in [-1, 1)
+     * @param dither tpdf dither when 24 bit samples are written as 16 bit
+     * @throws IllegalArgumentException unsupported sample size
+     */
+    void setOutputFormat(int sampleSize, boolean floating, boolean dither) {
+        if (!floating && sampleSize != 0 && sampleSize != 16 && sampleSize != 24 && sampleSize != 32) {
+            throw new IllegalArgumentException("unsupported output sample size: " + sampleSize);
+        }
+        this.outputSampleSize = floating ? 0 : sampleSize;
+        this.outputFloat = floating;
+        this.dither = dither;
+        this.interleaver = interleaver();
     }
 
-    /** reads a single bit */
-    int readBit() {
-        int result = 0;
-        int newAccumulator = 0;
-        int part1 = 0;
-
-        part1 = (this.inputBuffer[this.ibIndex] & 0xff);
-
-        result = part1;
-
-        result = result << this.inputBufferBitAccumulator;
-
-        result = result >> 7 & 1;
-
-        newAccumulator = (this.inputBufferBitAccumulator + 1);
-
-        this.ibIndex += newAccumulator / 8;
-
-        this.inputBufferBitAccumulator = (newAccumulator % 8);
-
-        return result;
+    /** @param channels from which the elements of a frame are reconstructed in parallel, {@link Integer#MAX_VALUE}: never */
+    void setParallelChannels(int channels) {
+        this.parallelChannels = channels;
     }
 
-    /** supports reading 1 to 32 bits, in big endian format */
-    int readBits(int bits) {
-        int result = 0;
+    // the loops of writePcm
+    private static final int INTERLEAVE_16 = 0;
+    private static final int INTERLEAVE_24_TO_16 = 1;
+    private static final int INTERLEAVE_24_TO_16_DITHER = 2;
+    private static final int INTERLEAVE_24 = 3;
+    private static final int INTERLEAVE_32 = 4;
+    private static final int INTERLEAVE_FLOAT = 5;
+
+    /** the loop for the bit depth and the output format */
+    private int interleaver() {
+        if (this.outputFloat) {
+            return INTERLEAVE_FLOAT;
+        }
+        switch (this.outputSampleSize == 0 ? this.config.bitDepth : this.outputSampleSize) {
+        case 16:
+            if (this.config.bitDepth == 16) {
+                return INTERLEAVE_16;
+            } else {
+                return this.dither ? INTERLEAVE_24_TO_16_DITHER : INTERLEAVE_24_TO_16;
+            }
+        case 20: // in 24 bits
+        case 24:
+            return INTERLEAVE_24;
+        default:
+            return INTERLEAVE_32;
+        }
+    }
 
-        if (bits > 16) {
-            bits -= 16;
+    /** bytes of a sample frame (all channels) of pcm written by {@link #writePcm} */
+    int getOutputBytesPerSample() {
+        if (this.outputFloat) {
+            return 4 * this.config.numChannels;
+        } else if (this.outputSampleSize != 0) {
+            return this.outputSampleSize / 8 * this.config.numChannels;
+        } else {
+            return this.config.getBytesPerSample();
+        }
+    }
 
-            result = readBits16(16) << bits;
+    /** writes decoded samples {@code from} to {@code to} as interleaved pcm bytes, channels are written by pairs */
+    int writePcm(byte[] out, int offset, int from, int to, boolean bigEndian) {
+        int sampleSize = this.config.bitDepth;
+        if (sampleSize != 16 && sampleSize != 20 && sampleSize != 24) {
+            logger.log(Level.WARNING, "FIXME: unimplemented sample size " + sampleSize);
+            return 0;
         }
+        int bytes = getOutputBytesPerSample() / this.config.numChannels;
+        for (int c = 0; c < this.config.numChannels; c += 2) {
+            int[] bufferA = outputBuffer(c);
+            int[] bufferB = c + 1 < this.config.numChannels ? outputBuffer(c + 1) : null;
+            writePcm(bufferA, bufferB, out, offset + c * bytes, from, to, bigEndian);
+        }
+        return (to - from) * getOutputBytesPerSample();
+    }
 
-        result |= readBits16(bits);
+    /** writes a channel or a pair of channels by the layout set */
+    private int writePcm(int[] bufferA, int[] bufferB, byte[] out, int offset, int from, int to, boolean bigEndian) {
+        int sampleSize = this.config.bitDepth;
+        int numChannels = this.config.numChannels;
+        switch (this.interleaver) {
+        case INTERLEAVE_16:
+            return interleave16(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian);
+        case INTERLEAVE_24_TO_16:
+            return interleave24To16(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian, 24 - sampleSize);
+        case INTERLEAVE_24_TO_16_DITHER:
+            return interleave24To16Dither(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian, 24 - sampleSize);
+        case INTERLEAVE_24:
+            return interleave24(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian, 24 - sampleSize);
+        case INTERLEAVE_32:
+            return interleave32(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian, 32 - sampleSize);
+        default:
+            return interleaveFloat(bufferA, bufferB, numChannels, from, to, out, offset, bigEndian, 1f / (1 << (sampleSize - 1)));
+        }
+    }
 
-        return result;
+    /**
+     * copies decoded samples {@code from} to {@code to} into planar channel buffers, nothing is interleaved.
+     * the samples are already restored from mid and side.
+     *
+     * @param channels a buffer per channel, room for {@code to - from} samples
+     * @return samples per channel written
+     */
+    int writePlanar(int[][] channels, int from, int to) {
+        int length = to - from;
+        for (int c = 0; c < this.config.numChannels; c++) {
+            System.arraycopy(outputBuffer(c), from, channels[c], 0, length);
+        }
+        return length;
     }
 
-    /** supports reading 1 to 16 bits, in big endian format */
-    int readBits16(int bits) {
-        int result = 0;
-        int newAccumulator = 0;
-        int part1 = 0;
-        int part2 = 0;
-        int part3 = 0;
+    /**
+     * writes decoded samples {@code from} to {@code to} into planar channel buffers as float in [-1, 1).
+     *
+     * @param channels a buffer per channel, room for {@code to - from} samples
+     * @return samples per channel written
+     */
+    int writePlanar(float[][] channels, int from, int to) {
+        float scale = 1f / (1 << (this.config.bitDepth - 1));
+        int length = to - from;
+        for (int c = 0; c < this.config.numChannels; c++) {
+            float[] channel = channels[c];
+            int[] buffer = outputBuffer(c);
+            for (int i = 0; i < length; i++) {
+                channel[i] = buffer[from + i] * scale;
+            }
+        }
+        return length;
+    }
 
-        part1 = (this.inputBuffer[this.ibIndex] & 0xff);
-        part2 = (this.inputBuffer[this.ibIndex + 1] & 0xff);
-        part3 = (this.inputBuffer[this.ibIndex + 2] & 0xff);
+    /**
+     * decodes one rice/golomb coded value.
+     * <p>
+     * a code is up to {@link #RICE_THRESHOLD} 1s, a 0 and k bits, so the
+     * common short codes are resolved from a single 32 bit peek, the unary
+     * prefix is counted by leading zeros of the inverted bits.
+     */
+    public int decodeEntropyValue(int readSampleSize, int k, int riceKModifierMask) {
+        BitReader reader = this.reader;
 
-        result = ((part1 << 16) | (part2 << 8) | part3);
+        int bits = reader.peek(32);
+        // number of 1s before 0 represent the rice value.
+        int x = Integer.numberOfLeadingZeros(~bits);
 
-        // shift left by the number of bits we've already read,
-		// so that the top 'n' bits of the 24 bits we read will
-		// be the return bits
-        result = result << this.inputBufferBitAccumulator;
+        if (x > RICE_THRESHOLD) {
+            // escape, read the number from the bit stream (raw value)
+            reader.skip(RICE_THRESHOLD + 1);
 
-        result = result & 0x00ff_ffff;
+            int value = reader.read(readSampleSize);
 
-        // and then only want the top 'n' bits from that, where
-		// n is 'bits'
-        result = result >> (24 - bits);
+            // mask value
+            value &= ((0xffff_ffff) >> (32 - readSampleSize));
 
-        newAccumulator = (this.inputBufferBitAccumulator + bits);
+            return value;
+        }
 
-        // increase the buffer pointer if we've read over n bytes.
-        this.ibIndex += (newAccumulator >> 3);
+        if (k == 1) {
+            reader.skip(x + 1);
+            return x;
+        }
 
-        // and the remainder goes back into the bit accumulator
-        this.inputBufferBitAccumulator = (newAccumulator & 7);
+        int prefix = x + 1;
+        int extraBits;
+        if (prefix + k <= 32) {
+            extraBits = (bits << prefix) >>> (32 - k);
+        } else {
+            reader.skip(prefix);
+            prefix = 0;
+            extraBits = reader.peek(k);
+        }
 
-        return result;
-    }
+        x *= (((1 << k) - 1) & riceKModifierMask);
 
-    public void setAlacInfo(int[] inputBuffer) {
-        int index = 0;
-        index += 4; // size
-        index += 4; // frma
-        index += 4; // file
-        index += 4; // size
-        index += 4; // file
+        if (extraBits > 1) {
+            x += extraBits - 1;
+            reader.skip(prefix + k);
+        } else {
+            // the lowest bit belongs to the next value
+            reader.skip(prefix + k - 1);
+        }
 
-        index += 4; // 0 ?
+        return x;
+    }
 
-        this.setInfo_maxSamplesPerFrame = ((inputBuffer[index] << 24) + (inputBuffer[index + 1] << 16) + (inputBuffer[index + 2] << 8) + inputBuffer[index + 3]); // buffer size / 2 ?
-        index += 4;
-        this.setInfo_7A = inputBuffer[index];
-        index += 1;
-        this.setInfo_sampleSize = inputBuffer[index];
-        index += 1;
-        this.setInfo_riceHistoryMult = (inputBuffer[index] & 0xff);
-        index += 1;
-        this.setInfo_riceInitialHistory = (inputBuffer[index] & 0xff);
-        index += 1;
-        this.setInfo_riceKModifier = (inputBuffer[index] & 0xff);
-        index += 1;
-        this.setInfo_7f = inputBuffer[index];
-        index += 1;
-        this.setInfo_80 = (inputBuffer[index] << 8) + inputBuffer[index + 1];
-        index += 2;
-        this.setInfo_82 = ((inputBuffer[index] << 24) + (inputBuffer[index + 1] << 16) + (inputBuffer[index + 2] << 8) + inputBuffer[index + 3]);
-        index += 4;
-        this.setInfo_86 = ((inputBuffer[index] << 24) + (inputBuffer[index + 1] << 16) + (inputBuffer[index + 2] << 8) + inputBuffer[index + 3]);
-        index += 4;
-        this.setInfo_8a_rate = ((inputBuffer[index] << 24) + (inputBuffer[index + 1] << 16) + (inputBuffer[index + 2] << 8) + inputBuffer[index + 3]);
-        index += 4;
+    /** supports reading 1 to 32 bits, in big endian format */
+    private int readBits(int bits) {
+        return this.reader.read(bits);
     }
-}
\ No newline at end of file
+}
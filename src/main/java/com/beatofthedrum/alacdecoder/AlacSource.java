@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Random access input of an ALAC (mp4) file.
+ * <p>
+ * frames are read by their absolute offsets in the file, so a source does not have
+ * a current position which readers share.
+ * an instance is not thread safe, use an instance per reader.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public interface AlacSource extends Closeable {
+
+    /** @return total bytes of the file, -1 when unknown */
+    long size() throws IOException;
+
+    /**
+     * reads bytes at {@code position}.
+     *
+     * @return a big endian buffer whose position to limit are the bytes, fewer than {@code length}
+     *         only at the end of the file. it may be a view of a file mapping (no copy),
+     *         and is valid until the next call.
+     */
+    ByteBuffer read(long position, int length) throws IOException;
+}
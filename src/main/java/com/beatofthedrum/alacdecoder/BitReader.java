@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Big endian (msb first) bit reader.
+ * <p>
+ * keeps up to 64 bits in a cache word which is refilled 32 bits at a time,
+ * so reading does not touch the byte array for every call.
+ * bytes beyond the end of the input are read as 0.
+ * the input is a byte array or a buffer without an accessible array (e.g. a file mapping),
+ * which is read in place.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+final class BitReader {
+
+    /** reads an int from a byte array in big endian */
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private byte[] buffer;
+    /** used when {@link #buffer} is null */
+    private ByteBuffer byteBuffer;
+    /** index of the next byte to be loaded into the cache */
+    private int index;
+    private int limit;
+
+    /** valid bits are left aligned, the rest is 0 */
+    private long cache;
+    /** number of valid bits in the cache */
+    private int bits;
+
+    /** starts reading {@code buffer} from {@code offset} */
+    void reset(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.byteBuffer = null;
+        this.index = offset;
+        this.limit = offset + length;
+        this.cache = 0;
+        this.bits = 0;
+    }
+
+    /** starts reading {@code buffer} from its position to its limit */
+    void reset(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            reset(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        } else {
+            this.buffer = null;
+            this.byteBuffer = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+            this.index = buffer.position();
+            this.limit = buffer.limit();
+            this.cache = 0;
+            this.bits = 0;
+        }
+    }
+
+    /** loads 32 bits, bits must be 32 or less */
+    private void refill() {
+        long word;
+        if (index + 4 <= limit) {
+            if (buffer != null) {
+                word = (int) INT_BE.get(buffer, index) & 0xffff_ffffL;
+            } else {
+                word = byteBuffer.getInt(index) & 0xffff_ffffL;
+            }
+        } else {
+            word = 0;
+            for (int i = 0; i < 4; i++) {
+                word <<= 8;
+                if (index + i < limit) {
+                    word |= (buffer != null ? buffer[index + i] : byteBuffer.get(index + i)) & 0xff;
+                }
+            }
+        }
+        cache |= word << (32 - bits);
+        bits += 32;
+        index += 4;
+    }
+
+    /** returns the next {@code n} (1 to 32) bits without consuming them */
+    int peek(int n) {
+        if (bits < n) {
+            refill();
+        }
+        return (int) (cache >>> (64 - n));
+    }
+
+    /** consumes {@code n} (0 to 32) bits, they must be peeked before */
+    void skip(int n) {
+        cache <<= n;
+        bits -= n;
+    }
+
+    /** reads 0 to 32 bits */
+    int read(int n) {
+        if (n == 0) {
+            return 0;
+        }
+        int value = peek(n);
+        skip(n);
+        return value;
+    }
+
+    /** skips to the next byte boundary */
+    void align() {
+        // the cache is always loaded by bytes
+        skip(bits & 7);
+    }
+
+    /** reads a single bit */
+    int readBit() {
+        return read(1);
+    }
+
+    /**
+     * counts 1 bits (a unary code) up to {@code limit} (1 to 31).
+     * the terminating 0 is consumed only when it is found before the limit.
+     */
+    int readUnary(int limit) {
+        if (bits <= limit) {
+            refill();
+        }
+        int ones = Long.numberOfLeadingZeros(~cache);
+        if (ones >= limit) {
+            skip(limit);
+            return limit;
+        } else {
+            skip(ones + 1);
+            return ones;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+
+/**
+ * Big endian (msb first) bit writer, the counterpart of {@link BitReader}.
+ */
+final class BitWriter {
+
+    private byte[] buffer;
+    private int index;
+    /** pending bits, left aligned at {@link #bits} */
+    private long cache;
+    private int bits;
+
+    /** starts writing into {@code buffer} from {@code offset} */
+    void reset(byte[] buffer, int offset) {
+        this.buffer = buffer;
+        this.index = offset;
+        this.cache = 0;
+        this.bits = 0;
+    }
+
+    /** writes the lower {@code n} (0 to 32) bits of {@code value} */
+    void write(int value, int n) {
+        if (n == 0) {
+            return;
+        }
+        cache = (cache << n) | (value & (0xffff_ffffL >>> (32 - n)));
+        bits += n;
+        while (bits >= 8) {
+            bits -= 8;
+            buffer[index++] = (byte) (cache >>> bits);
+        }
+    }
+
+    /** writes {@code n} 1 bits */
+    void writeOnes(int n) {
+        while (n > 16) {
+            write(0xffff, 16);
+            n -= 16;
+        }
+        write(0xffff, n);
+    }
+
+    /** pads with 0 to the next byte boundary */
+    void align() {
+        if (bits > 0) {
+            write(0, 8 - bits);
+        }
+    }
+
+    /** current byte index, valid after {@link #align()} */
+    int index() {
+        return index;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * ALAC channel layouts, the elements of a frame and the order of the channels.
+ * <p>
+ * a frame has elements of one (SCE, LFE) or two (CPE) channels in the order of the layout,
+ * e.g. 5.1 is C, L R, Ls Rs, LFE. pcm is in the order of wave (L R C LFE Ls Rs ...),
+ * the layout of a file is the tag of its "chan" atom or the default of alac for the channels.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+final class ChannelLayout {
+
+    private static final Logger logger = getLogger(ChannelLayout.class.getName());
+
+    // element ids
+    /** single channel element */
+    static final int ID_SCE = 0;
+    /** channel pair element */
+    static final int ID_CPE = 1;
+    /** coupling channel element, not used by alac */
+    static final int ID_CCE = 2;
+    /** lfe channel element */
+    static final int ID_LFE = 3;
+    /** data stream element */
+    static final int ID_DSE = 4;
+    /** program config element, not used by alac */
+    static final int ID_PCE = 5;
+    /** fill element */
+    static final int ID_FIL = 6;
+    /** end of a frame */
+    static final int ID_END = 7;
+
+    /** most channels of a file */
+    static final int MAX_CHANNELS = 8;
+
+    /** kAudioChannelLayoutTag_UseChannelBitmap, channels are in the order of the bitmap, same as wave */
+    static final int TAG_BITMAP = 1 << 16;
+
+    // speakers, valued in the order of wave
+    private static final int L = 0;
+    private static final int R = 1;
+    private static final int C = 2;
+    private static final int LFE = 3;
+    private static final int LS = 4;
+    private static final int RS = 5;
+    private static final int LC = 6;
+    private static final int RC = 7;
+    private static final int CS = 8;
+
+    /** elements of a frame, index is channels - 1 */
+    private static final int[][] ELEMENTS = {
+        { ID_SCE },
+        { ID_CPE },
+        { ID_SCE, ID_CPE },
+        { ID_SCE, ID_CPE, ID_SCE },
+        { ID_SCE, ID_CPE, ID_CPE },
+        { ID_SCE, ID_CPE, ID_CPE, ID_LFE },
+        { ID_SCE, ID_CPE, ID_CPE, ID_SCE, ID_LFE },
+        { ID_SCE, ID_CPE, ID_CPE, ID_CPE, ID_LFE },
+    };
+
+    /** the layout tags of alac, index is channels - 1 */
+    private static final int[] TAGS = {
+        (100 << 16) | 1, // mono: C
+        (101 << 16) | 2, // stereo: L R
+        (113 << 16) | 3, // mpeg 3.0 b: C L R
+        (116 << 16) | 4, // mpeg 4.0 b: C L R Cs
+        (120 << 16) | 5, // mpeg 5.0 d: C L R Ls Rs
+        (124 << 16) | 6, // mpeg 5.1 d: C L R Ls Rs LFE
+        (142 << 16) | 7, // aac 6.1: C L R Ls Rs Cs LFE
+        (127 << 16) | 8, // mpeg 7.1 b: C Lc Rc L R Ls Rs LFE
+    };
+
+    /** speakers of the channels of layout tags */
+    private static final Map<Integer, int[]> SPEAKERS = Map.ofEntries(
+        Map.entry((100 << 16) | 1, new int[] { C }),
+        Map.entry((101 << 16) | 2, new int[] { L, R }),
+        // the alac reference defines mpeg 3.0 b as 113, which is 3.0 a (L R C) of core audio
+        Map.entry((113 << 16) | 3, new int[] { C, L, R }),
+        Map.entry((114 << 16) | 3, new int[] { C, L, R }),
+        Map.entry((115 << 16) | 4, new int[] { L, R, C, CS }),
+        Map.entry((116 << 16) | 4, new int[] { C, L, R, CS }),
+        Map.entry((117 << 16) | 5, new int[] { L, R, C, LS, RS }),
+        Map.entry((118 << 16) | 5, new int[] { L, R, LS, RS, C }),
+        Map.entry((119 << 16) | 5, new int[] { L, C, R, LS, RS }),
+        Map.entry((120 << 16) | 5, new int[] { C, L, R, LS, RS }),
+        Map.entry((121 << 16) | 6, new int[] { L, R, C, LFE, LS, RS }),
+        Map.entry((122 << 16) | 6, new int[] { L, R, LS, RS, C, LFE }),
+        Map.entry((123 << 16) | 6, new int[] { L, C, R, LS, RS, LFE }),
+        Map.entry((124 << 16) | 6, new int[] { C, L, R, LS, RS, LFE }),
+        Map.entry((125 << 16) | 7, new int[] { L, R, C, LFE, LS, RS, CS }),
+        Map.entry((126 << 16) | 8, new int[] { L, R, C, LFE, LS, RS, LC, RC }),
+        Map.entry((127 << 16) | 8, new int[] { C, LC, RC, L, R, LS, RS, LFE }),
+        Map.entry((142 << 16) | 7, new int[] { C, L, R, LS, RS, CS, LFE })
+    );
+
+    private ChannelLayout() {
+    }
+
+    /**
+     * @return ids of the elements of a frame
+     * @throws IllegalArgumentException unsupported channels
+     */
+    static int[] elements(int numChannels) {
+        check(numChannels);
+        return ELEMENTS[numChannels - 1];
+    }
+
+    /**
+     * @return the layout tag of alac for the channels, written as the "chan" atom
+     * @throws IllegalArgumentException unsupported channels
+     */
+    static int defaultTag(int numChannels) {
+        check(numChannels);
+        return TAGS[numChannels - 1];
+    }
+
+    /**
+     * the order of the channels of pcm.
+     *
+     * @param tag a layout tag of a "chan" atom
+     * @return the channel of the frame for each channel of pcm,
+     *         channels are left as they are in a frame for a tag unknown or not for the channels
+     */
+    static int[] channelMap(int tag, int numChannels) {
+        int[] speakers = SPEAKERS.get(tag);
+        if (speakers == null || speakers.length != numChannels) {
+            if (tag != TAG_BITMAP) {
+                logger.log(Level.DEBUG, "channel layout: %08x for %d channels, as it is".formatted(tag, numChannels));
+            }
+            return IntStream.range(0, numChannels).toArray();
+        }
+        return IntStream.range(0, numChannels).boxed()
+                .sorted(Comparator.comparingInt(i -> speakers[i]))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    /** @return the channel of pcm for each channel of the frame, the inverse of {@link #channelMap} */
+    static int[] sourceMap(int tag, int numChannels) {
+        int[] map = channelMap(tag, numChannels);
+        int[] inverse = new int[numChannels];
+        for (int i = 0; i < numChannels; i++) {
+            inverse[map[i]] = i;
+        }
+        return inverse;
+    }
+
+    /** */
+    private static void check(int numChannels) {
+        if (numChannels < 1 || numChannels > MAX_CHANNELS) {
+            throw new IllegalArgumentException("unsupported channels: " + numChannels);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A bounded pool of decoder buffers, for servers which open many short streams at a time.
+ * <p>
+ * opt-in, {@link Alac}s created after {@link #setDefault(DecoderPool)} take the buffers
+ * (samples, the input frame, pcm) from the pool and give them back by {@link Alac#close()}.
+ * buffers are pooled by the bit depth, the channels and the max samples per frame,
+ * up to {@code maxIdle} buffers of each and {@code maxIdleTotal} buffers of all shapes
+ * are kept, the shape used least recently is evicted first, others are left to the gc.
+ * <pre>
+ * DecoderPool.setDefault(new DecoderPool(64));
+ * ...
+ * try (AudioInputStream ais = AudioSystem.getAudioInputStream(pcmFormat, AudioSystem.getAudioInputStream(in))) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public final class DecoderPool {
+
+    /** the pool used by {@link Alac}s, null: not pooled (default) */
+    private static volatile DecoderPool defaultPool;
+
+    /** @param pool null: {@link Alac}s allocate their own buffers */
+    public static void setDefault(DecoderPool pool) {
+        defaultPool = pool;
+    }
+
+    /** @return null: not pooled */
+    public static DecoderPool getDefault() {
+        return defaultPool;
+    }
+
+    /** the shape of the buffers */
+    private record Key(int bitDepth, int numChannels, int frameLength) {
+        Key(AlacConfig config) {
+            this(config.bitDepth, config.numChannels, config.frameLength);
+        }
+    }
+
+    /**
+     * buffers of a decoder, allocated when they are used first
+     * and kept over the streams of the same shape.
+     */
+    static final class Buffers {
+        /** the shape */
+        private final Key key;
+        /** rice decoded errors, which are predicted into samples in place, by channel of a frame */
+        final int[][] sampleBuffers;
+        /** by channel of a frame */
+        final int[][] uncompressedBytesBuffers;
+        /** the input frame, grown to the biggest frame read */
+        ByteBuffer readBuffer;
+        /** pcm of a frame, for the biggest output format (32 bits) */
+        ByteBuffer pcmBuffer;
+
+        private Buffers(Key key) {
+            this.key = key;
+            this.sampleBuffers = new int[ChannelLayout.MAX_CHANNELS][];
+            this.uncompressedBytesBuffers = new int[ChannelLayout.MAX_CHANNELS][];
+        }
+
+        /** not pooled */
+        Buffers(AlacConfig config) {
+            this(new Key(config));
+        }
+    }
+
+    /** idle buffers per shape */
+    private final int maxIdle;
+    /** idle buffers of all shapes */
+    private final int maxIdleTotal;
+
+    /** by shape, the least recently used first, no empty ones */
+    private final Map<Key, ArrayDeque<Buffers>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    /** buffers in {@link #idle} */
+    private int idleTotal;
+
+    private long hits;
+    private long misses;
+    private long outstanding;
+    private long dropped;
+
+    /**
+     * @param maxIdle idle buffers kept, of all shapes together
+     * @throws IllegalArgumentException {@code maxIdle} is negative
+     */
+    public DecoderPool(int maxIdle) {
+        this(maxIdle, maxIdle);
+    }
+
+    /**
+     * @param maxIdle idle buffers kept per bit depth, channels and max samples per frame
+     * @param maxIdleTotal idle buffers kept of all shapes
+     * @throws IllegalArgumentException {@code maxIdle} or {@code maxIdleTotal} is negative
+     */
+    public DecoderPool(int maxIdle, int maxIdleTotal) {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("negative max idle: " + maxIdle);
+        }
+        if (maxIdleTotal < 0) {
+            throw new IllegalArgumentException("negative max idle total: " + maxIdleTotal);
+        }
+        this.maxIdle = maxIdle;
+        this.maxIdleTotal = maxIdleTotal;
+    }
+
+    /** @return idle buffers for the config, or new ones */
+    synchronized Buffers acquire(AlacConfig config) {
+        Key key = new Key(config);
+        outstanding++;
+        ArrayDeque<Buffers> buffers = idle.get(key);
+        if (buffers != null) {
+            hits++;
+            idleTotal--;
+            if (buffers.size() == 1) {
+                idle.remove(key);
+            }
+            return buffers.pop();
+        }
+        misses++;
+        return new Buffers(key);
+    }
+
+    /** gives back buffers taken by {@link #acquire(AlacConfig)}, which are not used after this */
+    synchronized void release(Buffers buffers) {
+        outstanding--;
+        ArrayDeque<Buffers> deque = idle.get(buffers.key);
+        if (maxIdle == 0 || maxIdleTotal == 0 || (deque != null && deque.size() >= maxIdle)) {
+            dropped++;
+            return;
+        }
+        if (deque == null) {
+            deque = new ArrayDeque<>();
+            idle.put(buffers.key, deque);
+        }
+        deque.push(buffers);
+        idleTotal++;
+        // the oldest buffers of the shape used least recently
+        Iterator<ArrayDeque<Buffers>> i = idle.values().iterator();
+        while (idleTotal > maxIdleTotal) {
+            ArrayDeque<Buffers> eldest = i.next();
+            while (!eldest.isEmpty() && idleTotal > maxIdleTotal) {
+                eldest.removeLast();
+                idleTotal--;
+                dropped++;
+            }
+            if (eldest.isEmpty()) {
+                i.remove();
+            }
+        }
+    }
+
+    /** buffers reused */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /** buffers allocated because there were no idle ones */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** buffers in use, taken and not given back yet */
+    public synchronized long getOutstanding() {
+        return outstanding;
+    }
+
+    /** buffers given back or evicted and left to the gc, because the pool was full */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    /** buffers kept for reuse */
+    public synchronized int getIdle() {
+        return idleTotal;
+    }
+
+    /** drops the idle buffers, the counts are left as they are */
+    public synchronized void clear() {
+        idle.clear();
+        idleTotal = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DecoderPool{maxIdle=" + maxIdle + ", maxIdleTotal=" + maxIdleTotal + ", hits=" + hits + ", misses=" + misses +
+               ", outstanding=" + outstanding + ", dropped=" + dropped + ", idle=" + getIdle() + '}';
+    }
+}
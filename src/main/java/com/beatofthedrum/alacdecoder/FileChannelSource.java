@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * {@link AlacSource} of a local file.
+ * <p>
+ * the file is memory mapped and frames are decoded in place from the mapping,
+ * or read by positional reads, either way the channel position is not used,
+ * so several sources can share a channel.
+ * a file is mapped in regions which overlap each other, so that a file larger than
+ * a single mapping (2GB) is mapped and a read up to the overlap never crosses a region,
+ * a region is mapped at its first use.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class FileChannelSource implements AlacSource {
+
+    private static final Logger logger = getLogger(FileChannelSource.class.getName());
+
+    /** distance between the starts of regions */
+    private static final long REGION_STEP = 1L << 30;
+
+    /** bytes a region is mapped beyond the start of the next region */
+    private static final int REGION_OVERLAP = 1 << 24;
+
+    private final FileChannel channel;
+
+    /** whether the channel is closed by this source */
+    private final boolean owner;
+
+    private final long size;
+
+    /** null when positional reads are used, an element is null until it's used */
+    private final MappedByteBuffer[] regions;
+
+    private final long regionStep;
+
+    private final int regionOverlap;
+
+    /** for positional reads */
+    private ByteBuffer readBuffer;
+
+    /**
+     * @param channel not closed by this source
+     * @param map true: memory mapped, false: positional reads
+     */
+    public FileChannelSource(FileChannel channel, boolean map) throws IOException {
+        this(channel, map, false, REGION_STEP, REGION_OVERLAP);
+    }
+
+    /**
+     * @param regionStep distance between the starts of regions
+     * @param regionOverlap bytes a region is mapped beyond the start of the next region,
+     *                      reads longer than this may be positional reads
+     */
+    FileChannelSource(FileChannel channel, boolean map, boolean owner, long regionStep, int regionOverlap) throws IOException {
+        if (regionStep <= 0 || regionOverlap < 0 || regionStep + regionOverlap > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("region step: " + regionStep + ", overlap: " + regionOverlap);
+        }
+        this.channel = channel;
+        this.owner = owner;
+        this.size = channel.size();
+        this.regionStep = regionStep;
+        this.regionOverlap = regionOverlap;
+        if (map) {
+            this.regions = new MappedByteBuffer[(int) Math.max(1, (size + regionStep - 1) / regionStep)];
+logger.log(Level.DEBUG, "regions: " + regions.length + ", size: " + size);
+        } else {
+            this.regions = null;
+        }
+    }
+
+    /**
+     * opens a file.
+     * @param map true: memory mapped, false: positional reads
+     */
+    public static FileChannelSource open(Path path, boolean map) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new FileChannelSource(channel, map, true, REGION_STEP, REGION_OVERLAP);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public ByteBuffer read(long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("position: " + position + ", length: " + length);
+        }
+        length = (int) Math.max(0, Math.min(length, size - position));
+        int index = (int) Math.min(position / regionStep, regions == null ? 0 : regions.length - 1);
+        long regionStart = index * regionStep;
+        if (regions != null && position + length <= Math.min(size, regionStart + regionStep + regionOverlap)) {
+            return region(index).slice((int) (position - regionStart), length);
+        } else {
+            if (readBuffer == null || readBuffer.capacity() < length) {
+                readBuffer = ByteBuffer.allocate(Math.max(length, 8192));
+            }
+            ByteBuffer buffer = readBuffer;
+            buffer.clear().limit(length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            return buffer.flip();
+        }
+    }
+
+    /** maps the region at its first use */
+    private MappedByteBuffer region(int index) throws IOException {
+        MappedByteBuffer region = regions[index];
+        if (region == null) {
+            long start = index * regionStep;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, regionStep + regionOverlap));
+            regions[index] = region;
+        }
+        return region;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (owner) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Read only {@link SeekableByteChannel} of an http(s) resource by range requests.
+ * <p>
+ * every read is a request of the bytes from the position to the remaining of the buffer,
+ * nothing is buffered, so reads should be large (e.g. through {@link SeekableByteChannelSource}).
+ * the size is taken from "Content-Range" of the first response.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class HttpRangeChannel implements SeekableByteChannel {
+
+    private static final Logger logger = getLogger(HttpRangeChannel.class.getName());
+
+    /** "bytes first-last/size" */
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes\\s+(\\d+)-(\\d+)/(\\d+|\\*)");
+
+    private final URL url;
+
+    /** -1 until the first response */
+    private long size = -1;
+
+    private long position;
+
+    private boolean open = true;
+
+    /** nothing is requested until the first read or {@link #size()} */
+    public HttpRangeChannel(URL url) {
+        this.url = url;
+    }
+
+    /**
+     * requests the first byte to know the size.
+     * @return false when the server does not accept range requests
+     */
+    public boolean acceptsRanges() throws IOException {
+        if (size == -1) {
+            HttpURLConnection connection = request(0, 0);
+            try {
+                if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+logger.log(Level.DEBUG, "no range support: " + connection.getResponseCode() + ", " + url);
+                    return false;
+                }
+                readSize(connection);
+            } finally {
+                drain(connection);
+            }
+        }
+        return true;
+    }
+
+    /** @throws IOException the server does not accept range requests */
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        if (!acceptsRanges()) {
+            throw new IOException("range requests are not accepted: " + url);
+        }
+        return size;
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("negative position: " + newPosition);
+        }
+        this.position = newPosition;
+        return this;
+    }
+
+    /** a request for {@code dst.remaining()} bytes */
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (size != -1 && position >= size) {
+            return -1;
+        }
+        int length = dst.remaining();
+        if (size != -1) {
+            length = (int) Math.min(length, size - position);
+        }
+        if (length == 0) {
+            return 0;
+        }
+
+        HttpURLConnection connection = request(position, position + length - 1);
+        try {
+            int code = connection.getResponseCode();
+            if (code == 416) { // range not satisfiable
+                drain(connection);
+                return -1;
+            } else if (code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("range requests are not accepted: " + code + ", " + url);
+            }
+            readSize(connection);
+
+            int n = 0;
+            try (InputStream is = connection.getInputStream()) {
+                if (dst.hasArray()) {
+                    n = is.readNBytes(dst.array(), dst.arrayOffset() + dst.position(), length);
+                    dst.position(dst.position() + n);
+                } else {
+                    byte[] bytes = is.readNBytes(length);
+                    dst.put(bytes);
+                    n = bytes.length;
+                }
+            }
+            position += n;
+            return n == 0 ? -1 : n;
+        } catch (IOException e) {
+            connection.disconnect();
+            throw e;
+        }
+    }
+
+    /** */
+    private HttpURLConnection request(long first, long last) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestProperty("Range", "bytes=" + first + "-" + last);
+        connection.setRequestProperty("Accept-Encoding", "identity");
+        return connection;
+    }
+
+    /** takes the size from "Content-Range" */
+    private void readSize(HttpURLConnection connection) {
+        if (size == -1) {
+            String contentRange = connection.getHeaderField("Content-Range");
+            Matcher matcher = CONTENT_RANGE.matcher(contentRange == null ? "" : contentRange);
+            if (matcher.matches() && !matcher.group(3).equals("*")) {
+                size = Long.parseLong(matcher.group(3));
+logger.log(Level.DEBUG, "size: " + size + ", " + url);
+            }
+        }
+    }
+
+    /** consumes the rest of a response so that the connection can be reused */
+    private static void drain(HttpURLConnection connection) throws IOException {
+        try (InputStream is = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (is != null) {
+                is.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    /** @throws NonWritableChannelException always */
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    /** @throws NonWritableChannelException always */
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    /** */
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.io.DataInputStream;
 import java.io.IOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 
 import static java.lang.System.getLogger;
 
@@ -22,21 +23,24 @@ class MyStream {
 
     DataInputStream stream;
 
-    int currentPos = 0;
+    long currentPos = 0;
 
     private final byte[] readBuf = new byte[8];
 
+    /** for {@link #readBox(int)} */
+    private ByteBuffer boxBuffer = ByteBuffer.allocate(256);
+
     MyStream(DataInputStream stream) {
         this.stream = stream;
     }
 
     /** */
-    int position(int pos) {
+    int position(long pos) {
         return -1;
     }
 
     /** */
-    int position() {
+    long position() {
         return this.currentPos;
     }
 
@@ -46,16 +50,26 @@ class MyStream {
     }
 
     /** */
-    void skip(int skip) throws IOException {
-        int toskip = skip;
-        int bytesRead = 0;
+    void skip(long skip) throws IOException {
+        long toskip = skip;
+        long bytesRead = 0;
 
         if (toskip < 0) {
 			throw new IllegalArgumentException("skip: request to seek backwards in stream - not supported, sorry");
         }
 
 logger.log(Level.TRACE, "skip: " + toskip);
-        bytesRead = this.stream.skipBytes(toskip);
+        while (bytesRead < toskip) {
+            long n = this.stream.skip(toskip - bytesRead);
+            if (n <= 0) {
+                // skip may not move at all, read a byte to know the end
+                if (this.stream.read() < 0) {
+                    break;
+                }
+                n = 1;
+            }
+            bytesRead += n;
+        }
         this.currentPos = this.currentPos + bytesRead;
     }
 
@@ -118,6 +132,14 @@ logger.log(Level.TRACE, "skip: " + toskip);
         return v;
     }
 
+    /** */
+    long readUInt64() throws IOException {
+        long v = this.stream.readLong();
+        this.currentPos = this.currentPos + 8;
+
+        return v;
+    }
+
     /** */
     int read(int size, byte[] buf, int startPos) throws IOException {
         int bytesRead = 0;
@@ -135,4 +157,22 @@ logger.log(Level.TRACE, "skip: " + toskip);
             buf[startPos + i] = byteBuf[i];
         }
     }
+
+    /**
+     * reads a whole box body at once.
+     * @return big endian buffer of {@code size} bytes, valid until the next call
+     */
+    ByteBuffer readBox(int size) throws IOException {
+        if (size < 0) {
+            throw new IOException("negative box size: " + size);
+        }
+        if (this.boxBuffer.capacity() < size) {
+            this.boxBuffer = ByteBuffer.allocate(Math.max(size, this.boxBuffer.capacity() * 2));
+        }
+        ByteBuffer box = this.boxBuffer;
+        this.stream.readFully(box.array(), 0, size);
+        this.currentPos = this.currentPos + size;
+        box.clear().limit(size);
+        return box;
+    }
 }
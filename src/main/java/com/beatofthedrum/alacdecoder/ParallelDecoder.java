@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Decodes a whole ALAC file with frames in parallel.
+ * <p>
+ * every frame is independent (the predictor and the rice history are reset per frame),
+ * so the frame list is split into ranges which are decoded on a {@link ForkJoinPool},
+ * each worker has its own decoder state and reads its frames by positional reads.
+ * every frame is written directly into its place of a pre-sized output,
+ * the result is identical to sequential decoding.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class ParallelDecoder implements AutoCloseable {
+
+    private static final Logger logger = getLogger(ParallelDecoder.class.getName());
+
+    /** frames decoded sequentially by a task at least */
+    private static final int FRAMES_PER_TASK = 16;
+
+    private final FileChannel channel;
+
+    private final DemuxResT demuxRes;
+
+    /** shared by the workers */
+    private final AlacConfig config;
+
+    /** file offsets and first samples of the frames */
+    private final SeekIndex index;
+
+    /** bytes of a sample frame (all channels) */
+    private final int frameSize;
+
+    private final int channels;
+    private final int sampleSizeInBits;
+    private final int sampleRate;
+
+    /** for frames whose decoded size is larger than its place */
+    private final int maxFrameBytes;
+
+    /** decoder state of a worker thread, made for a decoding and dropped after it */
+    private class Worker {
+        final AlacFile file;
+        final byte[] readBuffer;
+        final ByteBuffer readByteBuffer;
+        byte[] pcmBuffer;
+
+        Worker() {
+            file = new AlacFile(config);
+            readBuffer = new byte[demuxRes.sampleTable.getMaxFrameSize()];
+            readByteBuffer = ByteBuffer.wrap(readBuffer);
+        }
+
+        /** decodes a frame into the place in {@code pcm} */
+        void decode(int frame, byte[] pcm) throws IOException {
+            readByteBuffer.clear().limit(demuxRes.sampleTable.getFrameSize(frame));
+            long position = index.byteOffset(frame);
+            while (readByteBuffer.hasRemaining()) {
+                if (channel.read(readByteBuffer, position + readByteBuffer.position()) < 0) {
+                    throw new IOException("unexpected eof at frame " + frame);
+                }
+            }
+
+            int offset = (int) (index.sampleStart(frame) * frameSize);
+            int length = (int) ((index.sampleStart(frame + 1) - index.sampleStart(frame)) * frameSize);
+            if (offset + maxFrameBytes <= pcm.length) {
+                file.decodeFrame(readBuffer, pcm, offset, 0, false);
+            } else {
+                // the end of the output, decoded samples must not exceed the duration
+                if (pcmBuffer == null) {
+                    pcmBuffer = new byte[maxFrameBytes];
+                }
+                int bytes = file.decodeFrame(readBuffer, pcmBuffer, 0, 0, false);
+                System.arraycopy(pcmBuffer, 0, pcm, offset, Math.min(bytes, length));
+            }
+        }
+    }
+
+    /** decodes frames {@code from} to {@code to} */
+    @SuppressWarnings("serial")
+    private class DecodeTask extends RecursiveAction {
+        /** decoder state per worker thread of the decoding */
+        final Map<Thread, Worker> workers;
+        final byte[] pcm;
+        final int from;
+        final int to;
+
+        DecodeTask(Map<Thread, Worker> workers, byte[] pcm, int from, int to) {
+            this.workers = workers;
+            this.pcm = pcm;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FRAMES_PER_TASK) {
+                Worker worker = workers.computeIfAbsent(Thread.currentThread(), t -> new Worker());
+                try {
+                    for (int frame = from; frame < to; frame++) {
+                        worker.decode(frame, pcm);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new DecodeTask(workers, pcm, from, mid), new DecodeTask(workers, pcm, mid, to));
+            }
+        }
+    }
+
+    /**
+     * reads the headers of the ALAC file.
+     * @throws IOException the file is not ALAC
+     */
+    public ParallelDecoder(Path path) throws IOException {
+        AlacContext context = AlacContext.openFileInput(path.toFile());
+        context.close();
+
+        this.demuxRes = context.demuxRes;
+        this.config = context.file.config;
+        this.index = context.getSeekIndex();
+        this.frameSize = context.getNumChannels() * context.getBytesPerSample();
+        this.maxFrameBytes = context.getMaxFrameBytes();
+        this.channels = context.getNumChannels();
+        this.sampleSizeInBits = context.getBitsPerSample();
+        this.sampleRate = context.getSampleRate();
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+logger.log(Level.DEBUG, "frames: " + index.size() + ", samples: " + getNumSamples());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /** total number of samples per channel */
+    public long getNumSamples() {
+        return index.getNumSamples();
+    }
+
+    /** bytes of the whole pcm */
+    public long getPcmLength() {
+        return getNumSamples() * frameSize;
+    }
+
+    /** @see javax.sound.sampled.AudioFormat#getChannels() */
+    public int getChannels() {
+        return channels;
+    }
+
+    /** @see javax.sound.sampled.AudioFormat#getSampleSizeInBits() */
+    public int getSampleSizeInBits() {
+        return sampleSizeInBits;
+    }
+
+    /** @see javax.sound.sampled.AudioFormat#getSampleRate() */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /** decodes the whole file into little endian interleaved pcm on the common pool */
+    public byte[] decode() throws IOException {
+        return decode(ForkJoinPool.commonPool());
+    }
+
+    /** decodes the whole file into little endian interleaved pcm on {@code pool} */
+    public byte[] decode(ForkJoinPool pool) throws IOException {
+        long length = getPcmLength();
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("too large to decode into an array: " + length);
+        }
+        byte[] pcm = new byte[(int) length];
+        try {
+            // worker states are not kept by the pool threads after this
+            pool.invoke(new DecodeTask(new ConcurrentHashMap<>(), pcm, 0, index.size()));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return pcm;
+    }
+}
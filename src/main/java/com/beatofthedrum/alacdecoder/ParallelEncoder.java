@@ -0,0 +1,305 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Encodes signed pcm into an ALAC m4a file with frames in parallel.
+ * <p>
+ * every frame is independent, so pcm is read in batches of frames which are encoded
+ * on a {@link ForkJoinPool}, each worker has its own {@link AlacEncoder}.
+ * the next batch is read while the current one is encoded, encoded frames are written
+ * in their order, the result is identical to sequential encoding.
+ * <p>
+ * to a stream, frames are spooled to a temporary file until the end of the pcm,
+ * then the file is served with "moov" in front of "mdat" (faststart).
+ * to a channel, frames are written in place and "moov" follows "mdat".
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class ParallelEncoder {
+
+    private static final Logger logger = getLogger(ParallelEncoder.class.getName());
+
+    /** frames encoded sequentially by a task */
+    private static final int FRAMES_PER_TASK = 4;
+
+    private final int sampleRate;
+    private final int sampleSize;
+    private final int numChannels;
+    private final int frameSize;
+
+    /** bytes of a sample frame (all channels) of the pcm */
+    private final int bytesPerSample;
+
+    /** worst case encoded size of a frame */
+    private final int maxEncodedFrameSize;
+
+    /** encoder state of a worker thread, made for an encoding and dropped after it */
+    private class Worker {
+        final AlacEncoder encoder = new AlacEncoder(sampleRate, sampleSize, numChannels, frameSize);
+        final int[] samples = new int[frameSize * numChannels];
+
+        /** encodes frame {@code i} of a batch into its slot */
+        void encode(Batch batch, int i, boolean bigEndian) {
+            int offset = i * frameSize * bytesPerSample;
+            int numSamples = Math.min(frameSize, (batch.length - offset) / bytesPerSample);
+            toInts(batch.pcm, offset, samples, numSamples * numChannels, bigEndian);
+            batch.sizes[i] = encoder.encodeFrame(samples, numSamples, batch.frames, i * maxEncodedFrameSize);
+            batch.samples[i] = numSamples;
+        }
+    }
+
+    /** pcm read at a time and its encoded frames */
+    private class Batch {
+        final byte[] pcm;
+        /** encoded frames, each one at a multiple of {@link #maxEncodedFrameSize} */
+        final byte[] frames;
+        final int[] sizes;
+        final int[] samples;
+        /** bytes of pcm read, whole sample frames */
+        int length;
+
+        Batch(int numFrames) {
+            pcm = new byte[numFrames * frameSize * bytesPerSample];
+            frames = new byte[numFrames * maxEncodedFrameSize];
+            sizes = new int[numFrames];
+            samples = new int[numFrames];
+        }
+
+        /** @return false no more pcm */
+        boolean read(InputStream in) throws IOException {
+            int r = in.readNBytes(pcm, 0, pcm.length);
+            // a partial sample frame at the end is dropped
+            length = r - r % bytesPerSample;
+            return length > 0;
+        }
+
+        /** */
+        int numFrames() {
+            int bytesPerFrame = frameSize * bytesPerSample;
+            return (length + bytesPerFrame - 1) / bytesPerFrame;
+        }
+    }
+
+    /** encodes frames {@code from} to {@code to} of a batch */
+    @SuppressWarnings("serial")
+    private class EncodeTask extends RecursiveAction {
+        /** encoder state per worker thread of the encoding */
+        final Map<Thread, Worker> workers;
+        final Batch batch;
+        final boolean bigEndian;
+        final int from;
+        final int to;
+
+        EncodeTask(Map<Thread, Worker> workers, Batch batch, boolean bigEndian, int from, int to) {
+            this.workers = workers;
+            this.batch = batch;
+            this.bigEndian = bigEndian;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FRAMES_PER_TASK) {
+                Worker worker = workers.computeIfAbsent(Thread.currentThread(), t -> new Worker());
+                for (int i = from; i < to; i++) {
+                    worker.encode(batch, i, bigEndian);
+                }
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new EncodeTask(workers, batch, bigEndian, from, mid), new EncodeTask(workers, batch, bigEndian, mid, to));
+            }
+        }
+    }
+
+    /**
+     * @param sampleSize 16 or 24
+     * @param numChannels 1 to 8, pcm is in the order of wave (L R C LFE Ls Rs ...)
+     * @throws IllegalArgumentException unsupported parameters
+     */
+    public ParallelEncoder(int sampleRate, int sampleSize, int numChannels) {
+        this(sampleRate, sampleSize, numChannels, AlacEncoder.DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param sampleSize 16 or 24
+     * @param numChannels 1 to 8, pcm is in the order of wave (L R C LFE Ls Rs ...)
+     * @param frameSize samples per channel in a frame
+     * @throws IllegalArgumentException unsupported parameters
+     */
+    public ParallelEncoder(int sampleRate, int sampleSize, int numChannels, int frameSize) {
+        AlacEncoder encoder = new AlacEncoder(sampleRate, sampleSize, numChannels, frameSize);
+        this.sampleRate = sampleRate;
+        this.sampleSize = sampleSize;
+        this.numChannels = numChannels;
+        this.frameSize = frameSize;
+        this.bytesPerSample = sampleSize / 8 * numChannels;
+        this.maxEncodedFrameSize = encoder.getMaxEncodedFrameSize();
+    }
+
+    /**
+     * encodes the whole pcm on the common pool.
+     * @param pcm interleaved signed pcm, closed by this method
+     * @param bigEndian byte order of {@code pcm}
+     * @return the m4a file, the temporary file behind it is deleted when it's closed
+     */
+    public InputStream encode(InputStream pcm, boolean bigEndian) throws IOException {
+        return encode(pcm, bigEndian, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * encodes the whole pcm on {@code pool}.
+     * @param pcm interleaved signed pcm, closed by this method
+     * @param bigEndian byte order of {@code pcm}
+     * @return the m4a file, the temporary file behind it is deleted when it's closed
+     */
+    public InputStream encode(InputStream pcm, boolean bigEndian, ForkJoinPool pool) throws IOException {
+        Path path = Files.createTempFile("alac", ".spool");
+logger.log(Level.DEBUG, "spool: " + path);
+        FileChannel spool = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+        try (pcm) {
+            QTMovieWriter movie = encode(pcm, bigEndian, pool, spool);
+            byte[] header = movie.faststartHeader();
+            spool.position(0);
+            return new SequenceInputStream(new ByteArrayInputStream(header), Channels.newInputStream(spool));
+        } catch (IOException | RuntimeException e) {
+            spool.close();
+            throw e;
+        }
+    }
+
+    /**
+     * encodes the whole pcm on the common pool into {@code out}.
+     * @param pcm interleaved signed pcm, closed by this method
+     * @param bigEndian byte order of {@code pcm}
+     * @param out the m4a file, not closed
+     * @return bytes written
+     */
+    public long encode(InputStream pcm, boolean bigEndian, OutputStream out) throws IOException {
+        try (InputStream m4a = encode(pcm, bigEndian)) {
+            return m4a.transferTo(out);
+        }
+    }
+
+    /**
+     * encodes the whole pcm on the common pool into {@code channel}, frames are written
+     * as they are encoded and "moov" is appended at the end, nothing grows with the length
+     * but the frame sizes.
+     * @param pcm interleaved signed pcm, closed by this method
+     * @param bigEndian byte order of {@code pcm}
+     * @param channel the m4a file is written from the position, not closed
+     * @return bytes written
+     */
+    public long encode(InputStream pcm, boolean bigEndian, SeekableByteChannel channel) throws IOException {
+        long start = channel.position();
+        write(channel, QTMovieWriter.ftyp());
+        long mdat = channel.position();
+        // room for a 64 bit mdat header, a "free" and a 32 bit header if it's not needed
+        write(channel, new byte[16]);
+
+        QTMovieWriter movie;
+        try (pcm) {
+            movie = encode(pcm, bigEndian, ForkJoinPool.commonPool(), channel);
+        }
+        write(channel, movie.moov(mdat + 16));
+        long end = channel.position();
+
+        byte[] header = QTMovieWriter.mdatHeader(movie.getDataSize());
+        channel.position(mdat);
+        if (header.length == 8) {
+            write(channel, new byte[] { 0, 0, 0, 8, 'f', 'r', 'e', 'e' });
+        }
+        write(channel, header);
+        channel.position(end);
+        return end - start;
+    }
+
+    /** */
+    private static void write(WritableByteChannel channel, byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * encodes pcm into frames written contiguously to {@code channel} from its position.
+     * @return sizes of the frames written
+     */
+    QTMovieWriter encode(InputStream pcm, boolean bigEndian, ForkJoinPool pool, WritableByteChannel channel) throws IOException {
+        QTMovieWriter movie = new QTMovieWriter(sampleRate, sampleSize, numChannels, frameSize);
+        int framesPerBatch = pool.getParallelism() * FRAMES_PER_TASK * 2;
+        Batch current = new Batch(framesPerBatch);
+        Batch next = new Batch(framesPerBatch);
+        // worker states are not kept by the pool threads after this
+        Map<Thread, Worker> workers = new ConcurrentHashMap<>();
+
+        boolean more = current.read(pcm);
+        while (more) {
+            ForkJoinTask<Void> task = pool.submit(new EncodeTask(workers, current, bigEndian, 0, current.numFrames()));
+            more = next.read(pcm);
+            task.join();
+
+            for (int i = 0; i < current.numFrames(); i++) {
+                ByteBuffer frame = ByteBuffer.wrap(current.frames, i * maxEncodedFrameSize, current.sizes[i]);
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+                movie.addFrame(current.sizes[i], current.samples[i]);
+            }
+
+            Batch swap = current;
+            current = next;
+            next = swap;
+        }
+logger.log(Level.DEBUG, "samples: " + movie.getNumSamples() + ", bytes: " + movie.getDataSize());
+        return movie;
+    }
+
+    /** signed pcm bytes into sign extended ints */
+    private void toInts(byte[] pcm, int offset, int[] samples, int length, boolean bigEndian) {
+        if (sampleSize == 16) {
+            for (int i = 0; i < length; i++, offset += 2) {
+                samples[i] = bigEndian ?
+                        (pcm[offset] << 8) | (pcm[offset + 1] & 0xff) :
+                        (pcm[offset + 1] << 8) | (pcm[offset] & 0xff);
+            }
+        } else {
+            for (int i = 0; i < length; i++, offset += 3) {
+                samples[i] = bigEndian ?
+                        (pcm[offset] << 16) | ((pcm[offset + 1] & 0xff) << 8) | (pcm[offset + 2] & 0xff) :
+                        (pcm[offset + 2] << 16) | ((pcm[offset + 1] & 0xff) << 8) | (pcm[offset] & 0xff);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ package com.beatofthedrum.alacdecoder;
 import java.io.IOException;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
 
 import static java.lang.System.getLogger;
 
@@ -19,6 +20,9 @@ class QTMovieT {
 
     private static final Logger logger = getLogger(QTMovieT.class.getName());
 
+    /** upper limit of the magic cookie */
+    private static final int MAX_CODEC_DATA_LENGTH = 1024;
+
     /** */
     MyStream qtStream;
 
@@ -26,7 +30,7 @@ class QTMovieT {
     private DemuxResT res;
 
     /** */
-    int savedMDatPos;
+    long savedMDatPos;
 
     /** */
     public QTMovieT(java.io.DataInputStream file) {
@@ -88,10 +92,8 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
         return 1;
     }
 
-    /** */
-    void readChunkMDat(int chunkLen, int skipMDat) throws IOException {
-        int sizeRemaining = chunkLen - 8; // FIXME WRONG
-
+    /** @param sizeRemaining body size, -1: up to the end of the file */
+    void readChunkMDat(long sizeRemaining, int skipMDat) throws IOException {
         if (sizeRemaining == 0)
             return;
 
@@ -328,35 +330,64 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
      * sample to chunk box
      */
     private void readChunkStsc(int subChunkLen) throws IOException {
-        // skip header and size
-        MyStream stream = this.qtStream;
+        ByteBuffer box = this.qtStream.readBox(subChunkLen - 8);
         // skip version and other junk
-        stream.skip(4);
-        int numEntries = stream.readUInt32();
-        this.res.stsc = new DemuxResT.ChunkInfo[numEntries];
+        box.getInt();
+        int numEntries = entries(box, 12, "stsc");
+        int[] firstChunks = new int[numEntries];
+        int[] framesPerChunk = new int[numEntries];
         for (int i = 0; i < numEntries; i++) {
-            DemuxResT.ChunkInfo entry = new DemuxResT.ChunkInfo();
-            entry.firstChunk = stream.readUInt32();
-            entry.samplesPerChunk = stream.readUInt32();
-            entry.sampleDescIndex = stream.readUInt32();
-            this.res.stsc[i] = entry;
+            firstChunks[i] = box.getInt();
+            framesPerChunk[i] = box.getInt();
+            box.getInt(); // sample description index
         }
+        this.res.sampleTable.setSampleToChunk(firstChunks, framesPerChunk);
     }
 
     /**
      * chunk to offset box
      */
     private void readChunkStco(int subChunkLen) throws IOException {
-        // skip header and size
-        MyStream stream = this.qtStream;
-        stream.skip(4);
-
-        int numEntries = stream.readUInt32();
+        ByteBuffer box = this.qtStream.readBox(subChunkLen - 8);
+        // skip version and other junk
+        box.getInt();
+        int numEntries = entries(box, 4, "stco");
+        long[] chunkOffsets = new long[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            chunkOffsets[i] = box.getInt() & 0xffff_ffffL;
+        }
+        this.res.sampleTable.setChunkOffsets(chunkOffsets);
+    }
 
-        this.res.stco = new int[numEntries];
+    /**
+     * 64 bit chunk to offset box
+     */
+    private void readChunkCo64(int subChunkLen) throws IOException {
+        ByteBuffer box = this.qtStream.readBox(subChunkLen - 8);
+        // skip version and other junk
+        box.getInt();
+        int numEntries = entries(box, 8, "co64");
+        long[] chunkOffsets = new long[numEntries];
         for (int i = 0; i < numEntries; i++) {
-            this.res.stco[i] = stream.readUInt32();
+            chunkOffsets[i] = box.getLong();
+            if (chunkOffsets[i] < 0) {
+                throw new IOException("(co64) offset out of range: " + Long.toUnsignedString(chunkOffsets[i]));
+            }
         }
+        this.res.sampleTable.setChunkOffsets(chunkOffsets);
+    }
+
+    /**
+     * reads the entry count of a table box
+     * @param entrySize bytes of an entry
+     * @throws IOException the box is shorter than the entries
+     */
+    private static int entries(ByteBuffer box, int entrySize, String type) throws IOException {
+        int numEntries = box.getInt();
+        if (numEntries < 0 || numEntries > box.remaining() / entrySize) {
+            throw new IOException("(" + type + ") too many entries: " + numEntries + ", bytes: " + box.remaining());
+        }
+        return numEntries;
     }
 
     int readChunkStbl(int chunkLen) throws IOException {
@@ -387,10 +418,14 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
                 readChunkStts(subChunkLen);
             } else if (subChunkId == makeFourCC32(115, 116, 115, 122)) { // fourcc equals stsz
                 readChunkStsz(subChunkLen);
+            } else if (subChunkId == makeFourCC32(115, 116, 122, 50)) { // fourcc equals stz2
+                readChunkStz2(subChunkLen);
             } else if (subChunkId == makeFourCC32(115, 116, 115, 99)) { // fourcc equals stsc
                 readChunkStsc(subChunkLen);
             } else if (subChunkId == makeFourCC32(115, 116, 99, 111)) { // fourcc equals stco
                 readChunkStco(subChunkLen);
+            } else if (subChunkId == makeFourCC32(99, 111, 54, 52)) { // fourcc equals co64
+                readChunkCo64(subChunkLen);
             } else {
                 logger.log(Level.DEBUG, "(stbl) unknown chunk id: " + splitFourCC(subChunkId));
                 return 0;
@@ -404,119 +439,95 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
 
     /** */
     void readChunkStsz(int chunkLen) throws IOException {
-        int numEntries = 0;
-        int uniformSize = 0;
-        int sizeRemaining = chunkLen - 8; // FIXME WRONG
+        ByteBuffer box = this.qtStream.readBox(chunkLen - 8);
 
-        // version
-        this.qtStream.readUint8();
-        sizeRemaining -= 1;
-        // flags
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        sizeRemaining -= 3;
+        // version, flags
+        box.getInt();
 
         // default sample size
-        uniformSize = (this.qtStream.readUInt32());
+        int uniformSize = box.getInt();
         if (uniformSize != 0) {
             // Normally files have intiable sample sizes, this handles the case where
-			// they are all the same size
-
-            int uniformNum = 0;
-
-            uniformNum = (this.qtStream.readUInt32());
-
-            this.res.sampleByteSize = new int[uniformNum];
-
-            for (int i = 0; i < uniformNum; i++) {
-                this.res.sampleByteSize[i] = uniformSize;
-            }
-            sizeRemaining -= 4;
+            // they are all the same size
+            int uniformNum = box.getInt();
+            this.res.sampleTable.setUniformSize(uniformSize, uniformNum);
             return;
         }
-        sizeRemaining -= 4;
-
-        try {
-            numEntries = this.qtStream.readUInt32();
-        } catch (IOException e) {
-            logger.log(Level.DEBUG, "(readChunkStsz) error reading numEntries - possibly number too large");
-            numEntries = 0;
-        }
 
-        sizeRemaining -= 4;
+        int numEntries = entries(box, 4, "stsz");
+        int[] sizes = new int[numEntries];
+        box.asIntBuffer().get(sizes);
+        this.res.sampleTable.setSizes(sizes);
+    }
 
-        this.res.sampleByteSize = new int[numEntries];
+    /** compact sample size box */
+    void readChunkStz2(int chunkLen) throws IOException {
+        ByteBuffer box = this.qtStream.readBox(chunkLen - 8);
 
-        for (int i = 0; i < numEntries; i++) {
-            this.res.sampleByteSize[i] = (this.qtStream.readUInt32());
+        // version, flags
+        box.getInt();
+        // reserved 24 bits, field size 8 bits
+        int fieldSize = box.getInt() & 0xff;
 
-            sizeRemaining -= 4;
+        int numEntries = box.getInt();
+        if (numEntries < 0 || (long) numEntries * fieldSize > box.remaining() * 8L + 4) {
+            throw new IOException("(stz2) too many entries: " + numEntries + ", bytes: " + box.remaining());
         }
 
-        if (sizeRemaining != 0) {
-            logger.log(Level.DEBUG, "(readChunkStsz) size remaining?");
-            this.qtStream.skip(sizeRemaining);
+        int[] sizes = new int[numEntries];
+        switch (fieldSize) {
+        case 4:
+            for (int i = 0; i < numEntries; i += 2) {
+                int b = box.get() & 0xff;
+                sizes[i] = b >> 4;
+                if (i + 1 < numEntries) {
+                    sizes[i + 1] = b & 0x0f;
+                }
+            }
+            break;
+        case 8:
+            for (int i = 0; i < numEntries; i++) {
+                sizes[i] = box.get() & 0xff;
+            }
+            break;
+        case 16:
+            for (int i = 0; i < numEntries; i++) {
+                sizes[i] = box.getShort() & 0xffff;
+            }
+            break;
+        default:
+            throw new IOException("(readChunkStz2) unsupported field size: " + fieldSize);
         }
+
+        this.res.sampleTable.setSizes(sizes);
     }
 
     void readChunkStts(int chunkLen) throws IOException {
-        int numentries = 0;
-        int sizeRemaining = chunkLen - 8; // FIXME WRONG
+        ByteBuffer box = this.qtStream.readBox(chunkLen - 8);
 
-        // version
-        this.qtStream.readUint8();
-        sizeRemaining -= 1;
-        // flags
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        sizeRemaining -= 3;
-
-        try {
-            numentries = this.qtStream.readUInt32();
-        } catch (IOException e) {
-            logger.log(Level.DEBUG, "(readChunkStsz) error reading numentries - possibly number too large");
-            numentries = 0;
-        }
-
-        sizeRemaining -= 4;
+        // version, flags
+        box.getInt();
 
-        this.res.numTimeToSamples = numentries;
+        int numEntries = entries(box, 8, "stts");
+        int[] counts = new int[numEntries];
+        int[] durations = new int[numEntries];
 
-        for (int i = 0; i < numentries; i++) {
-            this.res.timeToSample[i].sampleCount = this.qtStream.readUInt32();
-            this.res.timeToSample[i].sampleDuration = this.qtStream.readUInt32();
-            sizeRemaining -= 8;
+        for (int i = 0; i < numEntries; i++) {
+            counts[i] = box.getInt();
+            durations[i] = box.getInt();
         }
 
-        if (sizeRemaining != 0) {
-            logger.log(Level.DEBUG, "(readChunkStsz) size remaining?");
-            this.qtStream.skip(sizeRemaining);
-        }
+        this.res.sampleTable.setTimeToSample(counts, durations);
     }
 
     int readChunkStsd(int chunkLen) throws IOException {
         int numentries = 0;
-        int sizeRemaining = chunkLen - 8; // FIXME WRONG
+        ByteBuffer box = this.qtStream.readBox(chunkLen - 8);
 
-        // version
-        this.qtStream.readUint8();
-        sizeRemaining -= 1;
-        // flags
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        this.qtStream.readUint8();
-        sizeRemaining -= 3;
+        // version, flags
+        box.getInt();
 
-        try {
-            numentries = this.qtStream.readUInt32();
-        } catch (IOException e) {
-            logger.log(Level.DEBUG, "(readChunkStsd) error reading numentries - possibly number too large");
-            numentries = 0;
-        }
-
-        sizeRemaining -= 4;
+        numentries = box.getInt();
 
         if (numentries != 1) {
             logger.log(Level.DEBUG, "only expecting one entry in sample description atom!");
@@ -530,8 +541,8 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
 
             int entryRemaining;
 
-            entrySize = this.qtStream.readUInt32();
-            this.res.format = this.qtStream.readUInt32();
+            entrySize = box.getInt();
+            this.res.format = box.getInt();
             entryRemaining = entrySize;
             entryRemaining -= 8;
 
@@ -542,37 +553,37 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
 
             // sound info:
 
-            this.qtStream.skip(6); // reserved
+            skip(box, 6); // reserved
             entryRemaining -= 6;
 
-            version = this.qtStream.readUInt16();
+            version = box.getShort() & 0xffff;
 
             if (version != 1)
                 logger.log(Level.DEBUG, "unknown version??");
             entryRemaining -= 2;
 
             // revision level
-            this.qtStream.readUInt16();
+            box.getShort();
             // vendor
-            this.qtStream.readUInt32();
+            box.getInt();
             entryRemaining -= 6;
 
             // EH?? spec doesn't say there's an extra 16 bits here... but there is!
-            this.qtStream.readUInt16();
+            box.getShort();
             entryRemaining -= 2;
 
             // skip 4 - this is the top level num of channels and bits per sample
-            this.qtStream.skip(4);
+            skip(box, 4);
             entryRemaining -= 4;
 
             // compression id
-            this.qtStream.readUInt16();
+            box.getShort();
             // packet size
-            this.qtStream.readUInt16();
+            box.getShort();
             entryRemaining -= 4;
 
             // skip 4 - this is the top level sample rate
-            this.qtStream.skip(4);
+            skip(box, 4);
             entryRemaining -= 4;
 
             // remaining is codec data
@@ -580,21 +591,21 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
             // 12 = audio format atom, 8 = padding
             this.res.codecDataLen = entryRemaining + 12 + 8;
 
-            if (this.res.codecDataLen > this.res.codecData.length) {
+            if (this.res.codecDataLen > MAX_CODEC_DATA_LENGTH || entryRemaining > box.remaining()) {
                 logger.log(Level.DEBUG, "(readChunkStsd) unexpected codec data length read from atom " + this.res.codecDataLen);
                 return 0;
             }
 
-            for (int count = 0; count < this.res.codecDataLen; count++) {
-                this.res.codecData[count] = 0;
-            }
+            this.res.codecData = new int[this.res.codecDataLen];
 
             // audio format atom
             this.res.codecData[0] = 0x0c000000;
             this.res.codecData[1] = makeFourCC(97, 109, 114, 102); // "amrf" ascii values
             this.res.codecData[2] = makeFourCC(99, 97, 108, 97); // "cala" ascii values
 
-            this.qtStream.read(entryRemaining, this.res.codecData, 12); // codecData buffer should be +12
+            for (int j = 0; j < entryRemaining; j++) { // codecData buffer should be +12
+                this.res.codecData[12 + j] = box.get();
+            }
             entryRemaining -= entryRemaining;
 
             // We need to read the bits per sample, number of channels and sample rate from the codec data i.e. the file atom within
@@ -624,9 +635,6 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
 
             this.res.sampleRate = (((this.res.codecData[ptrIndex] & 0xff) << 24) | ((this.res.codecData[ptrIndex + 1] & 0xff) << 16) | ((this.res.codecData[ptrIndex + 2] & 0xff) << 8) | (this.res.codecData[ptrIndex + 3] & 0xff));
 
-            if (entryRemaining != 0) // was comparing to null
-                this.qtStream.skip(entryRemaining);
-
             this.res.formatRead = 1;
             if (this.res.format != makeFourCC32(97, 108, 97, 99)) { // "file" ascii values
                 return 0;
@@ -636,6 +644,11 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
         return 1;
     }
 
+    /** skips {@code n} bytes of {@code box} */
+    private static void skip(ByteBuffer box, int n) {
+        box.position(box.position() + n);
+    }
+
     /** media handler inside mdia */
     void readChunkHdlr(int chunkLen) throws IOException {
         int sizeRemaining = chunkLen - 8; // FIXME WRONG
@@ -739,31 +752,51 @@ logger.log(Level.TRACE, "savedMDatPos: " + savedMDatPos);
         // read the chunks
         while (true) {
 logger.log(Level.TRACE, "available: " + this.qtStream.stream.available());
-            int chunkLen;
+            long chunkLen;
             int chunkId = 0;
 
             try {
-                chunkLen = this.qtStream.readUInt32();
+                chunkLen = this.qtStream.readUInt32() & 0xffff_ffffL;
             } catch (IOException e) {
-                logger.log(Level.WARNING, "(top) error reading chunkLen - possibly number too large");
-                chunkLen = 1;
+                logger.log(Level.WARNING, "(top) error reading chunkLen");
+                return 0;
             }
 
             if (this.qtStream.isEof() != 0) {
                 return 0;
             }
 
+            chunkId = this.qtStream.readUInt32();
+
+            // body size of the box, -1: up to the end of the file
+            long bodySize;
             if (chunkLen == 1) {
-                logger.log(Level.DEBUG, "need 64bit support");
-                return 0;
+                // 64 bit size follows the type
+                chunkLen = this.qtStream.readUInt64();
+                if (chunkLen < 16) {
+                    logger.log(Level.DEBUG, "(top) strange 64bit size: " + chunkLen);
+                    return 0;
+                }
+                bodySize = chunkLen - 16;
+            } else if (chunkLen == 0) {
+                bodySize = -1;
+            } else {
+                bodySize = chunkLen - 8;
             }
-            chunkId = this.qtStream.readUInt32();
 logger.log(Level.TRACE, "fourcc: " + splitFourCC(chunkId) + ", " + chunkLen);
 
+            boolean isMdat = chunkId == makeFourCC32(109, 100, 97, 116);
+            boolean isFree = chunkId == makeFourCC32(102, 114, 101, 101) || chunkId == makeFourCC32(106, 117, 110, 107);
+            // readers of ftyp and moov take the size of a box with a 32 bit size
+            if (!isMdat && (bodySize < 0 || (!isFree && bodySize > Integer.MAX_VALUE - 8))) {
+                logger.log(Level.DEBUG, "(top) unsupported size for " + splitFourCC(chunkId) + ": " + chunkLen);
+                return 0;
+            }
+
             if (chunkId == makeFourCC32(102, 116, 121, 112)) { // fourcc equals ftyp
-                this.readChunkFtyp(chunkLen);
+                this.readChunkFtyp((int) bodySize + 8);
             } else if (chunkId == makeFourCC32(109, 111, 111, 118)) { // fourcc equals moov
-                if (this.readChunkMoov(chunkLen) == 0)
+                if (this.readChunkMoov((int) bodySize + 8) == 0)
                     return 0; // failed to read moov, can't do anything
                 if (foundMdat != 0) {
                     return this.setSavedMDat();
@@ -773,21 +806,23 @@ logger.log(Level.TRACE, "fourcc: " + splitFourCC(chunkId) + ", " + chunkLen);
             // if we hit mdat before we've found moov, record the position
 			// and move on. We can then come back to mdat later.
 			// This presumes the stream supports seeking backwards.
-            else if (chunkId == makeFourCC32(109, 100, 97, 116)) { // fourcc equals mdat
+            else if (isMdat) { // fourcc equals mdat
                 int notFoundMoov = 0;
                 if (foundMoov == 0)
                     notFoundMoov = 1;
-                this.readChunkMDat(chunkLen, notFoundMoov);
+                if (bodySize == -1 && notFoundMoov != 0) {
+                    logger.log(Level.DEBUG, "mdat up to the end of the file before moov");
+                    return 0;
+                }
+                this.readChunkMDat(bodySize, notFoundMoov);
                 if (foundMoov != 0) {
                     return 1;
                 }
                 foundMdat = 1;
             }
             // these following atoms can be skipped !!!!
-            else if (chunkId == makeFourCC32(102, 114, 101, 101)) { // fourcc equals free
-                this.qtStream.skip(chunkLen - 8); // FIXME not 8
-            } else if (chunkId == makeFourCC32(106, 117, 110, 107)) { // fourcc equals junk
-                this.qtStream.skip(chunkLen - 8); // FIXME not 8
+            else if (isFree) { // fourcc equals free or junk
+                this.qtStream.skip(bodySize);
             } else {
                 logger.log(Level.DEBUG, "(top) unknown chunk id: " + splitFourCC(chunkId));
                 return 0;
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+
+/**
+ * Writes the boxes of an ALAC m4a file, the counterpart of {@link QTMovieT}.
+ * <p>
+ * sizes of encoded frames are collected by {@link #addFrame(int, int)},
+ * then "moov" is built for frames stored contiguously from a file offset.
+ * "stco" is used while the offsets fit in 32 bits, "co64" otherwise.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+final class QTMovieWriter {
+
+    /** frames per chunk (stsc) */
+    static final int FRAMES_PER_CHUNK = 8;
+
+    private final int sampleRate;
+    private final int sampleSize;
+    private final int numChannels;
+    private final int frameSize;
+
+    /** encoded bytes per frame */
+    private int[] frameBytes = new int[1024];
+    /** samples per channel of the last frame, the others have {@link #frameSize} */
+    private int lastSamples;
+    private int frameCount;
+    private long dataSize;
+    private long numSamples;
+    private int maxFrameBytes;
+
+    QTMovieWriter(int sampleRate, int sampleSize, int numChannels, int frameSize) {
+        this.sampleRate = sampleRate;
+        this.sampleSize = sampleSize;
+        this.numChannels = numChannels;
+        this.frameSize = frameSize;
+    }
+
+    /**
+     * @param bytes encoded size
+     * @param samples samples per channel, only the last frame may be shorter than the frame size
+     */
+    void addFrame(int bytes, int samples) {
+        if (lastSamples != 0 && lastSamples != frameSize) {
+            throw new IllegalStateException("a short frame must be the last one");
+        }
+        if (frameCount == frameBytes.length) {
+            frameBytes = Arrays.copyOf(frameBytes, frameCount * 2);
+        }
+        frameBytes[frameCount++] = bytes;
+        lastSamples = samples;
+        dataSize += bytes;
+        numSamples += samples;
+        maxFrameBytes = Math.max(maxFrameBytes, bytes);
+    }
+
+    /** bytes of all frames, the body of "mdat" */
+    long getDataSize() {
+        return dataSize;
+    }
+
+    /** samples per channel of all frames */
+    long getNumSamples() {
+        return numSamples;
+    }
+
+    /** the cookie for the frames added */
+    byte[] getCookie() {
+        int bitRate = numSamples == 0 ? 0 : (int) (dataSize * 8 * sampleRate / numSamples);
+        return AlacEncoder.cookie(sampleRate, sampleSize, numChannels, frameSize, maxFrameBytes, bitRate);
+    }
+
+    /** "ftyp" */
+    static byte[] ftyp() {
+        return box("ftyp", out -> {
+            out.writeBytes("M4A ");
+            out.writeInt(0);
+            out.writeBytes("M4A mp42isom");
+        });
+    }
+
+    /** the header of "mdat" of {@code size} bytes of frames, a 64 bit size when needed */
+    static byte[] mdatHeader(long size) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(16);
+        DataOutputStream out = new DataOutputStream(baos);
+        try {
+            if (size + 8 > 0xffff_ffffL) {
+                out.writeInt(1);
+                out.writeBytes("mdat");
+                out.writeLong(size + 16);
+            } else {
+                out.writeInt((int) (size + 8));
+                out.writeBytes("mdat");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * the header of a faststart file: "ftyp", "moov" then the header of "mdat",
+     * the frames follow it.
+     */
+    byte[] faststartHeader() {
+        byte[] ftyp = ftyp();
+        byte[] mdat = mdatHeader(dataSize);
+        byte[] moov = moov(0);
+        // the offsets depend on the size of "moov", which grows when co64 is needed
+        while (true) {
+            long offset = ftyp.length + moov.length + mdat.length;
+            byte[] next = moov(offset);
+            if (next.length == moov.length) {
+                moov = next;
+                break;
+            }
+            moov = next;
+        }
+        byte[] header = new byte[ftyp.length + moov.length + mdat.length];
+        System.arraycopy(ftyp, 0, header, 0, ftyp.length);
+        System.arraycopy(moov, 0, header, ftyp.length, moov.length);
+        System.arraycopy(mdat, 0, header, ftyp.length + moov.length, mdat.length);
+        return header;
+    }
+
+    /**
+     * "moov"
+     * @param dataOffset file offset of the first frame
+     */
+    byte[] moov(long dataOffset) {
+        boolean co64 = dataOffset + dataSize > 0xffff_ffffL;
+        return box("moov", moov -> {
+            moov.write(mvhd());
+            moov.write(box("trak", trak -> {
+                trak.write(tkhd());
+                trak.write(box("mdia", mdia -> {
+                    mdia.write(mdhd());
+                    mdia.write(hdlr());
+                    mdia.write(box("minf", minf -> {
+                        minf.write(box("smhd", out -> {
+                            out.writeInt(0);
+                            out.writeInt(0); // balance, reserved
+                        }));
+                        minf.write(box("dinf", dinf -> dinf.write(box("dref", out -> {
+                            out.writeInt(0);
+                            out.writeInt(1);
+                            out.write(box("url ", url -> url.writeInt(1))); // self contained
+                        }))));
+                        minf.write(box("stbl", stbl -> {
+                            stbl.write(stsd());
+                            stbl.write(stts());
+                            stbl.write(stsc());
+                            stbl.write(stsz());
+                            stbl.write(co64 ? co64(dataOffset) : stco(dataOffset));
+                        }));
+                    }));
+                }));
+            }));
+        });
+    }
+
+    /** version 1 boxes are needed for durations over 32 bits */
+    private boolean isLongDuration() {
+        return numSamples > 0xffff_ffffL;
+    }
+
+    /** */
+    private byte[] mvhd() {
+        return box("mvhd", out -> {
+            writeTimes(out);
+            out.writeInt(0x0001_0000); // rate 1.0
+            out.writeShort(0x0100); // volume 1.0
+            out.write(new byte[10]);
+            writeMatrix(out);
+            out.write(new byte[24]);
+            out.writeInt(2); // next track id
+        });
+    }
+
+    /** */
+    private byte[] tkhd() {
+        return box("tkhd", out -> {
+            boolean v1 = isLongDuration();
+            out.writeInt((v1 ? 0x0100_0000 : 0) | 7); // enabled, in movie, in preview
+            if (v1) {
+                out.writeLong(0);
+                out.writeLong(0);
+                out.writeInt(1); // track id
+                out.writeInt(0);
+                out.writeLong(numSamples);
+            } else {
+                out.writeInt(0);
+                out.writeInt(0);
+                out.writeInt(1); // track id
+                out.writeInt(0);
+                out.writeInt((int) numSamples);
+            }
+            out.write(new byte[8]);
+            out.writeShort(0); // layer
+            out.writeShort(0); // alternate group
+            out.writeShort(0x0100); // volume 1.0
+            out.writeShort(0);
+            writeMatrix(out);
+            out.writeInt(0); // width
+            out.writeInt(0); // height
+        });
+    }
+
+    /** */
+    private byte[] mdhd() {
+        return box("mdhd", out -> {
+            writeTimes(out);
+            out.writeShort(0x55c4); // "und"
+            out.writeShort(0);
+        });
+    }
+
+    /** version, times, the time scale (the sample rate) and the duration of mvhd or mdhd */
+    private void writeTimes(DataOutputStream out) throws IOException {
+        if (isLongDuration()) {
+            out.writeInt(0x0100_0000);
+            out.writeLong(0);
+            out.writeLong(0);
+            out.writeInt(sampleRate);
+            out.writeLong(numSamples);
+        } else {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeInt(sampleRate);
+            out.writeInt((int) numSamples);
+        }
+    }
+
+    /** the unity matrix */
+    private static void writeMatrix(DataOutputStream out) throws IOException {
+        int[] matrix = { 0x0001_0000, 0, 0, 0, 0x0001_0000, 0, 0, 0, 0x4000_0000 };
+        for (int value : matrix) {
+            out.writeInt(value);
+        }
+    }
+
+    /** */
+    private static byte[] hdlr() {
+        return box("hdlr", out -> {
+            out.writeInt(0);
+            out.writeInt(0);
+            out.writeBytes("soun");
+            out.write(new byte[12]);
+            out.writeBytes("SoundHandler");
+            out.write(0);
+        });
+    }
+
+    /** the sample description with the "alac" atom holding the cookie, and the "chan" atom for more than 2 channels */
+    private byte[] stsd() {
+        return box("stsd", out -> {
+            out.writeInt(0);
+            out.writeInt(1);
+            out.write(box("alac", entry -> {
+                entry.write(new byte[6]);
+                entry.writeShort(1); // data reference index
+                entry.writeShort(0); // version
+                entry.writeShort(0); // revision
+                entry.writeInt(0); // vendor
+                entry.writeShort(numChannels);
+                entry.writeShort(sampleSize);
+                entry.writeShort(0); // compression id
+                entry.writeShort(0); // packet size
+                entry.writeInt(sampleRate <= 0xffff ? sampleRate << 16 : 0); // 16.16, the cookie has the real one
+                entry.write(box("alac", alac -> {
+                    alac.writeInt(0);
+                    alac.write(getCookie());
+                }));
+                if (numChannels > 2) {
+                    entry.write(box("chan", chan -> {
+                        chan.writeInt(0);
+                        chan.writeInt(ChannelLayout.defaultTag(numChannels));
+                        chan.writeInt(0); // channel bitmap
+                        chan.writeInt(0); // channel descriptions
+                    }));
+                }
+            }));
+        });
+    }
+
+    /** */
+    private byte[] stts() {
+        boolean shortLast = frameCount > 0 && lastSamples != frameSize;
+        int full = shortLast ? frameCount - 1 : frameCount;
+        return box("stts", out -> {
+            out.writeInt(0);
+            out.writeInt((full > 0 ? 1 : 0) + (shortLast ? 1 : 0));
+            if (full > 0) {
+                out.writeInt(full);
+                out.writeInt(frameSize);
+            }
+            if (shortLast) {
+                out.writeInt(1);
+                out.writeInt(lastSamples);
+            }
+        });
+    }
+
+    /** */
+    private byte[] stsc() {
+        int chunks = chunkCount();
+        int rest = frameCount % FRAMES_PER_CHUNK;
+        boolean shortLast = rest != 0 && chunks > 1;
+        return box("stsc", out -> {
+            out.writeInt(0);
+            out.writeInt(chunks == 0 ? 0 : shortLast ? 2 : 1);
+            if (chunks > 0) {
+                out.writeInt(1);
+                out.writeInt(chunks == 1 ? frameCount : FRAMES_PER_CHUNK);
+                out.writeInt(1);
+            }
+            if (shortLast) {
+                out.writeInt(chunks);
+                out.writeInt(rest);
+                out.writeInt(1);
+            }
+        });
+    }
+
+    /** */
+    private byte[] stsz() {
+        return box("stsz", out -> {
+            out.writeInt(0);
+            out.writeInt(0); // sizes vary
+            out.writeInt(frameCount);
+            for (int i = 0; i < frameCount; i++) {
+                out.writeInt(frameBytes[i]);
+            }
+        });
+    }
+
+    /** */
+    private byte[] stco(long dataOffset) {
+        return box("stco", out -> {
+            out.writeInt(0);
+            out.writeInt(chunkCount());
+            long offset = dataOffset;
+            for (int i = 0; i < frameCount; i++) {
+                if (i % FRAMES_PER_CHUNK == 0) {
+                    out.writeInt((int) offset);
+                }
+                offset += frameBytes[i];
+            }
+        });
+    }
+
+    /** */
+    private byte[] co64(long dataOffset) {
+        return box("co64", out -> {
+            out.writeInt(0);
+            out.writeInt(chunkCount());
+            long offset = dataOffset;
+            for (int i = 0; i < frameCount; i++) {
+                if (i % FRAMES_PER_CHUNK == 0) {
+                    out.writeLong(offset);
+                }
+                offset += frameBytes[i];
+            }
+        });
+    }
+
+    /** */
+    private int chunkCount() {
+        return (frameCount + FRAMES_PER_CHUNK - 1) / FRAMES_PER_CHUNK;
+    }
+
+    /** writes the body of a box */
+    @FunctionalInterface
+    private interface Body {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** a box of {@code type} with the body */
+    private static byte[] box(String type, Body body) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        try {
+            out.writeInt(0);
+            out.writeBytes(type);
+            body.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] box = baos.toByteArray();
+        box[0] = (byte) (box.length >> 24);
+        box[1] = (byte) (box.length >> 16);
+        box[2] = (byte) (box.length >> 8);
+        box[3] = (byte) box.length;
+        return box;
+    }
+}
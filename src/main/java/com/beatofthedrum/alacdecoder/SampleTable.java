@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+
+
+/**
+ * Sample table (stbl) of a track in primitive arrays.
+ * <p>
+ * frame sizes (stsz, stz2) are kept as a single value when they are uniform,
+ * durations (stts) and chunk layout (stsc) are kept as runs as they are in the file.
+ * every array is sized by the entry count of its box.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+final class SampleTable {
+
+    private static final int[] EMPTY = {};
+
+    /** number of frames (samples in the mp4 sense) */
+    private int frameCount;
+
+    /** size of every frame when uniform, otherwise 0 */
+    private int uniformSize;
+
+    /** sizes of frames, null when uniform */
+    private int[] sizes;
+
+    /** max of the frame sizes */
+    private int maxSize;
+
+    /** stts: frames of a run */
+    private int[] runCounts = EMPTY;
+
+    /** stts: duration of each frame in a run */
+    private int[] runDurations = EMPTY;
+
+    /** stsc: first chunk (1 origin) of a run */
+    private int[] firstChunks = EMPTY;
+
+    /** stsc: frames per chunk of a run */
+    private int[] framesPerChunk = EMPTY;
+
+    /** stco, co64: chunk offsets */
+    private long[] chunkOffsets = {};
+
+    /** stsz with a uniform size */
+    void setUniformSize(int size, int count) {
+        this.uniformSize = size;
+        this.sizes = null;
+        this.frameCount = count;
+        this.maxSize = size;
+    }
+
+    /** stsz, stz2 */
+    void setSizes(int[] sizes) {
+        this.uniformSize = 0;
+        this.sizes = sizes;
+        this.frameCount = sizes.length;
+        int max = 0;
+        for (int size : sizes) {
+            max = Math.max(max, size);
+        }
+        this.maxSize = max;
+    }
+
+    /** stts */
+    void setTimeToSample(int[] counts, int[] durations) {
+        this.runCounts = counts;
+        this.runDurations = durations;
+    }
+
+    /** stsc */
+    void setSampleToChunk(int[] firstChunks, int[] framesPerChunk) {
+        this.firstChunks = firstChunks;
+        this.framesPerChunk = framesPerChunk;
+    }
+
+    /** stco, co64 */
+    void setChunkOffsets(long[] chunkOffsets) {
+        this.chunkOffsets = chunkOffsets;
+    }
+
+    /** number of frames */
+    int getFrameCount() {
+        return frameCount;
+    }
+
+    /** bytes of the {@code frame} */
+    int getFrameSize(int frame) {
+        if (frame < 0 || frame >= frameCount) {
+            throw new IndexOutOfBoundsException("frame " + frame + " does not exist");
+        }
+        return sizes == null ? uniformSize : sizes[frame];
+    }
+
+    /** bytes of the biggest frame */
+    int getMaxFrameSize() {
+        return maxSize;
+    }
+
+    /** @return file offsets of all the frames, laid out by stsc and stco (co64) */
+    long[] getFrameOffsets() {
+        long[] offsets = new long[frameCount];
+        int frame = 0;
+        for (int i = 0; i < firstChunks.length; i++) {
+            int lastChunk = i < firstChunks.length - 1 ? firstChunks[i + 1] - 1 : chunkOffsets.length;
+            for (int chunk = firstChunks[i]; chunk <= lastChunk; chunk++) {
+                long pos = chunkOffsets[chunk - 1];
+                for (int j = 0; j < framesPerChunk[i] && frame < frameCount; j++) {
+                    offsets[frame] = pos;
+                    pos += getFrameSize(frame);
+                    frame++;
+                }
+            }
+        }
+        return offsets;
+    }
+
+    /** @return first frame of each chunk, laid out by stsc */
+    int[] getChunkFirstFrames() {
+        int[] firstFrames = new int[chunkOffsets.length];
+        int frame = 0;
+        int chunk = 0;
+        for (int i = 0; i < firstChunks.length; i++) {
+            int lastChunk = i < firstChunks.length - 1 ? firstChunks[i + 1] - 1 : chunkOffsets.length;
+            for (; chunk < lastChunk && chunk < chunkOffsets.length; chunk++) {
+                firstFrames[chunk] = frame;
+                frame = (int) Math.min(frameCount, (long) frame + framesPerChunk[i]);
+            }
+        }
+        for (; chunk < chunkOffsets.length; chunk++) {
+            firstFrames[chunk] = frame;
+        }
+        return firstFrames;
+    }
+
+    /** @return first pcm sample of each frame, the last element is the total number of samples */
+    long[] getFrameStarts() throws IOException {
+        long[] starts = new long[frameCount + 1];
+        int frame = 0;
+        for (int i = 0; i < runCounts.length && frame < frameCount; i++) {
+            for (int j = 0; j < runCounts[i] && frame < frameCount; j++) {
+                starts[frame + 1] = starts[frame] + runDurations[i];
+                frame++;
+            }
+        }
+        if (frame < frameCount) {
+            throw new IOException("sample " + frame + " does not have a duration");
+        }
+        return starts;
+    }
+}
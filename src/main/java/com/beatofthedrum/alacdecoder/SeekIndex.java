@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Sample accurate seek index.
+ * <p>
+ * prefix sums of the frame durations (stts) and absolute file offsets of the frames
+ * (stsz, stsc, stco or co64) are built once, a frame is looked up by binary search.
+ * chunks are kept by their first frames for reading a chunk at a time.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+final class SeekIndex {
+
+    /** first sample of each frame, the last element is the total number of samples */
+    private final long[] sampleStarts;
+
+    /** file offset of each frame */
+    private final long[] byteOffsets;
+
+    /** first frame of each chunk */
+    private final int[] chunkStarts;
+
+    SeekIndex(DemuxResT demuxRes) throws IOException {
+        this.sampleStarts = demuxRes.sampleTable.getFrameStarts();
+        this.byteOffsets = demuxRes.sampleTable.getFrameOffsets();
+        this.chunkStarts = demuxRes.sampleTable.getChunkFirstFrames();
+    }
+
+    /** number of frames */
+    int size() {
+        return byteOffsets.length;
+    }
+
+    /** total number of samples per channel */
+    long getNumSamples() {
+        return sampleStarts[sampleStarts.length - 1];
+    }
+
+    /**
+     * @param sample position in samples per channel
+     * @return the frame which contains {@code sample}, {@link #size()} when it is beyond the end
+     */
+    int frameOf(long sample) {
+        if (sample < 0) {
+            throw new IllegalArgumentException("negative position: " + sample);
+        }
+        if (sample >= getNumSamples()) {
+            return size();
+        }
+        int i = Arrays.binarySearch(sampleStarts, 0, size(), sample);
+        if (i < 0) {
+            i = -i - 2;
+        } else {
+            // skip empty frames
+            while (i + 1 < size() && sampleStarts[i + 1] == sample) {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /** first sample of the {@code frame} */
+    long sampleStart(int frame) {
+        return sampleStarts[frame];
+    }
+
+    /** @return the frame after the last frame of the chunk which contains {@code frame} */
+    int chunkEnd(int frame) {
+        // the first chunk which starts after the frame
+        int lo = 0, hi = chunkStarts.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunkStarts[mid] <= frame) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo < chunkStarts.length ? chunkStarts[lo] : size();
+    }
+
+    /** file offset of the {@code frame} */
+    long byteOffset(int frame) {
+        return byteOffsets[frame];
+    }
+}
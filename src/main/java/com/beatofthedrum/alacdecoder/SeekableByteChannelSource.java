@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+
+/**
+ * {@link AlacSource} of a {@link SeekableByteChannel}.
+ * <p>
+ * a read positions the channel and reads into a reused buffer,
+ * so the channel must not be shared with other readers.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class SeekableByteChannelSource implements AlacSource {
+
+    private final SeekableByteChannel channel;
+
+    private ByteBuffer readBuffer;
+
+    /** @param channel closed by {@link #close()} */
+    public SeekableByteChannelSource(SeekableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public ByteBuffer read(long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("position: " + position + ", length: " + length);
+        }
+        if (readBuffer == null || readBuffer.capacity() < length) {
+            readBuffer = ByteBuffer.allocate(Math.max(length, 8192));
+        }
+        ByteBuffer buffer = readBuffer;
+        buffer.clear().limit(length);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+
+/**
+ * Sequential view of an {@link AlacSource} for the header parser.
+ * skipping does not read.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class SourceInputStream extends InputStream {
+
+    private final AlacSource source;
+
+    private long position;
+
+    SourceInputStream(AlacSource source) {
+        this.source = source;
+    }
+
+    /** moves to the absolute {@code position} */
+    void seek(long position) {
+        this.position = position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        ByteBuffer buffer = source.read(position, 1);
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        position++;
+        return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = source.read(position, len);
+        int n = buffer.remaining();
+        if (n == 0) {
+            return -1;
+        }
+        buffer.get(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long size = source.size();
+        long skipped = size < 0 ? Math.max(0, n) : Math.max(0, Math.min(n, size - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        long size = source.size();
+        return size < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, Math.max(0, size - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * {@link AlacSource} of a stream which cannot be rewound (a pipe, a socket).
+ * <p>
+ * bytes are pulled from the stream only as far as a read needs, and every byte pulled
+ * is spooled to a temporary file at its offset, so "mdat" skipped to reach "moov"
+ * at the end is read back from the file, not kept in the heap.
+ * the temporary file is deleted by {@link #close()}.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class SpoolingSource implements AlacSource {
+
+    private static final Logger logger = getLogger(SpoolingSource.class.getName());
+
+    private final InputStream in;
+
+    private final FileChannel spool;
+
+    /** bytes pulled from the stream, the size of the spool */
+    private long spooled;
+
+    private boolean eof;
+
+    /** from the stream to the spool */
+    private final byte[] transfer = new byte[64 * 1024];
+
+    private ByteBuffer readBuffer;
+
+    /** @param in closed by {@link #close()} */
+    public SpoolingSource(InputStream in) throws IOException {
+        this.in = in;
+        Path path = Files.createTempFile("alac", ".spool");
+logger.log(Level.DEBUG, "spool: " + path);
+        this.spool = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /** @return -1 until the end of the stream is reached */
+    @Override
+    public long size() {
+        return eof ? spooled : -1;
+    }
+
+    @Override
+    public ByteBuffer read(long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IllegalArgumentException("position: " + position + ", length: " + length);
+        }
+        fill(position + length);
+        length = (int) Math.max(0, Math.min(length, spooled - position));
+
+        if (readBuffer == null || readBuffer.capacity() < length) {
+            readBuffer = ByteBuffer.allocate(Math.max(length, 8192));
+        }
+        ByteBuffer buffer = readBuffer;
+        buffer.clear().limit(length);
+        while (buffer.hasRemaining()) {
+            if (spool.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.flip();
+    }
+
+    /** pulls the stream into the spool up to {@code end} */
+    private void fill(long end) throws IOException {
+        while (!eof && spooled < end) {
+            int n = in.read(transfer, 0, (int) Math.min(transfer.length, end - spooled));
+            if (n < 0) {
+                eof = true;
+logger.log(Level.DEBUG, "eof: " + spooled);
+            } else {
+                ByteBuffer buffer = ByteBuffer.wrap(transfer, 0, n);
+                while (buffer.hasRemaining()) {
+                    spool.write(buffer, spooled + buffer.position());
+                }
+                spooled += n;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            spool.close();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -6,22 +6,25 @@
 
 package vavi.sound.sampled.alac;
 
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
 
 import com.beatofthedrum.alacdecoder.Alac;
 
-import vavi.io.OutputEngine;
-import vavi.io.OutputEngineInputStream;
-
 
 /**
- * Converts an ALAC bitstream into a PCM 16bits/sample audio stream.
+ * Converts an ALAC bitstream into a PCM signed 16, 24, 32 bits/sample or float audio stream.
+ * the decoder writes the format, tpdf dither is applied from 24 to 16 bits
+ * when the format has a "dither" property of true.
+ * <p>
+ * frames are decoded when they are read, straight into the caller's array
+ * when it has room for a whole frame, otherwise into a frame buffer
+ * whose rest is carried to the next read.
  *
  * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (nsano)
  * @version 0.00 111022 nsano initial version <br>
@@ -29,59 +32,136 @@ import vavi.io.OutputEngineInputStream;
 class Alac2PcmAudioInputStream extends AudioInputStream {
 
     /** */
-    public Alac2PcmAudioInputStream(InputStream in, AudioFormat audioFormat, int length, Alac alac) throws IOException {
-        super(new OutputEngineInputStream(new AlacOutputEngine(alac)), audioFormat, length);
-    }
+    private final Alac alac;
+
+    /** bytes of a sample frame */
+    private final int frameSize;
+
+    /** bytes of pcm for the biggest frame */
+    private final int maxFrameBytes;
+
+    /** a whole frame of pcm for a read smaller than a frame, from the alac */
+    private final ByteBuffer pcmBuffer;
 
     /** */
-    private static class AlacOutputEngine implements OutputEngine {
+    private boolean eof;
 
-        /** */
-        private DataOutputStream out;
+    /** */
+    public Alac2PcmAudioInputStream(InputStream in, AudioFormat audioFormat, Alac alac) throws IOException {
+        super(in, audioFormat, alac.getNumSamples());
+        this.alac = alac;
+        this.frameSize = audioFormat.getFrameSize();
+        alac.setOutputFormat(audioFormat.getSampleSizeInBits(),
+                             audioFormat.getEncoding().equals(AudioFormat.Encoding.PCM_FLOAT),
+                             Boolean.TRUE.equals(audioFormat.getProperty("dither")));
+        ByteOrder order = audioFormat.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        this.maxFrameBytes = alac.getMaxFrameBytes();
+        this.pcmBuffer = alac.getPcmBuffer().order(order).limit(0);
+    }
 
-        /** */
-        private final Alac alac;
+    /** @throws IOException always, unless the frame size is 1 */
+    @Override
+    public int read() throws IOException {
+        if (frameSize != 1) {
+            throw new IOException("cannot read a single byte if frame size > 1");
+        }
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
 
-        /** */
-        public AlacOutputEngine(Alac alac) throws IOException {
-            this.alac = alac;
+    /** @param len will be rounded down to a multiple of the frame size */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        len -= len % frameSize;
+        if (len == 0) {
+            return 0;
         }
 
-        /** */
-        @Override
-        public void initialize(OutputStream out) throws IOException {
-            if (this.out != null) {
-                throw new IOException("Already initialized");
+        int total = 0;
+        while (total < len) {
+            if (pcmBuffer.hasRemaining()) {
+                // the rest of the last frame
+                int n = Math.min(pcmBuffer.remaining(), len - total);
+                pcmBuffer.get(b, off + total, n);
+                total += n;
+            } else if (eof) {
+                break;
+            } else if (len - total >= maxFrameBytes) {
+                ByteBuffer direct = ByteBuffer.wrap(b, off + total, len - total).order(pcmBuffer.order());
+                int n = alac.decode(direct);
+                if (n == -1) {
+                    eof = true;
+                } else {
+                    total += n;
+                }
             } else {
-                this.out = new DataOutputStream(out);
+                pcmBuffer.clear();
+                if (alac.decode(pcmBuffer) == -1) {
+                    eof = true;
+                    pcmBuffer.limit(0);
+                } else {
+                    pcmBuffer.flip();
+                }
             }
         }
 
-        /** */
-        private byte[] pcmBuffer = new byte[0xffff];
+        framePos += total / frameSize;
+        return total == 0 ? -1 : total;
+    }
 
-        /** 24kb buffer = 4096 frames = 1 opus sample (we support max 24bps) */
-        private int[] pDestBuffer = new int[1024 * 24 * 3];
+    /**
+     * skips by the seek index of the alac instead of decoding.
+     * @param n will be rounded down to a multiple of the frame size
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long frames = Math.min(n / frameSize, Math.max(0, frameLength - framePos));
+        if (frames == 0) {
+            return 0;
+        }
 
-        /** */
-        @Override
-        public void execute() throws IOException {
-            if (out == null) {
-                throw new IOException("Not yet initialized");
-            } else {
-                int bytesUnpacked = alac.decode(pDestBuffer, pcmBuffer);
-                if (bytesUnpacked == -1) {
-                    out.close();
-                } else {
-                    out.write(pcmBuffer, 0, bytesUnpacked);
-                }
-            }
+        int buffered = pcmBuffer.remaining() / frameSize;
+        if (frames <= buffered) {
+            pcmBuffer.position(pcmBuffer.position() + (int) frames * frameSize);
+        } else {
+            // decoded data buffered is dropped
+            pcmBuffer.limit(0);
+            alac.seek(framePos + frames);
+            eof = false;
         }
 
-        /** */
-        @Override
-        public void finish() throws IOException {
-            alac.close();
+        framePos += frames;
+        return frames * frameSize;
+    }
+
+    /** bytes buffered, or a frame which is decoded without blocking on the source */
+    @Override
+    public int available() throws IOException {
+        if (pcmBuffer.hasRemaining()) {
+            return pcmBuffer.remaining();
         }
+        return (int) Math.min(maxFrameBytes, Math.max(0, frameLength - framePos) * frameSize);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readlimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        alac.close();
     }
 }
@@ -6,15 +6,20 @@
 
 package vavi.sound.sampled.alac;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.System.Logger;
 import java.lang.System.Logger.Level;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Paths;
 import java.util.HashMap;
+import java.util.Map;
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioInputStream;
@@ -23,6 +28,10 @@ import javax.sound.sampled.UnsupportedAudioFileException;
 import javax.sound.sampled.spi.AudioFileReader;
 
 import com.beatofthedrum.alacdecoder.Alac;
+import com.beatofthedrum.alacdecoder.AlacSource;
+import com.beatofthedrum.alacdecoder.FileChannelSource;
+import com.beatofthedrum.alacdecoder.HttpRangeChannel;
+import com.beatofthedrum.alacdecoder.SpoolingSource;
 
 import static java.lang.System.getLogger;
 
@@ -43,15 +52,21 @@ public class AlacAudioFileReader extends AudioFileReader {
     public AudioFileFormat getAudioFileFormat(File file) throws UnsupportedAudioFileException, IOException {
         //noinspection IOStreamConstructor
         try (InputStream inputStream = new FileInputStream(file)) { // must be FileInputStream because Alac accept it to use channel in it
-            return getAudioFileFormat(inputStream, (int) file.length());
+            return probed(getAudioFileFormat(inputStream, (int) file.length()));
         }
     }
 
+    /**
+     * http(s) resources are read by range requests when the server accepts them,
+     * others are not buffered in the heap, see {@link #source(URL)}
+     */
     @Override
     public AudioFileFormat getAudioFileFormat(URL url) throws UnsupportedAudioFileException, IOException {
-        try (InputStream inputStream = url.openStream()) {
-            return getAudioFileFormat(inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream, Integer.MAX_VALUE - 8));
+        HttpRangeChannel channel = rangeChannel(url);
+        if (channel != null) {
+            return probed(getAudioFileFormat(channel));
         }
+        return probed(getAudioFileFormat(source(url)));
     }
 
     /** @param stream mark must be supported and mark size must be larger than the alac data size */
@@ -74,6 +89,10 @@ public class AlacAudioFileReader extends AudioFileReader {
      */
     protected AudioFileFormat getAudioFileFormat(InputStream bitStream, int mediaLength) throws UnsupportedAudioFileException, IOException {
 logger.log(Level.DEBUG, "enter available: " + bitStream.available());
+        if (!(bitStream instanceof FileInputStream) && !bitStream.markSupported()) {
+            // the stream cannot be given back to other readers once it's read
+            throw new UnsupportedAudioFileException("stream must be mark supported or FileInputStream");
+        }
         Alac alac;
         try {
             alac = new Alac(bitStream);
@@ -82,6 +101,43 @@ logger.log(Level.TRACE, "error exit available: " + bitStream.available());
 logger.log(Level.TRACE, e.getMessage(), e);
             throw (UnsupportedAudioFileException) new UnsupportedAudioFileException(e.getMessage()).initCause(e);
         }
+        return getAudioFileFormat(alac);
+    }
+
+    /**
+     * @param channel closed when it's not alac
+     * @return frames are read from {@code channel} by offsets, "moov" at the end is found without reading "mdat"
+     */
+    private static AudioFileFormat getAudioFileFormat(SeekableByteChannel channel) throws UnsupportedAudioFileException, IOException {
+        Alac alac;
+        try {
+            alac = new Alac(channel);
+        } catch (Exception e) {
+logger.log(Level.TRACE, e.getMessage(), e);
+            channel.close();
+            throw (UnsupportedAudioFileException) new UnsupportedAudioFileException(e.getMessage()).initCause(e);
+        }
+        return getAudioFileFormat(alac);
+    }
+
+    /**
+     * @param source closed when it's not alac
+     * @return frames are read from {@code source} by offsets
+     */
+    private static AudioFileFormat getAudioFileFormat(AlacSource source) throws UnsupportedAudioFileException, IOException {
+        Alac alac;
+        try {
+            alac = new Alac(source);
+        } catch (Exception e) {
+logger.log(Level.TRACE, e.getMessage(), e);
+            source.close();
+            throw (UnsupportedAudioFileException) new UnsupportedAudioFileException(e.getMessage()).initCause(e);
+        }
+        return getAudioFileFormat(alac);
+    }
+
+    /** */
+    private static AudioFileFormat getAudioFileFormat(Alac alac) {
         // TODO AudioSystem.NOT_SPECIFIED cause IllegalArgumentException at Clip#open()
         AudioFormat format = new AudioFormat(AlacEncoding.ALAC, alac.getSampleRate(), alac.getSampleSizeInBits(), alac.getChannels(), AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, true, new HashMap<>() {{
             put("alac", alac);
@@ -89,6 +145,19 @@ logger.log(Level.TRACE, e.getMessage(), e);
         return new AudioFileFormat(AlacFileFormatType.ALAC, format, AudioSystem.NOT_SPECIFIED);
     }
 
+    /**
+     * for the formats of sources opened here, nothing is read from them after this.
+     * @return {@code format} without the "alac" property, the decoder is closed with its source
+     */
+    private static AudioFileFormat probed(AudioFileFormat format) throws IOException {
+        AudioFormat f = format.getFormat();
+        Map<String, Object> properties = new HashMap<>(f.properties());
+        ((Alac) properties.remove("alac")).close();
+        return new AudioFileFormat(format.getType(),
+                new AudioFormat(f.getEncoding(), f.getSampleRate(), f.getSampleSizeInBits(), f.getChannels(), f.getFrameSize(), f.getFrameRate(), f.isBigEndian(), properties),
+                format.getFrameLength());
+    }
+
     @Override
     public AudioInputStream getAudioInputStream(File file) throws UnsupportedAudioFileException, IOException {
         //noinspection IOStreamConstructor
@@ -101,15 +170,115 @@ logger.log(Level.TRACE, e.getMessage(), e);
         }
     }
 
+    /**
+     * http(s) resources are read by range requests when the server accepts them,
+     * others are not buffered in the heap, see {@link #source(URL)}
+     */
     @Override
     public AudioInputStream getAudioInputStream(URL url) throws UnsupportedAudioFileException, IOException {
-        InputStream inputStream = url.openStream();
-        try {
-            return getAudioInputStream(inputStream instanceof BufferedInputStream ? inputStream : new BufferedInputStream(inputStream, Integer.MAX_VALUE - 8));
-        } catch (UnsupportedAudioFileException | IOException e) {
-            inputStream.close();
-            throw e;
+        HttpRangeChannel channel = rangeChannel(url);
+        if (channel != null) {
+            AudioFileFormat audioFileFormat = getAudioFileFormat(channel);
+            // the bitstream by its own channel, nothing is requested unless it's read
+            InputStream inputStream = Channels.newInputStream(new HttpRangeChannel(url));
+            return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
+        }
+        AudioFileFormat audioFileFormat = getAudioFileFormat(source(url));
+        // the bitstream is the resource itself, opened again when it's read
+        InputStream inputStream = new BitstreamInputStream(url, (Alac) audioFileFormat.getFormat().getProperty("alac"));
+        return new AudioInputStream(inputStream, audioFileFormat.getFormat(), audioFileFormat.getFrameLength());
+    }
+
+    /**
+     * the decoder reads the resource by offsets, so "moov" at the end is found
+     * without buffering "mdat" in the heap.
+     * @return file: urls are mapped, others are spooled to a temporary file as they are read
+     */
+    private static AlacSource source(URL url) throws IOException {
+        if (url.getProtocol().equals("file")) {
+            try {
+                return FileChannelSource.open(Paths.get(url.toURI()), true);
+            } catch (URISyntaxException | IllegalArgumentException e) {
+logger.log(Level.DEBUG, "not a local file: " + url + ", " + e.getMessage());
+            }
+        }
+        return new SpoolingSource(url.openStream());
+    }
+
+    /** the resource opened at the first read, closing this closes the decoder too */
+    private static class BitstreamInputStream extends FilterInputStream {
+
+        /** */
+        private final URL url;
+
+        /** */
+        private final Alac alac;
+
+        /** */
+        BitstreamInputStream(URL url, Alac alac) {
+            super(null);
+            this.url = url;
+            this.alac = alac;
+        }
+
+        /** */
+        private InputStream in() throws IOException {
+            if (in == null) {
+                in = url.openStream();
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in == null ? 0 : in.available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (in != null) {
+                    in.close();
+                }
+            } finally {
+                alac.close();
+            }
+        }
+    }
+
+    /** @return null when {@code url} is not http(s) or the server does not accept range requests */
+    private static HttpRangeChannel rangeChannel(URL url) throws IOException {
+        if (url.getProtocol().equals("http") || url.getProtocol().equals("https")) {
+            HttpRangeChannel channel = new HttpRangeChannel(url);
+            if (channel.acceptsRanges()) {
+                return channel;
+            }
         }
+        return null;
     }
 
     @Override
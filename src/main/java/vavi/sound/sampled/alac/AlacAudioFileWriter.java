@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.alac;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.System.Logger;
+import java.lang.System.Logger.Level;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.spi.AudioFileWriter;
+
+import com.beatofthedrum.alacdecoder.Alac;
+import com.beatofthedrum.alacdecoder.ParallelEncoder;
+
+import static java.lang.System.getLogger;
+
+
+/**
+ * Provider for ALAC audio file writing services.
+ * <p>
+ * pcm signed 16 or 24 bits, 1 to 8 channels is encoded into an m4a file,
+ * an ALAC stream converted from pcm (which is an m4a file already) is written as it is.
+ * an ALAC stream of {@link AlacAudioFileReader} is decoded and encoded again,
+ * its header is read by the decoder already.
+ * <p>
+ * to a file, frames are written as they are encoded and the sample tables ("moov")
+ * follow "mdat" at the end, unless faststart is specified.
+ * to a stream, "moov" always precedes "mdat" (faststart), frames are spooled
+ * to a temporary file until the end of the pcm.
+ * <p>
+ * system property
+ * <ul>
+ * <li>vavi.sound.sampled.alac.faststart ... "moov" before "mdat" for files as default, default false</li>
+ * </ul>
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+public class AlacAudioFileWriter extends AudioFileWriter {
+
+    private static final Logger logger = getLogger(AlacAudioFileWriter.class.getName());
+
+    /** "moov" before "mdat" for files */
+    private final boolean faststart;
+
+    /** for the service loader */
+    public AlacAudioFileWriter() {
+        this(Boolean.getBoolean("vavi.sound.sampled.alac.faststart"));
+    }
+
+    /** @param faststart "moov" before "mdat" for files, a stream is always faststart */
+    public AlacAudioFileWriter(boolean faststart) {
+        this.faststart = faststart;
+    }
+
+    @Override
+    public AudioFileFormat.Type[] getAudioFileTypes() {
+        return new AudioFileFormat.Type[] { AlacFileFormatType.ALAC };
+    }
+
+    @Override
+    public AudioFileFormat.Type[] getAudioFileTypes(AudioInputStream stream) {
+        if (isWritable(stream.getFormat())) {
+            return getAudioFileTypes();
+        } else {
+            return new AudioFileFormat.Type[0];
+        }
+    }
+
+    /** ALAC or pcm the encoder accepts */
+    private static boolean isWritable(AudioFormat format) {
+        return format.getEncoding() instanceof AlacEncoding ||
+               (format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) &&
+                (format.getSampleSizeInBits() == 16 || format.getSampleSizeInBits() == 24) &&
+                format.getChannels() >= 1 && format.getChannels() <= 8 &&
+                format.getSampleRate() > 0);
+    }
+
+    /** @throws IllegalArgumentException the type or the format of {@code stream} is not supported */
+    private void check(AudioInputStream stream, AudioFileFormat.Type fileType) {
+        if (!isFileTypeSupported(fileType, stream)) {
+            throw new IllegalArgumentException("unsupported: " + fileType + ", " + stream.getFormat());
+        }
+    }
+
+    /** */
+    private static ParallelEncoder encoder(AudioFormat format) {
+        return new ParallelEncoder((int) format.getSampleRate(), format.getSampleSizeInBits(), format.getChannels());
+    }
+
+    /** @return pcm of the source bit depth when {@code stream} is read by its decoder, otherwise {@code stream} */
+    private static AudioInputStream pcmIfDecoding(AudioInputStream stream) throws IOException {
+        AudioFormat format = stream.getFormat();
+        if (format.getEncoding() instanceof AlacEncoding && format.getProperty("alac") instanceof Alac alac) {
+            AudioFormat pcmFormat = new AudioFormat(format.getSampleRate(), AlacFormatConversionProvider.nativePcmBits(alac.getSampleSizeInBits()), format.getChannels(), true, false);
+logger.log(Level.DEBUG, "encoded again: " + pcmFormat);
+            return new Alac2PcmAudioInputStream(stream, pcmFormat, alac);
+        } else {
+            return stream;
+        }
+    }
+
+    @Override
+    public int write(AudioInputStream stream, AudioFileFormat.Type fileType, OutputStream out) throws IOException {
+        check(stream, fileType);
+        stream = pcmIfDecoding(stream);
+        AudioFormat format = stream.getFormat();
+        long bytes;
+        if (format.getEncoding() instanceof AlacEncoding) {
+            bytes = stream.transferTo(out);
+        } else {
+            bytes = encoder(format).encode(stream, format.isBigEndian(), out);
+        }
+logger.log(Level.DEBUG, "written: " + bytes);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int write(AudioInputStream stream, AudioFileFormat.Type fileType, File out) throws IOException {
+        check(stream, fileType);
+        stream = pcmIfDecoding(stream);
+        AudioFormat format = stream.getFormat();
+        long bytes;
+        if (format.getEncoding() instanceof AlacEncoding) {
+            bytes = Files.copy(stream, out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } else if (faststart) {
+            try (OutputStream os = Files.newOutputStream(out.toPath())) {
+                bytes = encoder(format).encode(stream, format.isBigEndian(), os);
+            }
+        } else {
+            try (FileChannel channel = FileChannel.open(out.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                bytes = encoder(format).encode(stream, format.isBigEndian(), channel);
+            }
+        }
+logger.log(Level.DEBUG, "written: " + bytes);
+        return (int) Math.min(bytes, Integer.MAX_VALUE);
+    }
+}
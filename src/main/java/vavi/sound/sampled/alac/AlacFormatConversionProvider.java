@@ -26,18 +26,42 @@ public class AlacFormatConversionProvider extends FormatConversionProvider {
 
     @Override
     public AudioFormat.Encoding[] getSourceEncodings() {
-        return new AudioFormat.Encoding[] { AlacEncoding.ALAC };
+        return new AudioFormat.Encoding[] { AlacEncoding.ALAC, AudioFormat.Encoding.PCM_SIGNED };
     }
 
     @Override
     public AudioFormat.Encoding[] getTargetEncodings() {
-        return new AudioFormat.Encoding[] { AudioFormat.Encoding.PCM_SIGNED };
+        return new AudioFormat.Encoding[] { AudioFormat.Encoding.PCM_SIGNED, AudioFormat.Encoding.PCM_FLOAT, AlacEncoding.ALAC };
+    }
+
+    /** pcm the decoder writes */
+    private static boolean isPcm(AudioFormat targetFormat) {
+        return targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) ||
+               targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_FLOAT);
+    }
+
+    /** @return pcm bits which hold the alac samples as they are, 20 bits are in 24 bits */
+    static int nativePcmBits(int bitDepth) {
+        return switch (bitDepth) {
+            case 20, 24 -> 24;
+            default -> 16;
+        };
+    }
+
+    /** pcm the encoder accepts */
+    private static boolean isEncodable(AudioFormat sourceFormat) {
+        return sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) &&
+               (sourceFormat.getSampleSizeInBits() == 16 || sourceFormat.getSampleSizeInBits() == 24) &&
+               sourceFormat.getChannels() >= 1 && sourceFormat.getChannels() <= 8 &&
+               sourceFormat.getSampleRate() != AudioSystem.NOT_SPECIFIED;
     }
 
     @Override
     public AudioFormat.Encoding[] getTargetEncodings(AudioFormat sourceFormat) {
         if (sourceFormat.getEncoding() instanceof AlacEncoding) {
-            return new AudioFormat.Encoding[] { AudioFormat.Encoding.PCM_SIGNED };
+            return new AudioFormat.Encoding[] { AudioFormat.Encoding.PCM_SIGNED, AudioFormat.Encoding.PCM_FLOAT };
+        } else if (isEncodable(sourceFormat)) {
+            return new AudioFormat.Encoding[] { AlacEncoding.ALAC };
         } else {
             return new AudioFormat.Encoding[0];
         }
@@ -46,13 +70,38 @@ public class AlacFormatConversionProvider extends FormatConversionProvider {
     @Override
     public AudioFormat[] getTargetFormats(AudioFormat.Encoding targetEncoding, AudioFormat sourceFormat) {
         if (sourceFormat.getEncoding() instanceof AlacEncoding && targetEncoding.equals(AudioFormat.Encoding.PCM_SIGNED)) {
-            // TODO signed, endian should be free (means add more 3 patterns)
+            // written natively by the decoder, 24 to 16 bits is dithered when the target has a "dither" property of true
+            float rate = sourceFormat.getSampleRate();
+            int channels = sourceFormat.getChannels();
+            // the bit depth of the source first, it is the default of getAudioInputStream(Encoding, ...)
+            int nativeBits = nativePcmBits(sourceFormat.getSampleSizeInBits());
+            AudioFormat[] formats = new AudioFormat[6];
+            int i = 0;
+            formats[i++] = new AudioFormat(rate, nativeBits, channels, true, false); // little endian (for PCM wav)
+            formats[i++] = new AudioFormat(rate, nativeBits, channels, true, true);
+            for (int bits : new int[] { 16, 24, 32 }) {
+                if (bits != nativeBits) {
+                    formats[i++] = new AudioFormat(rate, bits, channels, true, false);
+                    formats[i++] = new AudioFormat(rate, bits, channels, true, true);
+                }
+            }
+            return formats;
+        } else if (sourceFormat.getEncoding() instanceof AlacEncoding && targetEncoding.equals(AudioFormat.Encoding.PCM_FLOAT)) {
+            float rate = sourceFormat.getSampleRate();
+            int channels = sourceFormat.getChannels();
+            return new AudioFormat[] {
+                new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, rate, 32, channels, 4 * channels, rate, false),
+                new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, rate, 32, channels, 4 * channels, rate, true)
+            };
+        } else if (isEncodable(sourceFormat) && targetEncoding instanceof AlacEncoding) {
             return new AudioFormat[] {
-                new AudioFormat(sourceFormat.getSampleRate(),
-                                16, // sample size in bits
+                new AudioFormat(AlacEncoding.ALAC,
+                                sourceFormat.getSampleRate(),
+                                sourceFormat.getSampleSizeInBits(),
                                 sourceFormat.getChannels(),
-                                true, // signed
-                                false) // little endian (for PCM wav)
+                                AudioSystem.NOT_SPECIFIED,
+                                AudioSystem.NOT_SPECIFIED,
+                                true) // the m4a file
             };
         } else {
             return new AudioFormat[0];
@@ -69,11 +118,11 @@ public class AlacFormatConversionProvider extends FormatConversionProvider {
                     AudioFormat targetFormat = formats[0];
                     if (sourceFormat.equals(targetFormat)) {
                         return sourceStream;
-                    } else if (sourceFormat.getEncoding() instanceof AlacEncoding && targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)) {
+                    } else if (sourceFormat.getEncoding() instanceof AlacEncoding && isPcm(targetFormat)) {
                         Alac alac = (Alac) sourceFormat.getProperty("alac");
-                        return new Alac2PcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED, alac);
+                        return new Alac2PcmAudioInputStream(sourceStream, targetFormat, alac);
                     } else if (sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) && targetFormat.getEncoding() instanceof AlacEncoding) {
-                        throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat);
+                        return new Pcm2AlacAudioInputStream(sourceStream, targetFormat);
                     } else {
                         throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat.toString());
                     }
@@ -97,12 +146,11 @@ public class AlacFormatConversionProvider extends FormatConversionProvider {
                     AudioFormat sourceFormat = sourceStream.getFormat();
                     if (sourceFormat.equals(targetFormat)) {
                         return sourceStream;
-                    } else if (sourceFormat.getEncoding() instanceof AlacEncoding &&
-                               targetFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED)) {
+                    } else if (sourceFormat.getEncoding() instanceof AlacEncoding && isPcm(targetFormat)) {
                         Alac alac = (Alac) sourceFormat.getProperty("alac");
-                        return new Alac2PcmAudioInputStream(sourceStream, targetFormat, AudioSystem.NOT_SPECIFIED, alac);
+                        return new Alac2PcmAudioInputStream(sourceStream, targetFormat, alac);
                     } else if (sourceFormat.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED) && targetFormat.getEncoding() instanceof AlacEncoding) {
-                        throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat);
+                        return new Pcm2AlacAudioInputStream(sourceStream, targetFormat);
                     } else {
                         throw new IllegalArgumentException("unable to convert " + sourceFormat + " to " + targetFormat);
                     }
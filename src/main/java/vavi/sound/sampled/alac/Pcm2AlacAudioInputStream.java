@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.sampled.alac;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.beatofthedrum.alacdecoder.ParallelEncoder;
+
+
+/**
+ * Converts a PCM signed 16 or 24 bits/sample audio stream into an ALAC bitstream.
+ * <p>
+ * as {@link AlacAudioFileReader} does, the bitstream is the m4a file itself,
+ * "moov" comes first. the whole pcm is encoded at the first read.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class Pcm2AlacAudioInputStream extends AudioInputStream {
+
+    /**
+     * @param in signed pcm
+     * @param audioFormat ALAC
+     * @throws IllegalArgumentException unsupported source format
+     */
+    public Pcm2AlacAudioInputStream(AudioInputStream in, AudioFormat audioFormat) {
+        super(new EncodingInputStream(in), audioFormat, AudioSystem.NOT_SPECIFIED);
+    }
+
+    /** encodes the source at the first access */
+    private static class EncodingInputStream extends FilterInputStream {
+
+        /** */
+        private final AudioInputStream source;
+
+        /** */
+        private final ParallelEncoder encoder;
+
+        /** */
+        EncodingInputStream(AudioInputStream source) {
+            super(null);
+            AudioFormat format = source.getFormat();
+            this.source = source;
+            this.encoder = new ParallelEncoder((int) format.getSampleRate(), format.getSampleSizeInBits(), format.getChannels());
+        }
+
+        /** */
+        private InputStream in() throws IOException {
+            if (in == null) {
+                in = encoder.encode(source, source.getFormat().isBigEndian());
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return in().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return in().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return in().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in == null ? 0 : in.available();
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public synchronized void mark(int readlimit) {
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            } else {
+                source.close();
+            }
+        }
+    }
+}
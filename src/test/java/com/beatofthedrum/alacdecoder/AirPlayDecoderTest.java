@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AirPlayDecoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class AirPlayDecoderTest {
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    /** raw frames of alac.m4a */
+    List<byte[]> frames = new ArrayList<>();
+
+    /** fmtp made from the magic cookie of alac.m4a */
+    int[] fmtp;
+
+    @BeforeEach
+    void setup() throws Exception {
+        AlacContext context = AlacContext.openFileInput(alac.toFile());
+        try {
+            DataInputStream in = context.inputStream;
+            SampleTable sampleTable = context.demuxRes.sampleTable;
+            for (int i = 0; i < sampleTable.getFrameCount(); i++) {
+                byte[] frame = new byte[sampleTable.getFrameSize(i)];
+                in.readFully(frame);
+                frames.add(frame);
+            }
+            AlacConfig config = context.file.config;
+            fmtp = new int[] {
+                96, config.frameLength, config.compatibleVersion, config.bitDepth,
+                config.pb, config.mb, config.kb,
+                config.numChannels, config.maxRun, config.maxFrameBytes, config.avgBitRate, 44100
+            };
+        } finally {
+            context.close();
+        }
+    }
+
+    /** decodes all frames by the static method into md5 */
+    String decodeStatic(int[] fmtp) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        int[] outBuffer = new int[fmtp[1] * 2];
+        byte[] pcm = new byte[fmtp[1] * 4];
+        for (byte[] frame : frames) {
+            int bytes = Alac.decodeFrame(fmtp, frame, outBuffer, outBuffer.length);
+            for (int i = 0; i < bytes / 2; i++) {
+                pcm[i * 2] = (byte) outBuffer[i];
+                pcm[i * 2 + 1] = (byte) (outBuffer[i] >> 8);
+            }
+            md.update(pcm, 0, bytes);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    @Test
+    @DisplayName("static decodeFrame")
+    void test1() throws Exception {
+        assertEquals(AlacFileTest.PCM_MD5, decodeStatic(fmtp));
+
+        // other parameters in between
+        int[] other = fmtp.clone();
+        other[11] = 48000;
+        for (int i = 0; i < 6; i++) {
+            Alac.decodeFrame(other, frames.get(0), new int[fmtp[1] * 2], 0);
+            other[11]++;
+            assertEquals(AlacFileTest.PCM_MD5, decodeStatic(fmtp));
+        }
+    }
+
+    @Test
+    @DisplayName("session decoder")
+    void test2() throws Exception {
+        AirPlayDecoder decoder = new AirPlayDecoder(fmtp);
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+        for (byte[] frame : frames) {
+            int bytes = decoder.decodeFrame(frame, pcm, 0);
+            md.update(pcm, 0, bytes);
+        }
+        assertEquals(AlacFileTest.PCM_MD5, HexFormat.of().formatHex(md.digest()));
+    }
+
+    /** bytes allocated by the current thread */
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    @Test
+    @DisplayName("allocation per packet")
+    void test3() throws Exception {
+        int[] outBuffer = new int[fmtp[1] * 2];
+        int packets = frames.size() * 10;
+
+        // warm up
+        for (int i = 0; i < packets; i++) {
+            Alac.decodeFrame(fmtp, frames.get(i % frames.size()), outBuffer, outBuffer.length);
+        }
+
+        long before = allocatedBytes();
+        for (int i = 0; i < packets; i++) {
+            Alac.decodeFrame(fmtp, frames.get(i % frames.size()), outBuffer, outBuffer.length);
+        }
+        long cached = (allocatedBytes() - before) / packets;
+
+        before = allocatedBytes();
+        for (int i = 0; i < packets; i++) {
+            new AirPlayDecoder(fmtp).decodeFrame(frames.get(i % frames.size()), outBuffer);
+        }
+        long uncached = (allocatedBytes() - before) / packets;
+
+Debug.println("allocated bytes/packet: cached " + cached + ", new decoder per packet " + uncached);
+        assertEquals(0, cached);
+        // the buffers of a decoder, sized by the frame length of fmtp
+        assertTrue(uncached > fmtp[1] * 2 * 4);
+    }
+
+    @Test
+    @DisplayName("a config shared by decoders on threads")
+    void test4() throws Exception {
+        AlacConfig config;
+        try (Alac alac = new Alac(new FileInputStream(this.alac.toFile()))) {
+            config = alac.getConfig();
+        }
+        assertEquals(AlacConfig.fromFmtp(fmtp), config);
+        assertEquals(4096, config.getFrameLength());
+        assertEquals(16, config.getBitDepth());
+        assertEquals(2, config.getNumChannels());
+        assertEquals(44100, config.getSampleRate());
+
+        int threads = 4;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<String>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                AirPlayDecoder decoder = new AirPlayDecoder(config);
+                MessageDigest md = MessageDigest.getInstance("MD5");
+                byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+                for (byte[] frame : frames) {
+                    md.update(pcm, 0, decoder.decodeFrame(frame, pcm, 0));
+                }
+                return HexFormat.of().formatHex(md.digest());
+            }));
+        }
+        for (Future<String> result : results) {
+            assertEquals(AlacFileTest.PCM_MD5, result.get());
+        }
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("parameters out of range")
+    void test5() throws Exception {
+        // max samples per frame, bit depth, channels
+        for (int[] p : new int[][] { { 1, 65537 }, { 1, Integer.MAX_VALUE }, { 3, 8 }, { 3, 0 }, { 3, 32 }, { 3, 255 }, { 7, 0 }, { 7, 9 } }) {
+            int[] bad = fmtp.clone();
+            bad[p[0]] = p[1];
+            assertThrows(IllegalArgumentException.class, () -> new AirPlayDecoder(bad), Arrays.toString(bad));
+        }
+        int[] large = fmtp.clone();
+        large[1] = 65536;
+        large[7] = 8;
+        large[3] = 24;
+        assertEquals(65536 * 8 * 3, new AirPlayDecoder(large).getMaxFrameBytes());
+    }
+
+    @Test
+    @DisplayName("20 bit samples in 24 bits")
+    void test6() throws Exception {
+        int[] fmtp20 = { 96, 8, 0, 20, 40, 10, 14, 2, 255, 0, 0, 44100 };
+        int[] samples = { -524288, 524287, -1, 1, 0, 12345, -12345, 0x5a5a5, -0x5a5a5, 7, -8, 100000, -100000, 3, -3, 524000 };
+        // a not compressed channel pair element
+        byte[] frame = new byte[64];
+        BitWriter writer = new BitWriter();
+        writer.reset(frame, 0);
+        writer.write(ChannelLayout.ID_CPE, 3);
+        writer.write(0, 4 + 12);
+        writer.write(0, 1); // has size
+        writer.write(0, 2); // uncompressed bytes
+        writer.write(1, 1); // not compressed
+        for (int sample : samples) {
+            writer.write(sample, 20);
+        }
+        writer.write(ChannelLayout.ID_END, 3);
+        writer.align();
+
+        AirPlayDecoder decoder = new AirPlayDecoder(fmtp20);
+        assertEquals(8 * 2 * 3, decoder.getMaxFrameBytes());
+        byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+        assertEquals(pcm.length, decoder.decodeFrame(frame, pcm, 0));
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i] << 4, (pcm[i * 3 + 2] << 16) | ((pcm[i * 3 + 1] & 0xff) << 8) | (pcm[i * 3] & 0xff));
+        }
+
+        AlacFile file = new AlacFile(AlacConfig.fromFmtp(fmtp20));
+        file.setOutputFormat(16, false, false);
+        assertEquals(8 * 2 * 2, file.decodeFrame(frame, pcm, 0, 0, false));
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(samples[i] >> 4, (short) ((pcm[i * 2 + 1] << 8) | (pcm[i * 2] & 0xff)));
+        }
+    }
+}
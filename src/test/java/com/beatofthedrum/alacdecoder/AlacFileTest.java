@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * AlacFileTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class AlacFileTest {
+
+    /** md5 of the pcm decoded from alac.m4a */
+    static final String PCM_MD5 = "388837c4c905a3b3db623a88b2d6cfcc";
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    /** decodes whole the file into md5 */
+    static String decode(Path path) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        try (InputStream is = new FileInputStream(path.toFile());
+             Alac decoder = new Alac(is)) {
+            int[] destBuffer = new int[1024 * 24 * 3];
+            byte[] pcmBuffer = new byte[0xffff];
+            while (true) {
+                int bytesUnpacked = decoder.decode(destBuffer, pcmBuffer);
+                if (bytesUnpacked == -1) {
+                    break;
+                }
+                md.update(pcmBuffer, 0, bytesUnpacked);
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /** decodes whole the file straight into pcm bytes, md5 */
+    static String decodeDirect(Path path, boolean byteBuffer) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        try (InputStream is = new FileInputStream(path.toFile());
+             Alac decoder = new Alac(is)) {
+            if (byteBuffer) {
+                ByteBuffer pcmBuffer = ByteBuffer.allocateDirect(decoder.getMaxFrameBytes()).order(ByteOrder.LITTLE_ENDIAN);
+                while (decoder.decode(pcmBuffer) != -1) {
+                    pcmBuffer.flip();
+                    md.update(pcmBuffer);
+                    pcmBuffer.clear();
+                }
+            } else {
+                byte[] pcmBuffer = new byte[decoder.getMaxFrameBytes()];
+                while (true) {
+                    int bytesUnpacked = decoder.decode(pcmBuffer);
+                    if (bytesUnpacked == -1) {
+                        break;
+                    }
+                    md.update(pcmBuffer, 0, bytesUnpacked);
+                }
+            }
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    @Test
+    @DisplayName("bit reader")
+    void test1() throws Exception {
+        byte[] data = { (byte) 0b1110_0101, (byte) 0xff, (byte) 0xf0, 0x12, 0x34, 0x56, 0x78, (byte) 0x9a, (byte) 0xbc };
+        BitReader reader = new BitReader();
+        reader.reset(data, 0, data.length);
+
+        assertEquals(3, reader.readUnary(9));
+        assertEquals(0b0101, reader.read(4));
+        assertEquals(9, reader.readUnary(9)); // stops at the limit
+        assertEquals(0b111, reader.read(3));
+        assertEquals(0, reader.readUnary(9));
+        assertEquals(0x0123_4567, reader.read(31));
+        assertEquals(1, reader.peek(1));
+        assertEquals(0x8_9abc, reader.read(20));
+        // beyond the end
+        assertEquals(0, reader.read(32));
+    }
+
+    @Test
+    @DisplayName("bit exact")
+    void test2() throws Exception {
+        assertEquals(PCM_MD5, decode(alac));
+    }
+
+    /** runs a predictor kernel over random errors */
+    interface Fir {
+        void decompress(int[] buffer, int[] coefs);
+    }
+
+    /** @return [0]: samples, [1]: adapted coefs */
+    static int[][] fir(Fir fir, long seed, int order) {
+        Random random = new Random(seed);
+        int[] buffer = new int[4096];
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (int) (random.nextGaussian() * 3000);
+        }
+        int[] coefs = new int[order];
+        for (int i = 0; i < order; i++) {
+            coefs[i] = random.nextInt(2048) - 1024;
+        }
+        fir.decompress(buffer, coefs);
+        return new int[][] { buffer, coefs };
+    }
+
+    @Test
+    @DisplayName("order specialized predictors")
+    void test4() throws Exception {
+        int bitsMove = 32 - 17;
+        for (int seed = 0; seed < 50; seed++) {
+            int[][] expected = fir((b, c) -> AlacFile.predictorDecompressFir(b, b.length, bitsMove, c, 4, 9), seed, 4);
+            int[][] actual = fir((b, c) -> AlacFile.predictorDecompressFir4(b, b.length, bitsMove, c, 9), seed, 4);
+            assertArrayEquals(expected[0], actual[0]);
+            assertArrayEquals(expected[1], actual[1]);
+
+            expected = fir((b, c) -> AlacFile.predictorDecompressFir(b, b.length, bitsMove, c, 8, 9), seed, 8);
+            actual = fir((b, c) -> AlacFile.predictorDecompressFir8(b, b.length, bitsMove, c, 9), seed, 8);
+            assertArrayEquals(expected[0], actual[0]);
+            assertArrayEquals(expected[1], actual[1]);
+        }
+    }
+
+    @Test
+    @DisplayName("direct pcm output")
+    void test5() throws Exception {
+        assertEquals(PCM_MD5, decodeDirect(alac, false));
+        assertEquals(PCM_MD5, decodeDirect(alac, true));
+    }
+
+    @Test
+    @DisplayName("seek")
+    void test6() throws Exception {
+        byte[] expected;
+        try (Alac decoder = new Alac(new FileInputStream(alac.toFile()))) {
+            ByteBuffer pcm = ByteBuffer.allocate(441000 * 4).order(ByteOrder.LITTLE_ENDIAN);
+            while (decoder.decode(pcm) != -1) ;
+            expected = pcm.array();
+        }
+
+        try (Alac decoder = new Alac(new FileInputStream(alac.toFile()))) {
+            byte[] pcmBuffer = new byte[decoder.getMaxFrameBytes()];
+            for (long position : new long[] { 0, 1, 4095, 4096, 4097, 200_000, 440_999, 1000, 441_000, 500_000 }) {
+                decoder.seek(position);
+                int offset = (int) Math.min(position, 441_000) * 4;
+                int bytesUnpacked = decoder.decode(pcmBuffer);
+                if (offset == expected.length) {
+                    assertEquals(-1, bytesUnpacked);
+                } else {
+                    assertArrayEquals(Arrays.copyOfRange(expected, offset, offset + bytesUnpacked), Arrays.copyOf(pcmBuffer, bytesUnpacked));
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("planar output")
+    void test7() throws Exception {
+        short[] expected;
+        try (Alac decoder = new Alac(new FileInputStream(alac.toFile()))) {
+            ByteBuffer pcm = ByteBuffer.allocate(441000 * 4).order(ByteOrder.LITTLE_ENDIAN);
+            while (decoder.decode(pcm) != -1) ;
+            expected = new short[441000 * 2];
+            pcm.flip().asShortBuffer().get(expected);
+        }
+
+        try (Alac decoder = new Alac(new FileInputStream(alac.toFile()))) {
+            int[][] ints = new int[2][decoder.getMaxSamplesPerFrame()];
+            float[][] floats = new float[2][decoder.getMaxSamplesPerFrame()];
+            int position = 0;
+            boolean useFloat = false;
+            int samples;
+            while ((samples = useFloat ? decoder.decode(floats) : decoder.decode(ints)) != -1) {
+                for (int i = 0; i < samples; i++) {
+                    for (int c = 0; c < 2; c++) {
+                        int index = (position + i) * 2 + c;
+                        if (useFloat) {
+                            assertEquals(expected[index] / 32768f, floats[c][i], "" + index);
+                        } else {
+                            assertEquals(expected[index], ints[c][i], "" + index);
+                        }
+                    }
+                }
+                position += samples;
+                useFloat = !useFloat;
+            }
+            assertEquals(441000, position);
+
+            // the top of a frame is skipped after seek
+            decoder.seek(5000);
+            samples = decoder.decode(ints);
+            assertEquals(4096 * 2 - 5000, samples);
+            assertEquals(expected[5000 * 2 + 1], ints[1][0]);
+        }
+    }
+
+    /** tones of the channels, noise in the last one */
+    static byte[] multichannel(int channels, int bits, int samples) {
+        Random random = new Random(channels);
+        int bytes = bits / 8;
+        ByteBuffer bb = ByteBuffer.allocate(samples * channels * bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < samples; i++) {
+            for (int c = 0; c < channels; c++) {
+                int s = c == channels - 1 ?
+                        random.nextInt(1 << bits) - (1 << (bits - 1)) :
+                        (int) (Math.sin(i * (c + 1) / 30.0) * (1 << (bits - 2)));
+                for (int b = 0; b < bytes; b++) {
+                    bb.put((byte) (s >> (b * 8)));
+                }
+            }
+        }
+        return bb.array();
+    }
+
+    /** decodes an m4a into little endian pcm */
+    static byte[] decodeAll(byte[] m4a) throws Exception {
+        return decodeAll(m4a, AlacFile.PARALLEL_CHANNELS);
+    }
+
+    /** @param parallelChannels channels from which the elements are reconstructed in parallel */
+    static byte[] decodeAll(byte[] m4a, int parallelChannels) throws Exception {
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            decoder.setParallelChannels(parallelChannels);
+            ByteBuffer pcm = ByteBuffer.allocate(decoder.getNumSamples() * decoder.getChannels() * decoder.getSampleSizeInBits() / 8).order(ByteOrder.LITTLE_ENDIAN);
+            while (decoder.decode(pcm) != -1) ;
+            return pcm.array();
+        }
+    }
+
+    @Test
+    @DisplayName("multichannel, wave order, chan atom")
+    void test8() throws Exception {
+        for (int channels : new int[] { 3, 4, 5, 6, 7, 8 }) {
+            int bits = channels == 8 ? 24 : 16;
+            byte[] pcm = multichannel(channels, bits, 5000);
+            ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+            new ParallelEncoder(48000, bits, channels, 1024).encode(new ByteArrayInputStream(pcm), false, m4a);
+            byte[] file = m4a.toByteArray();
+
+            assertArrayEquals(pcm, decodeAll(file), "channels: " + channels);
+
+            // the same when the elements are reconstructed in parallel
+            assertArrayEquals(pcm, decodeAll(file, 1), "channels: " + channels);
+
+            // planar in the same order
+            try (Alac decoder = new Alac(new ByteArrayInputStream(file))) {
+                int[][] planar = new int[channels][decoder.getMaxSamplesPerFrame()];
+                int samples = decoder.decode(planar);
+                ByteBuffer bb = ByteBuffer.wrap(pcm).order(ByteOrder.LITTLE_ENDIAN);
+                for (int c = 0; c < channels; c++) {
+                    int o = c * bits / 8;
+                    int expected = bits == 16 ? bb.getShort(o) : (bb.getShort(o + 1) << 8) | (bb.get(o) & 0xff);
+                    assertEquals(expected, planar[c][0]);
+                }
+                assertEquals(1024, samples);
+            }
+        }
+
+        int channels = 6;
+        byte[] pcm = multichannel(channels, 16, 5000);
+        ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+        new ParallelEncoder(48000, 16, channels, 1024).encode(new ByteArrayInputStream(pcm), false, m4a);
+        byte[] file = m4a.toByteArray();
+        String string = new String(file, StandardCharsets.ISO_8859_1);
+        int chan = string.indexOf("chan");
+        assertEquals((124 << 16) | 6, ByteBuffer.wrap(file, chan + 8, 4).getInt(), "mpeg 5.1 d: C L R Ls Rs LFE");
+
+        // a layout of L R C LFE Ls Rs is the order of the frame as it is
+        ByteBuffer.wrap(file).putInt(chan + 8, (121 << 16) | 6);
+        byte[] actual = decodeAll(file);
+        int[] frameOrder = { 2, 0, 1, 4, 5, 3 };
+        for (int i = 0; i < 5000; i++) {
+            for (int c = 0; c < channels; c++) {
+                int o = i * channels * 2;
+                assertEquals(pcm[o + frameOrder[c] * 2], actual[o + c * 2]);
+                assertEquals(pcm[o + frameOrder[c] * 2 + 1], actual[o + c * 2 + 1]);
+            }
+        }
+
+        // without the chan atom, the default layout
+        file[chan] = 'f';
+        file[chan + 1] = 'r';
+        file[chan + 2] = 'e';
+        file[chan + 3] = 'e';
+        assertArrayEquals(pcm, decodeAll(file));
+    }
+
+    @Test
+    @DisplayName("buffers by the cookie")
+    void test9() throws Exception {
+        // frames longer than the old fixed buffers, and short ones
+        for (int frameSize : new int[] { 32768, 256 }) {
+            byte[] pcm = multichannel(2, 16, 100000);
+            ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+            new ParallelEncoder(44100, 16, 2, frameSize).encode(new ByteArrayInputStream(pcm), false, m4a);
+            try (Alac decoder = new Alac(new ByteArrayInputStream(m4a.toByteArray()))) {
+                assertEquals(frameSize, decoder.getMaxSamplesPerFrame());
+            }
+            assertArrayEquals(pcm, decodeAll(m4a.toByteArray()), "frame size: " + frameSize);
+        }
+
+        // heap per open stream, a frame decoded
+        byte[] file = Files.readAllBytes(alac);
+        int n = 100;
+        Alac[] decoders = new Alac[n];
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long before = runtime.totalMemory() - runtime.freeMemory();
+        for (int i = 0; i < n; i++) {
+            decoders[i] = new Alac(new ByteArrayInputStream(file));
+            decoders[i].decode(ByteBuffer.allocate(decoders[i].getMaxFrameBytes()));
+        }
+        System.gc();
+        long after = runtime.totalMemory() - runtime.freeMemory();
+Debug.println("heap per stream: " + (after - before) / n / 1024 + " KB");
+        for (Alac decoder : decoders) {
+            decoder.close();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * DecoderPoolTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class DecoderPoolTest {
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    byte[] m4a;
+
+    @BeforeEach
+    void setup() throws Exception {
+        m4a = Files.readAllBytes(alac);
+    }
+
+    @AfterEach
+    void teardown() {
+        DecoderPool.setDefault(null);
+    }
+
+    /** decodes the whole stream */
+    static String md5(Alac decoder) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        ByteBuffer pcm = decoder.getPcmBuffer().order(ByteOrder.LITTLE_ENDIAN);
+        while (decoder.decode(pcm.clear()) != -1) {
+            md.update(pcm.array(), 0, pcm.position());
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    @Test
+    @DisplayName("bounds and statistics")
+    void test1() throws Exception {
+        DecoderPool pool = new DecoderPool(2);
+        DecoderPool.setDefault(pool);
+
+        Alac[] decoders = new Alac[3];
+        for (int i = 0; i < decoders.length; i++) {
+            decoders[i] = new Alac(new ByteArrayInputStream(m4a));
+        }
+        assertEquals(3, pool.getMisses());
+        assertEquals(3, pool.getOutstanding());
+
+        ByteBuffer pcm = decoders[1].getPcmBuffer();
+        assertEquals(AlacFileTest.PCM_MD5, md5(decoders[1]));
+        for (Alac decoder : decoders) {
+            decoder.close();
+        }
+        decoders[0].close(); // twice
+Debug.println(pool);
+        assertEquals(0, pool.getOutstanding());
+        assertEquals(2, pool.getIdle());
+        assertEquals(1, pool.getDropped());
+
+        // the last given back is reused first, as it was
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            assertEquals(1, pool.getHits());
+            assertSame(pcm, decoder.getPcmBuffer());
+            assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+        }
+        assertEquals(0, pool.getOutstanding());
+    }
+
+    @Test
+    @DisplayName("not pooled by default")
+    void test2() throws Exception {
+        assertSame(null, DecoderPool.getDefault());
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+            assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+        }
+    }
+
+    /** opens streams, decodes a few frames of each as a preview and closes them */
+    long previews(int streams) throws Exception {
+        long before = AirPlayDecoderTest.allocatedBytes();
+        for (int i = 0; i < streams; i++) {
+            try (Alac decoder = new Alac(new ByteArrayInputStream(m4a))) {
+                ByteBuffer pcm = decoder.getPcmBuffer();
+                for (int f = 0; f < 4; f++) {
+                    decoder.decode(pcm.clear());
+                }
+            }
+        }
+        return (AirPlayDecoderTest.allocatedBytes() - before) / streams;
+    }
+
+    @Test
+    @DisplayName("allocation of many short streams")
+    void test3() throws Exception {
+        int streams = 500;
+        previews(streams); // warm up
+
+        long unpooled = previews(streams);
+
+        DecoderPool pool = new DecoderPool(16);
+        DecoderPool.setDefault(pool);
+        long pooled = previews(streams);
+Debug.println("per stream, unpooled: " + unpooled / 1024 + " KB, pooled: " + pooled / 1024 + " KB, " + pool);
+        assertEquals(1, pool.getMisses());
+        assertEquals(streams - 1, pool.getHits());
+        assertTrue(pooled < unpooled);
+    }
+
+    /** configs of AirPlay streams, of {@code frameLength} samples per frame */
+    static AlacConfig config(int frameLength) {
+        return AlacConfig.fromFmtp(new int[] { 96, frameLength, 0, 16, 40, 10, 14, 2, 255, 0, 0, 44100 });
+    }
+
+    @Test
+    @DisplayName("idle buffers of all shapes are bounded, the shape used least recently is evicted")
+    void test4() throws Exception {
+        DecoderPool pool = new DecoderPool(2, 3);
+
+        // many shapes, each given back once
+        for (int frameLength = 1; frameLength <= 100; frameLength++) {
+            pool.release(pool.acquire(config(frameLength)));
+            assertTrue(pool.getIdle() <= 3);
+        }
+Debug.println(pool);
+        assertEquals(3, pool.getIdle());
+        assertEquals(97, pool.getDropped());
+        // the last three are kept
+        DecoderPool.Buffers buffers = pool.acquire(config(98));
+        assertEquals(1, pool.getHits());
+        pool.release(buffers);
+
+        // 99 and 100 are used less recently than 98, evicted by a new shape
+        DecoderPool.Buffers[] taken = { pool.acquire(config(200)), pool.acquire(config(200)) };
+        pool.release(taken[0]);
+        pool.release(taken[1]);
+        assertEquals(3, pool.getIdle());
+        pool.acquire(config(99));
+        assertEquals(1, pool.getHits()); // missed
+        pool.acquire(config(98));
+        assertEquals(2, pool.getHits());
+
+        // per shape
+        pool.clear();
+        taken = new DecoderPool.Buffers[] { pool.acquire(config(300)), pool.acquire(config(300)), pool.acquire(config(300)) };
+        for (DecoderPool.Buffers b : taken) {
+            pool.release(b);
+        }
+        assertEquals(2, pool.getIdle());
+
+        // nothing kept
+        DecoderPool none = new DecoderPool(0);
+        none.release(none.acquire(config(352)));
+        assertEquals(0, none.getIdle());
+        assertEquals(1, none.getDropped());
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * FileChannelSourceTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class FileChannelSourceTest {
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    /** decodes whole into md5 */
+    static String md5(Alac decoder) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("MD5");
+        byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+        int r;
+        while ((r = decoder.decode(pcm)) != -1) {
+            md.update(pcm, 0, r);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    @Test
+    @DisplayName("mapped and positional")
+    void test1() throws Exception {
+        try (Alac decoder = new Alac(alac)) {
+            assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+        }
+        try (Alac decoder = new Alac(FileChannelSource.open(alac, false))) {
+            assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+        }
+    }
+
+    @Test
+    @DisplayName("readers sharing a channel")
+    void test2() throws Exception {
+        try (FileChannel channel = FileChannel.open(alac, StandardOpenOption.READ);
+             Alac decoder1 = new Alac(new FileChannelSource(channel, false));
+             Alac decoder2 = new Alac(new FileChannelSource(channel, true))) {
+            MessageDigest md1 = MessageDigest.getInstance("MD5");
+            MessageDigest md2 = MessageDigest.getInstance("MD5");
+            byte[] pcm = new byte[decoder1.getMaxFrameBytes()];
+            decoder2.seek(100_000);
+            decoder2.seek(0);
+            int r1, r2;
+            do {
+                r1 = decoder1.decode(pcm);
+                if (r1 > 0) md1.update(pcm, 0, r1);
+                r2 = decoder2.decode(pcm);
+                if (r2 > 0) md2.update(pcm, 0, r2);
+            } while (r1 != -1 || r2 != -1);
+            assertEquals(AlacFileTest.PCM_MD5, HexFormat.of().formatHex(md1.digest()));
+            assertEquals(AlacFileTest.PCM_MD5, HexFormat.of().formatHex(md2.digest()));
+        }
+    }
+
+    @Test
+    @DisplayName("the same pcm from a stream, a mapping and positional reads")
+    void test3() throws Exception {
+        Path path = QTMovieTTest.longFile(2000, false);
+        try {
+            String expected;
+            try (Alac decoder = new Alac(new BufferedInputStream(new FileInputStream(path.toFile()), (int) Files.size(path)))) {
+                expected = md5(decoder);
+            }
+            try (Alac decoder = new Alac(path)) {
+                assertEquals(expected, md5(decoder));
+            }
+            try (Alac decoder = new Alac(FileChannelSource.open(path, false))) {
+                assertEquals(expected, md5(decoder));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @DisplayName("small regions")
+    void test5() throws Exception {
+        try (FileChannel channel = FileChannel.open(alac, StandardOpenOption.READ)) {
+            // a chunk is bigger than a region, crosses regions
+            try (Alac decoder = new Alac(new FileChannelSource(channel, true, false, 64 * 1024, 16 * 1024))) {
+                assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+            }
+            // a frame at a time, within the overlap
+            try (Alac decoder = new Alac(new FileChannelSource(channel, true, false, 64 * 1024, 16 * 1024))) {
+                decoder.setReadAhead(1);
+                assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+            }
+        }
+    }
+
+    /** a source which takes {@code latency} for every read, like network attached storage */
+    static class LatencySource implements AlacSource {
+        final AlacSource source;
+        final long latency;
+        int reads;
+        long bytes;
+        LatencySource(AlacSource source, long latencyNanos) {
+            this.source = source;
+            this.latency = latencyNanos;
+        }
+        @Override public long size() throws IOException {
+            return source.size();
+        }
+        @Override public ByteBuffer read(long position, int length) throws IOException {
+            reads++;
+            LockSupport.parkNanos(latency);
+            ByteBuffer buffer = source.read(position, length);
+            bytes += buffer.remaining();
+            return buffer;
+        }
+        @Override public void close() throws IOException {
+            source.close();
+        }
+    }
+
+    @Test
+    @DisplayName("reads of a high latency source")
+    void test4() throws Exception {
+        // 1: a frame at a time, 0: a chunk at a time
+        int[] readAheads = { 1, 0, 256 * 1024, 1024 * 1024 };
+        int[] reads = new int[readAheads.length];
+        for (int i = 0; i < readAheads.length; i++) {
+            LatencySource source = new LatencySource(FileChannelSource.open(alac, false), 2_000_000);
+            try (Alac decoder = new Alac(source)) {
+                int headerReads = source.reads;
+                decoder.setReadAhead(readAheads[i]);
+                assertEquals(AlacFileTest.PCM_MD5, md5(decoder));
+                reads[i] = source.reads - headerReads;
+                double seconds = decoder.getNumSamples() / (double) decoder.getSampleRate();
+Debug.printf("read ahead %7d: header reads %d, frame reads %3d (%.1f per second of audio), %d bytes", readAheads[i], headerReads, reads[i], reads[i] / seconds, source.bytes);
+            }
+        }
+        // 6 frames per chunk
+        assertEquals(108, reads[0]);
+        assertEquals(18, reads[1]);
+        assertTrue(reads[3] * 10 <= reads[0]);
+    }
+}
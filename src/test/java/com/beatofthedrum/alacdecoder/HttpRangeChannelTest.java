@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * HttpRangeChannelTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class HttpRangeChannelTest {
+
+    static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    static HttpServer server;
+
+    /** moov at the end */
+    static Path file;
+
+    static final AtomicInteger requests = new AtomicInteger();
+    static final AtomicLong bytesSent = new AtomicLong();
+    /** client ports, one for each connection */
+    static final Set<Integer> ports = ConcurrentHashMap.newKeySet();
+
+    @BeforeAll
+    static void setup() throws Exception {
+        file = QTMovieTTest.longFile(540, false, true);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/range/", exchange -> serve(exchange, true));
+        server.createContext("/norange/", exchange -> serve(exchange, false));
+        server.start();
+    }
+
+    @AfterAll
+    static void teardown() throws Exception {
+        server.stop(0);
+        Files.delete(file);
+    }
+
+    /** serves {@link #file} */
+    static void serve(HttpExchange exchange, boolean acceptsRanges) throws IOException {
+        requests.incrementAndGet();
+        ports.add(exchange.getRemoteAddress().getPort());
+        byte[] bytes = Files.readAllBytes(file);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        Matcher matcher = RANGE.matcher(range == null ? "" : range);
+        int first = 0;
+        int last = bytes.length - 1;
+        if (acceptsRanges && matcher.matches()) {
+            first = Integer.parseInt(matcher.group(1));
+            last = Math.min(last, Integer.parseInt(matcher.group(2)));
+            if (first >= bytes.length) {
+                byte[] message = "range not satisfiable".getBytes();
+                exchange.getResponseHeaders().add("Content-Range", "bytes */" + bytes.length);
+                exchange.sendResponseHeaders(416, message.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(message);
+                }
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + first + "-" + last + "/" + bytes.length);
+            exchange.sendResponseHeaders(206, last - first + 1);
+        } else {
+            exchange.sendResponseHeaders(200, bytes.length);
+        }
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(bytes, first, last - first + 1);
+        }
+        bytesSent.addAndGet(last - first + 1);
+    }
+
+    URL url(String context) throws IOException {
+        return new URL("http://localhost:" + server.getAddress().getPort() + "/" + context + "/long.m4a");
+    }
+
+    @Test
+    @DisplayName("moov at the end by range requests")
+    void test1() throws Exception {
+        String expected;
+        try (Alac decoder = new Alac(file)) {
+            expected = FileChannelSourceTest.md5(decoder);
+        }
+
+        requests.set(0);
+        bytesSent.set(0);
+        try (Alac decoder = new Alac(new HttpRangeChannel(url("range")))) {
+            int headerRequests = requests.get();
+            long headerBytes = bytesSent.get();
+Debug.println("header: " + headerRequests + " requests, " + headerBytes + " bytes of " + Files.size(file));
+            // mdat is skipped, not read
+            assertTrue(headerBytes < 64 * 1024);
+
+            decoder.setReadAhead(1024 * 1024);
+            assertEquals(expected, FileChannelSourceTest.md5(decoder));
+Debug.println("frames: " + (requests.get() - headerRequests) + " requests, " + (bytesSent.get() - headerBytes) + " bytes");
+            assertTrue(bytesSent.get() < Files.size(file) + 64 * 1024);
+        }
+    }
+
+    @Test
+    @DisplayName("as spi")
+    void test2() throws Exception {
+        AudioFormat outAudioFormat = new AudioFormat(44100, 16, 2, true, false);
+        byte[] expected = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(file.toFile())).readAllBytes();
+
+        AudioInputStream ais = AudioSystem.getAudioInputStream(url("range"));
+        assertNotNull(ais.getFormat().properties().get("alac"));
+        byte[] actual = AudioSystem.getAudioInputStream(outAudioFormat, ais).readAllBytes();
+        assertArrayEquals(expected, actual);
+
+        // the bitstream is the file itself
+        byte[] head = AudioSystem.getAudioInputStream(url("range")).readNBytes(8);
+        assertArrayEquals(new byte[] { 'f', 't', 'y', 'p' }, Arrays.copyOfRange(head, 4, 8));
+    }
+
+    @Test
+    @DisplayName("server without range support")
+    void test3() throws Exception {
+        HttpRangeChannel channel = new HttpRangeChannel(url("norange"));
+        assertFalse(channel.acceptsRanges());
+        assertThrows(IOException.class, channel::size);
+
+        channel = new HttpRangeChannel(url("range"));
+        assertTrue(channel.acceptsRanges());
+        assertEquals(Files.size(file), channel.size());
+        channel.position(channel.size());
+        assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+    }
+
+    @Test
+    @DisplayName("the file format leaves nothing open")
+    void test4() throws Exception {
+        DecoderPool pool = new DecoderPool(4);
+        DecoderPool.setDefault(pool);
+        try {
+            for (String context : new String[] { "range", "norange" }) {
+                AudioFileFormat format = AudioSystem.getAudioFileFormat(url(context));
+Debug.println(format);
+                assertEquals(44100f, format.getFormat().getSampleRate());
+                assertNull(format.getFormat().getProperty("alac"));
+            }
+            assertEquals(0, pool.getOutstanding());
+        } finally {
+            DecoderPool.setDefault(null);
+        }
+    }
+
+    @Test
+    @DisplayName("moov at the end without range support and of a file url")
+    void test5() throws Exception {
+        AudioFormat outAudioFormat = new AudioFormat(44100, 16, 2, true, false);
+        byte[] expected = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(file.toFile())).readAllBytes();
+
+        for (URL url : new URL[] { url("norange"), file.toUri().toURL() }) {
+            AudioInputStream ais = AudioSystem.getAudioInputStream(url);
+            assertArrayEquals(expected, AudioSystem.getAudioInputStream(outAudioFormat, ais).readAllBytes());
+
+            // the bitstream is the file itself
+            try (AudioInputStream raw = AudioSystem.getAudioInputStream(url)) {
+                byte[] head = raw.readNBytes(8);
+                assertArrayEquals(new byte[] { 'f', 't', 'y', 'p' }, Arrays.copyOfRange(head, 4, 8));
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("the body of a 416 response is read and the connection is reused")
+    void test6() throws Exception {
+        // the size is unknown, so every read is a request
+        HttpRangeChannel channel = new HttpRangeChannel(url("range"));
+        channel.position(Files.size(file));
+        ports.clear();
+        assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        assertEquals(-1, channel.read(ByteBuffer.allocate(16)));
+        assertEquals(1, ports.size());
+    }
+}
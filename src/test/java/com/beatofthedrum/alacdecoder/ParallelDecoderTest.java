@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * ParallelDecoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class ParallelDecoderTest {
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    @Test
+    @DisplayName("identical to sequential decoding")
+    void test1() throws Exception {
+        try (ParallelDecoder decoder = new ParallelDecoder(alac)) {
+            assertEquals(441000, decoder.getNumSamples());
+            byte[] pcm = decoder.decode();
+            assertEquals(decoder.getPcmLength(), pcm.length);
+            assertEquals(AlacFileTest.PCM_MD5, HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(pcm)));
+        }
+    }
+
+    @Test
+    @DisplayName("identical regardless of the threads")
+    void test2() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        try (ParallelDecoder decoder = new ParallelDecoder(alac)) {
+            for (int threads = 1; threads <= Math.max(cores, 2); threads *= 2) {
+                ForkJoinPool pool = new ForkJoinPool(threads);
+                try {
+                    byte[] pcm = decoder.decode(pool);
+                    assertEquals(AlacFileTest.PCM_MD5, HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(pcm)), threads + " threads");
+                } finally {
+                    pool.shutdown();
+                }
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("nothing is kept by the pool threads after closing")
+    void test3() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<WeakReference<ParallelDecoder>> decoders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            try (ParallelDecoder decoder = new ParallelDecoder(alac)) {
+                decoder.decode(pool);
+                decoders.add(new WeakReference<>(decoder));
+            }
+        }
+        for (int i = 0; i < 10 && decoders.stream().anyMatch(r -> r.get() != null); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        long reachable = decoders.stream().filter(r -> r.get() != null).count();
+Debug.println("reachable: " + reachable);
+        assertEquals(0, reachable);
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * ParallelEncoderTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class ParallelEncoderTest {
+
+    Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    /** decodes an m4a into pcm in the byte order */
+    static byte[] decode(InputStream m4a, boolean bigEndian) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (Alac decoder = new Alac(m4a)) {
+            ByteBuffer pcm = ByteBuffer.allocate(decoder.getMaxFrameBytes()).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            while (decoder.decode(pcm.clear()) != -1) {
+                baos.write(pcm.array(), 0, pcm.position());
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    @DisplayName("round trip")
+    void test1() throws Exception {
+        byte[] pcm;
+        try (ParallelDecoder decoder = new ParallelDecoder(alac)) {
+            pcm = decoder.decode();
+        }
+
+        ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+        new ParallelEncoder(44100, 16, 2).encode(new ByteArrayInputStream(pcm), false, m4a);
+Debug.println("pcm: " + pcm.length + ", m4a: " + m4a.size());
+        assertTrue(m4a.size() < pcm.length * 3 / 4);
+
+        assertArrayEquals(pcm, decode(new ByteArrayInputStream(m4a.toByteArray()), false));
+    }
+
+    @Test
+    @DisplayName("24 bit mono, noise, a short last frame")
+    void test2() throws Exception {
+        Random random = new Random(1);
+        int samples = 10000;
+        ByteBuffer bb = ByteBuffer.allocate(samples * 3 + 2).order(ByteOrder.BIG_ENDIAN);
+        for (int i = 0; i < samples; i++) {
+            // tone for the first half, incompressible noise for the rest
+            int s = i < samples / 2 ? (int) (Math.sin(i / 20.0) * 0x3f_ffff) : random.nextInt(1 << 24) - (1 << 23);
+            bb.put((byte) (s >> 16)).put((byte) (s >> 8)).put((byte) s);
+        }
+        // 2 bytes of a partial sample at the end are dropped
+        byte[] pcm = bb.array();
+
+        ByteArrayOutputStream m4a = new ByteArrayOutputStream();
+        new ParallelEncoder(48000, 24, 1, 1024).encode(new ByteArrayInputStream(pcm), true, m4a);
+
+        try (Alac decoder = new Alac(new ByteArrayInputStream(m4a.toByteArray()))) {
+            assertEquals(samples, decoder.getNumSamples());
+            assertEquals(48000, decoder.getSampleRate());
+            assertEquals(24, decoder.getSampleSizeInBits());
+            assertEquals(1, decoder.getChannels());
+        }
+        byte[] actual = decode(new ByteArrayInputStream(m4a.toByteArray()), true);
+        assertEquals(samples * 3, actual.length);
+        assertArrayEquals(Arrays.copyOf(pcm, samples * 3), actual);
+    }
+
+    @Test
+    @DisplayName("identical regardless of the threads")
+    void test3() throws Exception {
+        byte[] pcm;
+        try (ParallelDecoder decoder = new ParallelDecoder(alac)) {
+            pcm = decoder.decode();
+        }
+        byte[] expected = null;
+        int cores = Runtime.getRuntime().availableProcessors();
+        ParallelEncoder encoder = new ParallelEncoder(44100, 16, 2);
+        for (int threads = 1; threads <= Math.max(cores, 2); threads *= 2) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            byte[] m4a;
+            try (InputStream is = encoder.encode(new ByteArrayInputStream(pcm), false, pool)) {
+                m4a = is.readAllBytes();
+            } finally {
+                pool.shutdown();
+            }
+            if (expected == null) {
+                expected = m4a;
+            } else {
+                assertArrayEquals(expected, m4a);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("co64 for offsets beyond 4 GB")
+    void test4() throws Exception {
+        QTMovieWriter movie = new QTMovieWriter(44100, 16, 2, 4096);
+        for (int i = 0; i < 20; i++) {
+            movie.addFrame(10000, 4096);
+        }
+        String small = new String(movie.moov(100), StandardCharsets.ISO_8859_1);
+        assertTrue(small.contains("stco") && !small.contains("co64"));
+        String large = new String(movie.moov(0xffff_ff00L), StandardCharsets.ISO_8859_1);
+        assertTrue(large.contains("co64") && !large.contains("stco"));
+    }
+
+    @Test
+    @DisplayName("nothing is kept by the pool threads after encoding")
+    void test5() throws Exception {
+        byte[] pcm = AlacFileTest.multichannel(2, 16, 44100);
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<WeakReference<ParallelEncoder>> encoders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ParallelEncoder encoder = new ParallelEncoder(44100, 16, 2);
+            try (InputStream is = encoder.encode(new ByteArrayInputStream(pcm), false, pool)) {
+                is.readAllBytes();
+            }
+            encoders.add(new WeakReference<>(encoder));
+        }
+        for (int i = 0; i < 10 && encoders.stream().anyMatch(r -> r.get() != null); i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        long reachable = encoders.stream().filter(r -> r.get() != null).count();
+Debug.println("reachable: " + reachable);
+        assertEquals(0, reachable);
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * QTMovieTTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class QTMovieTTest {
+
+    static final Path alac = Paths.get("src/test/resources/alac.m4a");
+
+    /** makes a box */
+    static byte[] box(String type, byte[]... bodies) {
+        int size = 8;
+        for (byte[] body : bodies) {
+            size += body.length;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(size);
+        bb.putInt(size);
+        bb.put(type.getBytes());
+        for (byte[] body : bodies) {
+            bb.put(body);
+        }
+        return bb.array();
+    }
+
+    /** @return top level boxes and stbl children of alac.m4a, mdat body as "mdat" */
+    static Map<String, byte[]> boxes(byte[] file) {
+        Map<String, byte[]> boxes = new HashMap<>();
+        boxes(ByteBuffer.wrap(file), boxes);
+        return boxes;
+    }
+
+    private static void boxes(ByteBuffer bb, Map<String, byte[]> boxes) {
+        while (bb.remaining() >= 8) {
+            int position = bb.position();
+            int size = bb.getInt();
+            byte[] type = new byte[4];
+            bb.get(type);
+            String name = new String(type);
+            byte[] body = new byte[size - 8];
+            bb.get(body);
+            if (name.matches("moov|trak|mdia|minf|stbl")) {
+                boxes(ByteBuffer.wrap(body), boxes);
+            } else {
+                boxes.put(name, body);
+                if (name.equals("mdat")) {
+                    boxes.put("mdat.offset", ByteBuffer.allocate(4).putInt(position + 8).array());
+                }
+            }
+        }
+    }
+
+    /**
+     * makes an m4a which has {@code frames} frames by repeating the frames of alac.m4a.
+     * every frame is its own chunk, moov is placed before mdat.
+     * the frames share the mdat of alac.m4a, so they are readable only by the offsets.
+     */
+    static Path longFile(int frames) throws IOException {
+        return longFile(frames, true);
+    }
+
+    /**
+     * @param shared true: the frames share the mdat of alac.m4a,
+     *               false: mdat has all the frames in order, readable sequentially
+     */
+    static Path longFile(int frames, boolean shared) throws IOException {
+        return longFile(frames, shared, false);
+    }
+
+    /** @param moovAtEnd true: moov is placed after mdat */
+    static Path longFile(int frames, boolean shared, boolean moovAtEnd) throws IOException {
+        Map<String, byte[]> boxes = boxes(Files.readAllBytes(alac));
+
+        // frames of the original
+        ByteBuffer stsz = ByteBuffer.wrap(boxes.get("stsz"));
+        stsz.getInt();
+        stsz.getInt();
+        int n = stsz.getInt();
+        int[] sizes = new int[n];
+        int[] offsets = new int[n];
+        int mdatOffset = ByteBuffer.wrap(boxes.get("mdat.offset")).getInt();
+        // the original is a single run of frames in mdat
+        ByteBuffer stco = ByteBuffer.wrap(boxes.get("stco"));
+        stco.getInt();
+        stco.getInt();
+        int offset = stco.getInt() - mdatOffset;
+        for (int i = 0; i < n; i++) {
+            sizes[i] = stsz.getInt();
+            offsets[i] = offset;
+            offset += sizes[i];
+        }
+        int lastDuration = 441000 - (n - 1) * 4096;
+
+        // stts: (n - 1) frames of 4096, a frame of lastDuration, ...
+        ByteArrayOutputStream stts = new ByteArrayOutputStream();
+        int runs = 0;
+        for (int i = 0; i < frames; i += n) {
+            int full = Math.min(n - 1, frames - i);
+            stts.writeBytes(ByteBuffer.allocate(8).putInt(full).putInt(4096).array());
+            runs++;
+            if (i + n - 1 < frames) {
+                stts.writeBytes(ByteBuffer.allocate(8).putInt(1).putInt(lastDuration).array());
+                runs++;
+            }
+        }
+        byte[] sttsBox = box("stts", ByteBuffer.allocate(8).putInt(0).putInt(runs).array(), stts.toByteArray());
+
+        ByteBuffer newStsz = ByteBuffer.allocate(12 + frames * 4).putInt(0).putInt(0).putInt(frames);
+        for (int i = 0; i < frames; i++) {
+            newStsz.putInt(sizes[i % n]);
+        }
+        byte[] stszBox = box("stsz", newStsz.array());
+        byte[] stscBox = box("stsc", ByteBuffer.allocate(20).putInt(0).putInt(1).putInt(1).putInt(1).putInt(1).array());
+        int stcoSize = 8 + 8 + frames * 4;
+
+        byte[] ftyp = box("ftyp", boxes.get("ftyp"));
+        byte[] stsd = box("stsd", boxes.get("stsd"));
+        byte[] minfHead = concat(box("smhd", boxes.get("smhd")), box("dinf", boxes.get("dinf")));
+        int stblSize = 8 + stsd.length + sttsBox.length + stscBox.length + stszBox.length + stcoSize;
+        int minfSize = 8 + minfHead.length + stblSize;
+        byte[] mdiaHead = concat(box("mdhd", boxes.get("mdhd")), box("hdlr", boxes.get("hdlr")));
+        int mdiaSize = 8 + mdiaHead.length + minfSize;
+        byte[] tkhd = box("tkhd", boxes.get("tkhd"));
+        int trakSize = 8 + tkhd.length + mdiaSize;
+        byte[] mvhd = box("mvhd", boxes.get("mvhd"));
+        int moovSize = 8 + mvhd.length + trakSize;
+        int mdatBody = ftyp.length + (moovAtEnd ? 0 : moovSize) + 8;
+
+        byte[] mdat = boxes.get("mdat");
+        int copies = shared ? 1 : (frames + n - 1) / n;
+        ByteBuffer newStco = ByteBuffer.allocate(8 + frames * 4).putInt(0).putInt(frames);
+        for (int i = 0; i < frames; i++) {
+            newStco.putInt(mdatBody + (shared ? 0 : i / n * mdat.length) + offsets[i % n]);
+        }
+        byte[] stbl = box("stbl", stsd, sttsBox, stscBox, stszBox, box("stco", newStco.array()));
+        byte[] moov = box("moov", mvhd, box("trak", tkhd, box("mdia", mdiaHead, box("minf", minfHead, stbl))));
+        assertEquals(moovSize, moov.length);
+
+        Path path = Files.createTempFile("long", ".m4a");
+        byte[][] mdats = new byte[copies][];
+        Arrays.fill(mdats, mdat);
+        if (moovAtEnd) {
+            Files.write(path, concat(ftyp, box("mdat", mdats), moov));
+        } else {
+            Files.write(path, concat(ftyp, moov, box("mdat", mdats)));
+        }
+        return path;
+    }
+
+    /**
+     * makes an m4a of the frames of alac.m4a whose mdat has a 64 bit size and {@code gap} bytes
+     * of a hole before the frames, chunk offsets are in co64. the file is sparse.
+     */
+    static Path largeFile(long gap) throws IOException {
+        Map<String, byte[]> boxes = boxes(Files.readAllBytes(alac));
+        int mdatOffset = ByteBuffer.wrap(boxes.get("mdat.offset")).getInt();
+        ByteBuffer stco = ByteBuffer.wrap(boxes.get("stco"));
+        stco.getInt();
+        int n = stco.getInt();
+
+        byte[] ftyp = box("ftyp", boxes.get("ftyp"));
+        byte[] moov = null;
+        long frames = 0;
+        // the size of moov does not depend on the offsets
+        for (int pass = 0; pass < 2; pass++) {
+            ByteBuffer co64 = ByteBuffer.allocate(8 + n * 8).putInt(0).putInt(n);
+            stco.position(8);
+            for (int i = 0; i < n; i++) {
+                co64.putLong(frames + stco.getInt() - mdatOffset);
+            }
+            byte[] stbl = box("stbl", box("stsd", boxes.get("stsd")), box("stts", boxes.get("stts")),
+                    box("stsc", boxes.get("stsc")), box("stsz", boxes.get("stsz")), box("co64", co64.array()));
+            byte[] minf = box("minf", box("smhd", boxes.get("smhd")), box("dinf", boxes.get("dinf")), stbl);
+            byte[] mdia = box("mdia", box("mdhd", boxes.get("mdhd")), box("hdlr", boxes.get("hdlr")), minf);
+            moov = box("moov", box("mvhd", boxes.get("mvhd")), box("trak", box("tkhd", boxes.get("tkhd")), mdia));
+            frames = ftyp.length + moov.length + 16 + gap;
+        }
+        byte[] mdat = boxes.get("mdat");
+        ByteBuffer mdatHeader = ByteBuffer.allocate(16).putInt(1).put("mdat".getBytes()).putLong(16 + gap + mdat.length);
+
+        Path path = Files.createTempFile("large", ".m4a");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(concat(ftyp, moov, mdatHeader.array())));
+            channel.write(ByteBuffer.wrap(mdat), frames);
+        }
+        return path;
+    }
+
+    static byte[] concat(byte[]... bytes) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (byte[] b : bytes) {
+            baos.writeBytes(b);
+        }
+        return baos.toByteArray();
+    }
+
+    @Test
+    @DisplayName("the first sample of a long file")
+    void test1() throws Exception {
+        int frames = 200_000;
+        Path path = longFile(frames);
+        try {
+            try (InputStream is = new FileInputStream(path.toFile());
+                 Alac decoder = new Alac(is)) {
+                byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+                assertEquals(4096 * 4, decoder.decode(pcm));
+                assertEquals(frames / 108 * 441000L + (frames % 108) * 4096L, decoder.getNumSamples());
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @DisplayName("64 bit sizes and offsets beyond 4GB")
+    void test2() throws Exception {
+        Path path = largeFile(0x1_1000_0000L);
+        try {
+            assertTrue(Files.size(path) > 0x1_0000_0000L);
+            try (Alac decoder = new Alac(path)) {
+                assertEquals(AlacFileTest.PCM_MD5, FileChannelSourceTest.md5(decoder));
+                decoder.seek(200_000);
+                decoder.seek(0);
+                assertEquals(AlacFileTest.PCM_MD5, FileChannelSourceTest.md5(decoder));
+            }
+            try (Alac decoder = new Alac(FileChannelSource.open(path, false))) {
+                assertEquals(AlacFileTest.PCM_MD5, FileChannelSourceTest.md5(decoder));
+            }
+            try (InputStream is = new FileInputStream(path.toFile());
+                 Alac decoder = new Alac(is)) {
+                assertEquals(441000, decoder.getNumSamples());
+                decoder.seek(0);
+                assertEquals(AlacFileTest.PCM_MD5, FileChannelSourceTest.md5(decoder));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * SampleTableTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class SampleTableTest {
+
+    @Test
+    @DisplayName("more than 16 stts runs")
+    void test1() throws Exception {
+        SampleTable table = new SampleTable();
+        table.setUniformSize(100, 40);
+        int[] counts = new int[20];
+        int[] durations = new int[20];
+        for (int i = 0; i < 20; i++) {
+            counts[i] = 2;
+            durations[i] = 4096 - i;
+        }
+        table.setTimeToSample(counts, durations);
+
+        long[] starts = table.getFrameStarts();
+        assertEquals(41, starts.length);
+        assertEquals(4096 + 4096, starts[2]);
+        long total = 0;
+        for (int i = 0; i < 20; i++) {
+            total += 2L * (4096 - i);
+        }
+        assertEquals(total, starts[40]);
+    }
+
+    @Test
+    @DisplayName("frame offsets")
+    void test2() throws Exception {
+        SampleTable table = new SampleTable();
+        table.setSizes(new int[] { 10, 20, 30, 40, 50, 60, 70 });
+        // chunk 1, 2: 2 frames, chunk 3: 3 frames
+        table.setSampleToChunk(new int[] { 1, 3 }, new int[] { 2, 3 });
+        table.setChunkOffsets(new long[] { 1000, 2000, 0xf000_0000L });
+
+        assertArrayEquals(new long[] { 1000, 1010, 2000, 2030, 0xf000_0000L, 0xf000_0000L + 50, 0xf000_0000L + 110 }, table.getFrameOffsets());
+        assertEquals(70, table.getMaxFrameSize());
+        assertEquals(40, table.getFrameSize(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> table.getFrameSize(7));
+    }
+
+    @Test
+    @DisplayName("frames without duration")
+    void test3() throws Exception {
+        SampleTable table = new SampleTable();
+        table.setUniformSize(100, 3);
+        table.setTimeToSample(new int[] { 2 }, new int[] { 4096 });
+        assertThrows(java.io.IOException.class, table::getFrameStarts);
+    }
+
+    @Test
+    @DisplayName("chunk first frames")
+    void test4() throws Exception {
+        SampleTable table = new SampleTable();
+        table.setSizes(new int[] { 10, 20, 30, 40, 50, 60, 70 });
+        // chunk 1, 2: 2 frames, chunk 3: 3 frames, chunk 4: no frames left
+        table.setSampleToChunk(new int[] { 1, 3 }, new int[] { 2, 3 });
+        table.setChunkOffsets(new long[] { 1000, 2000, 3000, 4000 });
+
+        assertArrayEquals(new int[] { 0, 2, 4, 7 }, table.getChunkFirstFrames());
+    }
+}
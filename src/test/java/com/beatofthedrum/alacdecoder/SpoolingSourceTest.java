@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package com.beatofthedrum.alacdecoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * SpoolingSourceTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class SpoolingSourceTest {
+
+    /** a pipe fed by another thread, like stdin */
+    static InputStream pipe(Path path) throws IOException {
+        PipedInputStream pis = new PipedInputStream(64 * 1024);
+        OutputStream pos = new PipedOutputStream(pis);
+        Thread thread = new Thread(() -> {
+            try (pos) {
+                Files.copy(path, pos);
+            } catch (IOException e) {
+Debug.println(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return pis;
+    }
+
+    @Test
+    @DisplayName("moov at the end from a pipe")
+    void test1() throws Exception {
+        Path path = QTMovieTTest.longFile(540, false, true);
+        try {
+            String expected;
+            try (Alac decoder = new Alac(path)) {
+                expected = FileChannelSourceTest.md5(decoder);
+            }
+
+            InputStream is = pipe(path);
+            assertFalse(is.markSupported());
+            long allocated = AirPlayDecoderTest.allocatedBytes();
+            try (Alac decoder = new Alac(is)) {
+                // mdat went to the spool, not to the heap
+                allocated = AirPlayDecoderTest.allocatedBytes() - allocated;
+Debug.println("allocated until moov: " + allocated + " bytes, file: " + Files.size(path) + " bytes");
+                assertTrue(allocated < Files.size(path) / 4);
+
+                assertEquals(expected, FileChannelSourceTest.md5(decoder));
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @DisplayName("seek back on a pipe")
+    void test2() throws Exception {
+        try (Alac decoder = new Alac(pipe(QTMovieTTest.alac))) {
+            byte[] pcm = new byte[decoder.getMaxFrameBytes()];
+            decoder.seek(300_000);
+            int r;
+            while ((r = decoder.decode(pcm)) != -1) {
+                assertTrue(r > 0);
+            }
+            decoder.seek(0);
+            assertEquals(AlacFileTest.PCM_MD5, FileChannelSourceTest.md5(decoder));
+        }
+    }
+}
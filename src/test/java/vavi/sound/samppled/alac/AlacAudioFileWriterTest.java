@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2026 by Naohide Sano, All rights reserved.
+ *
+ * Programmed by Naohide Sano
+ */
+
+package vavi.sound.samppled.alac;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import vavi.sound.sampled.alac.AlacAudioFileWriter;
+import vavi.sound.sampled.alac.AlacFileFormatType;
+import vavi.util.Debug;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * AlacAudioFileWriterTest.
+ *
+ * @author <a href="mailto:umjammer@gmail.com">Naohide Sano</a> (umjammer)
+ * @version 0.00 2026/10/18 umjammer initial version <br>
+ */
+class AlacAudioFileWriterTest {
+
+    static final AudioFormat pcmFormat = new AudioFormat(44100, 16, 2, true, false);
+
+    /** decoded src/test/resources/alac.m4a */
+    static byte[] pcm;
+
+    @BeforeAll
+    static void setup() throws Exception {
+        Path path = Paths.get("src/test/resources/alac.m4a");
+        pcm = AudioSystem.getAudioInputStream(pcmFormat, AudioSystem.getAudioInputStream(path.toFile())).readAllBytes();
+    }
+
+    static AudioInputStream pcmStream() {
+        return new AudioInputStream(new ByteArrayInputStream(pcm), pcmFormat, pcm.length / pcmFormat.getFrameSize());
+    }
+
+    /** types of the top level boxes */
+    static List<String> boxes(InputStream is) throws Exception {
+        List<String> types = new ArrayList<>();
+        DataInputStream dis = new DataInputStream(is);
+        while (dis.available() > 0) {
+            long size = dis.readInt() & 0xffff_ffffL;
+            byte[] type = new byte[4];
+            dis.readFully(type);
+            long header = 8;
+            if (size == 1) {
+                size = dis.readLong();
+                header = 16;
+            }
+            types.add(new String(type, StandardCharsets.US_ASCII));
+            dis.skipNBytes(size - header);
+        }
+        return types;
+    }
+
+    /** decodes the m4a file */
+    static byte[] decode(Path path) throws Exception {
+        return AudioSystem.getAudioInputStream(pcmFormat, AudioSystem.getAudioInputStream(path.toFile())).readAllBytes();
+    }
+
+    @Test
+    @DisplayName("as spi, moov at the end")
+    void test1() throws Exception {
+        Path out = Files.createTempFile("alac", ".m4a");
+        try {
+            assertTrue(AudioSystem.isFileTypeSupported(AlacFileFormatType.ALAC, pcmStream()));
+            int bytes = AudioSystem.write(pcmStream(), AlacFileFormatType.ALAC, out.toFile());
+Debug.println("pcm: " + pcm.length + ", m4a: " + bytes);
+            assertEquals(Files.size(out), bytes);
+
+            List<String> boxes = boxes(Files.newInputStream(out));
+Debug.println(boxes);
+            assertTrue(boxes.indexOf("mdat") < boxes.indexOf("moov"));
+
+            assertArrayEquals(pcm, decode(out));
+        } finally {
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    @DisplayName("faststart")
+    void test2() throws Exception {
+        Path out = Files.createTempFile("alac", ".m4a");
+        try {
+            new AlacAudioFileWriter(true).write(pcmStream(), AlacFileFormatType.ALAC, out.toFile());
+
+            List<String> boxes = boxes(Files.newInputStream(out));
+Debug.println(boxes);
+            assertEquals(List.of("ftyp", "moov", "mdat"), boxes);
+
+            assertArrayEquals(pcm, decode(out));
+        } finally {
+            Files.delete(out);
+        }
+    }
+
+    @Test
+    @DisplayName("to a stream")
+    void test3() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        int bytes = AudioSystem.write(pcmStream(), AlacFileFormatType.ALAC, baos);
+        assertEquals(baos.size(), bytes);
+
+        // a stream is always faststart
+        assertEquals(List.of("ftyp", "moov", "mdat"), boxes(new ByteArrayInputStream(baos.toByteArray())));
+
+        AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        assertArrayEquals(pcm, AudioSystem.getAudioInputStream(pcmFormat, ais).readAllBytes());
+    }
+
+    @Test
+    @DisplayName("an alac stream of the reader")
+    void test4() throws Exception {
+        Path in = Paths.get("src/test/resources/alac.m4a");
+        Path out = Files.createTempFile("alac", ".m4a");
+        try {
+            AudioInputStream ais = AudioSystem.getAudioInputStream(in.toFile());
+            assertTrue(AudioSystem.isFileTypeSupported(AlacFileFormatType.ALAC, ais));
+            AudioSystem.write(ais, AlacFileFormatType.ALAC, out.toFile());
+            assertTrue(boxes(Files.newInputStream(out)).containsAll(List.of("ftyp", "moov", "mdat")));
+            assertArrayEquals(pcm, decode(out));
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            AudioSystem.write(AudioSystem.getAudioInputStream(new ByteArrayInputStream(Files.readAllBytes(in))), AlacFileFormatType.ALAC, baos);
+            assertEquals(List.of("ftyp", "moov", "mdat"), boxes(new ByteArrayInputStream(baos.toByteArray())));
+            ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(baos.toByteArray()));
+            assertArrayEquals(pcm, AudioSystem.getAudioInputStream(pcmFormat, ais).readAllBytes());
+        } finally {
+            Files.delete(out);
+        }
+    }
+}
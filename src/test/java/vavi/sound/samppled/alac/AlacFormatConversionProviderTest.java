@@ -7,10 +7,17 @@
 package vavi.sound.samppled.alac;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
 import java.util.ServiceLoader;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -32,12 +39,14 @@ import org.junit.jupiter.api.Test;
 
 import vavi.sound.SoundUtil;
 import vavi.sound.sampled.alac.AlacAudioFileReader;
+import vavi.sound.sampled.alac.AlacEncoding;
 import vavi.sound.sampled.alac.AlacFormatConversionProvider;
 import vavi.util.Debug;
 import vavi.util.StringUtil;
 import vavi.util.properties.annotation.Property;
 import vavi.util.properties.annotation.PropsEntity;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -240,4 +249,194 @@ if (!System.getProperty("vavi.test", "").equals("ide")) {
         clip.stop();
         clip.close();
     }
+
+    @Test
+    @DisplayName("skip by the seek index")
+    void test6() throws Exception {
+        Path path = Paths.get(alac);
+        AudioFormat outAudioFormat = new AudioFormat(44100, 16, 2, true, false);
+
+        byte[] expected = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(path.toFile())).readAllBytes();
+
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(path.toFile()));
+        byte[] head = pcmAis.readNBytes(10000);
+        long skipped = pcmAis.skip(1_500_001);
+        assertEquals(1_500_000, skipped);
+        byte[] tail = pcmAis.readAllBytes();
+
+        assertEquals(expected.length, head.length + skipped + tail.length);
+        assertArrayEquals(Arrays.copyOfRange(expected, 0, head.length), head);
+        assertArrayEquals(Arrays.copyOfRange(expected, expected.length - tail.length, expected.length), tail);
+
+        // beyond the end
+        assertEquals(0, pcmAis.skip(4));
+    }
+
+    @Test
+    @DisplayName("pcm to alac")
+    void test7() throws Exception {
+        Path path = Paths.get(alac);
+        AudioFormat pcmFormat = new AudioFormat(44100, 16, 2, true, false);
+        byte[] expected = AudioSystem.getAudioInputStream(pcmFormat, AudioSystem.getAudioInputStream(path.toFile())).readAllBytes();
+
+        AudioInputStream pcmAis = new AudioInputStream(new ByteArrayInputStream(expected), pcmFormat, expected.length / 4);
+        AudioFormat alacFormat = new AudioFormat(AlacEncoding.ALAC, 44100, 16, 2, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, true);
+        assertTrue(AudioSystem.isConversionSupported(alacFormat, pcmFormat));
+        byte[] m4a = AudioSystem.getAudioInputStream(alacFormat, pcmAis).readAllBytes();
+Debug.println("pcm: " + expected.length + ", m4a: " + m4a.length);
+
+        // the bitstream is an m4a file, read back by the reader
+        AudioInputStream alacAis = AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a));
+        assertEquals(AlacEncoding.ALAC, alacAis.getFormat().getEncoding());
+        byte[] actual = AudioSystem.getAudioInputStream(pcmFormat, alacAis).readAllBytes();
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("pull based reads")
+    void test8() throws Exception {
+        Path path = Paths.get(alac);
+        AudioFormat outAudioFormat = new AudioFormat(44100, 16, 2, true, false);
+
+        byte[] expected = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(path.toFile())).readAllBytes();
+
+        AudioInputStream pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(path.toFile()));
+        // exact
+        assertEquals(441000, pcmAis.getFrameLength());
+        assertEquals(expected.length, pcmAis.getFrameLength() * 4);
+        assertTrue(pcmAis.available() > 0);
+
+        // smaller than a frame, rounded down to sample frames, leftovers are carried
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buf = new byte[1001];
+        int r;
+        while ((r = pcmAis.read(buf, 0, buf.length)) != -1) {
+            assertEquals(0, r % 4);
+            baos.write(buf, 0, r);
+        }
+        assertArrayEquals(expected, baos.toByteArray());
+        assertEquals(0, pcmAis.available());
+
+        // larger than a frame, decoded in place
+        pcmAis = AudioSystem.getAudioInputStream(outAudioFormat, AudioSystem.getAudioInputStream(path.toFile()));
+        byte[] all = new byte[expected.length + 100];
+        int total = 0;
+        while ((r = pcmAis.read(all, total, all.length - total)) > 0) {
+            total += r;
+        }
+        assertEquals(expected.length, total);
+        assertArrayEquals(expected, Arrays.copyOf(all, total));
+    }
+
+    /** 24 bit stereo pcm, little endian */
+    static byte[] pcm24(int samples) {
+        ByteBuffer bb = ByteBuffer.allocate(samples * 6).order(ByteOrder.LITTLE_ENDIAN);
+        Random random = new Random(24);
+        for (int i = 0; i < samples; i++) {
+            int l = (int) (Math.sin(i / 30.0) * 0x60_0000) + random.nextInt(512) - 256;
+            int r = (int) (Math.cos(i / 50.0) * 0x40_0000) + random.nextInt(512) - 256;
+            bb.put((byte) l).put((byte) (l >> 8)).put((byte) (l >> 16));
+            bb.put((byte) r).put((byte) (r >> 8)).put((byte) (r >> 16));
+        }
+        return bb.array();
+    }
+
+    /** samples of {@code pcm} 24 bit little endian */
+    static int sample24(byte[] pcm, int i) {
+        return (pcm[i * 3 + 2] << 16) | ((pcm[i * 3 + 1] & 0xff) << 8) | (pcm[i * 3] & 0xff);
+    }
+
+    @Test
+    @DisplayName("pcm formats from 24 bit")
+    void test9() throws Exception {
+        AudioFormat format24 = new AudioFormat(48000, 24, 2, true, false);
+        byte[] pcm = pcm24(48000);
+        int n = pcm.length / 3;
+        AudioFormat alacFormat = new AudioFormat(AlacEncoding.ALAC, 48000, 24, 2, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, true);
+        byte[] m4a = AudioSystem.getAudioInputStream(alacFormat, new AudioInputStream(new ByteArrayInputStream(pcm), format24, 48000)).readAllBytes();
+
+        // native
+        assertArrayEquals(pcm, convert(m4a, format24));
+        // big endian 24, 32
+        ByteBuffer bb = ByteBuffer.wrap(convert(m4a, new AudioFormat(48000, 24, 2, true, true)));
+        for (int i = 0; i < n; i++) {
+            assertEquals(sample24(pcm, i), (bb.get() << 16) | ((bb.get() & 0xff) << 8) | (bb.get() & 0xff));
+        }
+        bb = ByteBuffer.wrap(convert(m4a, new AudioFormat(48000, 32, 2, true, true)));
+        for (int i = 0; i < n; i++) {
+            assertEquals(sample24(pcm, i) << 8, bb.getInt());
+        }
+        // float
+        bb = ByteBuffer.wrap(convert(m4a, new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 48000, 32, 2, 8, 48000, true)));
+        for (int i = 0; i < n; i++) {
+            assertEquals(sample24(pcm, i) / (float) (1 << 23), bb.getFloat());
+        }
+        // 24 to 16, truncated
+        bb = ByteBuffer.wrap(convert(m4a, new AudioFormat(48000, 16, 2, true, false))).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < n; i++) {
+            assertEquals(sample24(pcm, i) >> 8, bb.getShort());
+        }
+        // 24 to 16, dithered, within 1 lsb around the exact value and unbiased
+        AudioFormat dithered = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, 48000, 16, 2, 4, 48000, false, Map.of("dither", true));
+        bb = ByteBuffer.wrap(convert(m4a, dithered)).order(ByteOrder.LITTLE_ENDIAN);
+        double error = 0;
+        int truncated = 0;
+        for (int i = 0; i < n; i++) {
+            int expected = sample24(pcm, i);
+            int actual = bb.getShort();
+            assertTrue(Math.abs(actual * 256 - expected) < 512, i + ": " + actual + ", " + expected);
+            error += actual * 256 - expected;
+            if (actual == expected >> 8) {
+                truncated++;
+            }
+        }
+Debug.println("dither mean error: " + error / n + ", same as truncated: " + truncated + "/" + n);
+        assertTrue(Math.abs(error / n) < 16);
+        assertTrue(truncated < n);
+    }
+
+    /** converts {@code m4a} through the spi */
+    static byte[] convert(byte[] m4a, AudioFormat format) throws Exception {
+        AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a));
+        return AudioSystem.getAudioInputStream(format, ais).readAllBytes();
+    }
+
+    @Test
+    @DisplayName("float big endian, the same as the 16 bit pcm")
+    void test10() throws Exception {
+        byte[] m4a = Files.readAllBytes(Paths.get(alac));
+        AudioFormat pcm16 = new AudioFormat(44100, 16, 2, true, false);
+        AudioFormat float32 = new AudioFormat(AudioFormat.Encoding.PCM_FLOAT, 44100, 32, 2, 8, 44100, true);
+
+        byte[] expected = convert(m4a, pcm16);
+        byte[] actual = convert(m4a, float32);
+        ByteBuffer in = ByteBuffer.wrap(expected).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer out = ByteBuffer.wrap(actual);
+        while (in.hasRemaining()) {
+            assertEquals(in.getShort() / 32768f, out.getFloat());
+        }
+    }
+
+    @Test
+    @DisplayName("pcm by encoding is of the bit depth of the source")
+    void test11() throws Exception {
+        AudioFormat format24 = new AudioFormat(48000, 24, 2, true, false);
+        byte[] pcm = pcm24(4800);
+        AudioFormat alacFormat = new AudioFormat(AlacEncoding.ALAC, 48000, 24, 2, AudioSystem.NOT_SPECIFIED, AudioSystem.NOT_SPECIFIED, true);
+        byte[] m4a = AudioSystem.getAudioInputStream(alacFormat, new AudioInputStream(new ByteArrayInputStream(pcm), format24, 4800)).readAllBytes();
+
+        AudioInputStream ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(m4a));
+        AudioFormat[] formats = new AlacFormatConversionProvider().getTargetFormats(AudioFormat.Encoding.PCM_SIGNED, ais.getFormat());
+        assertEquals(6, formats.length);
+        assertTrue(formats[0].matches(format24));
+        AudioInputStream pcmAis = new AlacFormatConversionProvider().getAudioInputStream(AudioFormat.Encoding.PCM_SIGNED, ais);
+Debug.println(pcmAis.getFormat());
+        assertEquals(24, pcmAis.getFormat().getSampleSizeInBits());
+        assertArrayEquals(pcm, pcmAis.readAllBytes());
+
+        ais = AudioSystem.getAudioInputStream(new ByteArrayInputStream(Files.readAllBytes(Paths.get(alac))));
+        formats = new AlacFormatConversionProvider().getTargetFormats(AudioFormat.Encoding.PCM_SIGNED, ais.getFormat());
+        assertEquals(16, formats[0].getSampleSizeInBits());
+        assertTrue(Arrays.stream(formats).anyMatch(f -> f.getSampleSizeInBits() == 32 && f.isBigEndian()));
+    }
 }